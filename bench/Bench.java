@@ -0,0 +1,138 @@
+// Micro-benchmark runner for the request hot paths (see README, "Benchmarks")
+// JMH is not available without a build tool, so this follows its method in miniature: timed
+// warm-up iterations, timed measurement iterations, results fed to a sink the JIT cannot remove,
+// and the average time and allocation per operation reported with their spread.
+// Each suite is in its own class (CatalogBench, RequestBench); run one per JVM with -Dbench.filter
+// for numbers that are not influenced by code compiled for another benchmark.
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public final class Bench {
+
+    /** One invocation of the code being measured; the return value is consumed so it is not optimised away. */
+    @FunctionalInterface
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    /** Builds the state for one parameter value (e.g. a catalog of n rows) and returns the operation to time. */
+    @FunctionalInterface
+    public interface Setup {
+        Op prepare(int param) throws Exception;
+    }
+
+    // Configurable with -D: iteration counts and length, the catalog sizes, and a name filter (regex)
+    static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 3);
+    static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    static final long ITERATION_MILLIS = Long.getLong("bench.time", 1000);
+    static final int[] SIZES = parseSizes(System.getProperty("bench.sizes", "100,10000,1000000"));
+    private static final Pattern FILTER = Pattern.compile(System.getProperty("bench.filter", ".*"));
+
+    private static volatile Object sink;
+    private static final List<String> rows = new ArrayList<>();
+
+    private Bench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("# JVM " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", " + Runtime.getRuntime().availableProcessors() + " CPUs, max heap "
+                + (Runtime.getRuntime().maxMemory() >> 20) + " MB");
+        System.out.println("# Warm-up " + WARMUP_ITERATIONS + " x " + ITERATION_MILLIS + " ms, measurement "
+                + ITERATIONS + " x " + ITERATION_MILLIS + " ms");
+        CatalogBench.register();
+        RequestBench.register();
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-28s %9s %5s %16s    %12s  %-6s %12s",
+                "Benchmark", "(param)", "Cnt", "Score", "Error", "Units", "alloc B/op"));
+        rows.forEach(System.out::println);
+        // Classes under test may have started background threads (email workers, PDF folder watcher)
+        System.exit(0);
+    }
+
+    /** Runs a benchmark that does not depend on the catalog size. */
+    public static void run(String name, Op op) throws Exception {
+        if (!FILTER.matcher(name).find()) return;
+        measure(name, "", op);
+    }
+
+    /** Runs a benchmark once per catalog size in bench.sizes. */
+    public static void run(String name, Setup setup) throws Exception {
+        if (!FILTER.matcher(name).find()) return;
+        for (int size : SIZES) {
+            Op op = setup.prepare(size);
+            measure(name, String.valueOf(size), op);
+            System.gc(); // drop the previous catalog before building a larger one
+        }
+    }
+
+    private static void measure(String name, String param, Op op) throws Exception {
+        System.out.println("# " + name + (param.isEmpty() ? "" : " (" + param + ")"));
+        for (int i = 1; i <= WARMUP_ITERATIONS; i++) {
+            double ns = iteration(op, null);
+            System.out.println(String.format(Locale.ROOT, "  warm-up %d: %s", i, formatTime(ns)));
+        }
+        double[] scores = new double[ITERATIONS];
+        long allocBytes = 0;
+        long allocOps = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long[] counted = new long[2];
+            scores[i] = iteration(op, counted);
+            allocBytes = counted[0] < 0 || allocBytes < 0 ? -1 : allocBytes + counted[0];
+            allocOps += counted[1];
+            System.out.println(String.format(Locale.ROOT, "  iteration %d: %s", i + 1, formatTime(scores[i])));
+        }
+        double mean = 0;
+        for (double s : scores) mean += s;
+        mean /= scores.length;
+        double var = 0;
+        for (double s : scores) var += (s - mean) * (s - mean);
+        double stddev = scores.length > 1 ? Math.sqrt(var / (scores.length - 1)) : 0;
+        rows.add(String.format(Locale.ROOT, "%-28s %9s %5d %16.1f +- %12.1f  ns/op  %12s",
+                name, param, scores.length, mean, stddev,
+                allocBytes < 0 || allocOps == 0 ? "n/a" : String.valueOf(allocBytes / allocOps)));
+    }
+
+    // Calls op until the iteration time is up; returns ns per call. counted gets {bytes allocated, calls}.
+    private static double iteration(Op op, long[] counted) throws Exception {
+        long deadline = System.nanoTime() + ITERATION_MILLIS * 1_000_000L;
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = 0;
+        long now;
+        do {
+            sink = op.run();
+            ops++;
+        } while ((now = System.nanoTime()) < deadline);
+        if (counted != null) {
+            long allocAfter = allocatedBytes();
+            counted[0] = allocBefore < 0 ? -1 : allocAfter - allocBefore;
+            counted[1] = ops;
+        }
+        return (double) (now - start) / ops;
+    }
+
+    // Bytes allocated by this thread so far, or -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static String formatTime(double ns) {
+        return String.format(Locale.ROOT, "%.1f ns/op", ns);
+    }
+
+    private static int[] parseSizes(String csv) {
+        String[] parts = csv.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) sizes[i] = Integer.parseInt(parts[i].trim());
+        return sizes;
+    }
+}
@@ -0,0 +1,145 @@
+// Catalog benchmarks: turning result rows into QuestionPaper objects, the catalog into JSON, and
+// serving it again from the response cache
+// There is no embedded database on the classpath, so rows come from an in-memory ResultSet that
+// keeps strings as UTF-8 bytes and decodes them on every getString, as Connector/J does.
+// catalog.resultSetScan reads the same columns without building papers; subtract it from
+// catalog.rowMapping to get the cost of mapRow itself.
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class CatalogBench {
+
+    private static final String[] SUBJECTS = {
+            "Maths", "Data Structures", "DBMS", "Operating Systems", "Computer Networks",
+            "Theory of Computation", "Compiler Design", "Software Engineering"
+    };
+    private static final String[] MONTHS = {"May", "Dec"};
+
+    private CatalogBench() {
+    }
+
+    static void register() throws Exception {
+        Bench.run("catalog.resultSetScan", n -> {
+            Rows rows = new Rows(n);
+            return () -> {
+                ResultSet rs = rows.open();
+                long checksum = 0;
+                while (rs.next()) {
+                    checksum += rs.getInt("id") + rs.getString("subject").length() + rs.getInt("year")
+                            + rs.getInt("semester") + rs.getString("file_path").length() + rs.getString("status").length();
+                }
+                return checksum;
+            };
+        });
+        Bench.run("catalog.rowMapping", n -> {
+            Rows rows = new Rows(n);
+            return () -> {
+                ResultSet rs = rows.open();
+                List<QuestionPaper> list = new ArrayList<>();
+                while (rs.next()) list.add(QuestionPaperDAO.mapRow(rs));
+                return list;
+            };
+        });
+        // GET /papers: rows written one by one through the handler's streaming writer
+        Bench.run("catalog.jsonStream", n -> {
+            List<QuestionPaper> papers = new Rows(n).papers();
+            return () -> {
+                StubExchange exchange = new StubExchange("GET", "/papers");
+                WebServer.JsonArrayStream stream = new WebServer.JsonArrayStream(exchange);
+                for (QuestionPaper p : papers) stream.accept(p);
+                stream.finish();
+                return exchange.bodyBytes();
+            };
+        });
+        // The page and search responses: the whole list serialised into one byte array first
+        Bench.run("catalog.jsonList", n -> {
+            List<QuestionPaper> papers = new Rows(n).papers();
+            ObjectMapper mapper = new ObjectMapper();
+            return () -> mapper.writeValueAsBytes(papers);
+        });
+        // Repeated GET /papers (or page/search) once the response is cached: headers and one copy
+        Bench.run("catalog.cachedHit", n -> {
+            byte[] body = new ObjectMapper().writeValueAsBytes(new Rows(n).papers());
+            ResponseCache cache = new ResponseCache(() -> 1, 4L * body.length + 4096, 0, "no-cache");
+            cache.put("/papers", 1, body);
+            return () -> {
+                StubExchange exchange = new StubExchange("GET", "/papers");
+                cache.send(exchange, cache.get("/papers"));
+                return exchange.bodyBytes();
+            };
+        });
+    }
+
+    /** n generated catalog rows, readable any number of times through {@link #open()}. */
+    static final class Rows {
+        final int size;
+        final int[] ids;
+        final int[] years;
+        final int[] semesters;
+        final byte[][] subjects;
+        final byte[][] filePaths;
+        final byte[] status = "AVAILABLE".getBytes(StandardCharsets.UTF_8);
+
+        Rows(int size) {
+            this.size = size;
+            ids = new int[size];
+            years = new int[size];
+            semesters = new int[size];
+            subjects = new byte[size][];
+            filePaths = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                String subject = SUBJECTS[i % SUBJECTS.length];
+                ids[i] = i + 1;
+                years[i] = 2015 + i % 11;
+                semesters[i] = 1 + i % 8;
+                subjects[i] = subject.getBytes(StandardCharsets.UTF_8);
+                filePaths[i] = (subject.replace(" ", "").toLowerCase() + semesters[i] + years[i] + MONTHS[i % 2] + "-" + i + ".pdf")
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        /** A forward-only cursor over the rows; only the getters mapRow uses are supported. */
+        ResultSet open() {
+            int[] row = {-1};
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                    (proxy, method, args) -> {
+                        int r = row[0];
+                        switch (method.getName()) {
+                            case "next":
+                                return ++row[0] < size;
+                            case "getInt":
+                                switch ((String) args[0]) {
+                                    case "id": return ids[r];
+                                    case "year": return years[r];
+                                    case "semester": return semesters[r];
+                                    default: throw new IllegalArgumentException("No int column " + args[0]);
+                                }
+                            case "getString":
+                                switch ((String) args[0]) {
+                                    case "subject": return new String(subjects[r], StandardCharsets.UTF_8);
+                                    case "file_path": return new String(filePaths[r], StandardCharsets.UTF_8);
+                                    case "status": return new String(status, StandardCharsets.UTF_8);
+                                    default: throw new IllegalArgumentException("No string column " + args[0]);
+                                }
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        List<QuestionPaper> papers() throws Exception {
+            ResultSet rs = open();
+            List<QuestionPaper> list = new ArrayList<>(size);
+            while (rs.next()) list.add(QuestionPaperDAO.mapRow(rs));
+            return list;
+        }
+    }
+}
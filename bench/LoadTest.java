@@ -0,0 +1,499 @@
+// Load generator for the web server (see README, "Load testing")
+// Generates PDFs and a synthetic catalog of any size, then drives a mix of catalog, search, PDF
+// and email requests at a fixed arrival rate with java.net.http.HttpClient and reports throughput
+// and latency percentiles per route. Emails go to an in-process SMTP stand-in (SmtpStandIn).
+// The schedule is open-loop: request i is due at start + i / rate whether or not earlier ones have
+// finished, and its latency is measured from that due time, so a stalled server shows up as
+// latency instead of quietly lowering the request rate.
+// A server started here (load.startServer) runs in a temporary directory with the embedded catalog
+// store, so the seeded rows and PDFs never reach the real database or PDF folder; the directory is
+// deleted when the run ends.
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+public final class LoadTest {
+
+    // Configurable with -D (see README)
+    private static final String BASE_URL = System.getProperty("load.url", "http://localhost:8080");
+    private static final int ROWS = Integer.getInteger("load.rows", 10_000);
+    private static final int SEED_BATCH = Integer.getInteger("load.seedBatch", 20_000);
+    private static final int PDFS = Integer.getInteger("load.pdfs", 100);
+    private static final int PDF_BYTES = Integer.getInteger("load.pdfBytes", 256 * 1024);
+    private static final String PDF_DIR = System.getProperty("load.pdfDir", "PDF");
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "500"));
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration", 60);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup", 10);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 1000);
+    private static final long TIMEOUT_SECONDS = Long.getLong("load.timeout", 30);
+    private static final String MIX = System.getProperty("load.mix", "page=40,search=35,pdf=20,email=5,list=0");
+    private static final int SMTP_PORT = Integer.getInteger("load.smtpPort", 2525);
+    private static final long SMTP_DELAY_MS = Long.getLong("load.smtpDelayMs", 0);
+    private static final boolean START_SERVER = Boolean.getBoolean("load.startServer");
+    private static final String SERVER_OPTS = System.getProperty("load.serverOpts", "");
+
+    private static final String PDF_PREFIX = "loadtest-";
+    private static final String[] SUBJECTS = {
+            "Maths", "Data Structures", "DBMS", "Operating Systems", "Computer Networks",
+            "Theory of Computation", "Compiler Design", "Software Engineering"
+    };
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** One kind of request in the mix. */
+    private static final class Route {
+        final String name;
+        final int weight;
+        final Function<Random, HttpRequest> request;
+        final Metrics.Histogram latency = new Metrics.Histogram();
+        final LongAdder errors = new LongAdder();
+        final Map<String, LongAdder> errorKinds = new ConcurrentHashMap<>();
+
+        Route(String name, int weight, Function<Random, HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+
+        void failed(String kind) {
+            errors.increment();
+            errorKinds.computeIfAbsent(kind, k -> new LongAdder()).increment();
+        }
+    }
+
+    /** What the requests can refer to: paper ids and PDF names that exist. */
+    private static final class Catalog {
+        int[] ids = new int[0];
+        int maxId;
+        final List<String> pdfs = new ArrayList<>();
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        SmtpStandIn smtp = SMTP_PORT >= 0 ? new SmtpStandIn(SMTP_PORT, SMTP_DELAY_MS) : null;
+        if (smtp != null) System.out.println("[LoadTest] SMTP stand-in on 127.0.0.1:" + smtp.getPort());
+        Path scratch = START_SERVER ? Files.createTempDirectory("qpms-loadtest-") : null;
+        Process server = null;
+        int exitCode = 0;
+        try {
+            if (scratch != null) server = startServer(smtp, scratch);
+            waitForServer(client, server != null ? 60 : 5);
+            Catalog catalog = new Catalog();
+            // The started server finds its PDFs in PDF/ under its working directory
+            generatePdfs(catalog, scratch != null ? scratch.resolve("PDF") : Paths.get(PDF_DIR));
+            if (ROWS > 0) seed(client, catalog);
+            else discover(client, catalog);
+
+            if (WARMUP_SECONDS > 0) {
+                System.out.println("[LoadTest] Warm-up: " + WARMUP_SECONDS + " s at " + RATE + " req/s");
+                drive(client, routes(catalog), new Metrics.Histogram(), WARMUP_SECONDS);
+            }
+            System.out.println("[LoadTest] Measuring: " + DURATION_SECONDS + " s at " + RATE + " req/s, at most "
+                    + CONCURRENCY + " in flight");
+            List<Route> routes = routes(catalog);
+            Metrics.Histogram total = new Metrics.Histogram();
+            long elapsed = drive(client, routes, total, DURATION_SECONDS);
+            long delivered = smtp == null ? -1 : awaitMail(smtp);
+            report(routes, total, elapsed, smtp, delivered);
+        } catch (Exception e) {
+            System.err.println("[LoadTest] " + e.getMessage());
+            exitCode = 1;
+        } finally {
+            if (server != null) {
+                server.destroy();
+                if (!server.waitFor(10, TimeUnit.SECONDS)) {
+                    server.destroyForcibly();
+                    server.waitFor(10, TimeUnit.SECONDS);
+                }
+            }
+            if (scratch != null) deleteScratch(scratch);
+            if (smtp != null) smtp.close();
+        }
+        System.exit(exitCode);
+    }
+
+    // Mix weights from load.mix; routes that have nothing to refer to are left out
+    private static List<Route> routes(Catalog catalog) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : MIX.split(",")) {
+            String[] kv = entry.trim().split("=");
+            if (kv.length == 2) weights.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        List<Route> routes = new ArrayList<>();
+        add(routes, weights, "list", r -> get("/papers"));
+        add(routes, weights, "page", r -> get("/papers?after=" + r.nextInt(Math.max(1, catalog.maxId)) + "&limit=50"));
+        add(routes, weights, "search", r -> get("/papers/search?subject=" + encode(SUBJECTS[r.nextInt(SUBJECTS.length)])
+                + "&year=" + (2015 + r.nextInt(11))));
+        if (!catalog.pdfs.isEmpty()) {
+            add(routes, weights, "pdf", r -> get("/pdf/" + encode(catalog.pdfs.get(r.nextInt(catalog.pdfs.size())))));
+        }
+        if (catalog.ids.length > 0) {
+            add(routes, weights, "email", r -> HttpRequest.newBuilder(uri("/papers/" + catalog.ids[r.nextInt(catalog.ids.length)]
+                            + "/email?recipientEmail=" + encode("student" + r.nextInt(100_000) + "@loadtest.invalid")))
+                    .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build());
+        }
+        if (routes.isEmpty()) throw new IllegalArgumentException("load.mix selects no routes: " + MIX);
+        return routes;
+    }
+
+    private static void add(List<Route> routes, Map<String, Integer> weights, String name, Function<Random, HttpRequest> request) {
+        int weight = weights.getOrDefault(name, 0);
+        if (weight > 0) routes.add(new Route(name, weight, request));
+    }
+
+    /**
+     * Sends requests at RATE for the given time and waits for the stragglers
+     * @param total also receives every successful request's latency
+     * @return nanoseconds from the first request to the last response
+     */
+    private static long drive(HttpClient client, List<Route> routes, Metrics.Histogram total, int seconds)
+            throws InterruptedException {
+        int totalWeight = routes.stream().mapToInt(r -> r.weight).sum();
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        LongAdder completed = new LongAdder();
+        LongAdder late = new LongAdder();
+        long interval = (long) (1e9 / RATE);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long[] lastResponse = {start};
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        progress.scheduleAtFixedRate(() -> System.out.println(String.format(Locale.ROOT,
+                "  %5.0f s: %d done, %d in flight, %d errors",
+                (System.nanoTime() - start) / 1e9, completed.sum(), CONCURRENCY - inFlight.availablePermits(),
+                routes.stream().mapToLong(r -> r.errors.sum()).sum())), 5, 5, TimeUnit.SECONDS);
+
+        Random random = ThreadLocalRandom.current();
+        try {
+            for (long i = 0; ; i++) {
+                long due = start + i * interval;
+                if (due >= end) break;
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                // At the concurrency cap this blocks and the schedule falls behind; latency still counts from due
+                inFlight.acquire();
+                if (System.nanoTime() - due > 10_000_000L) late.increment();
+                Route route = pick(routes, totalWeight, random);
+                client.sendAsync(route.request.apply(random), HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            long now = System.nanoTime();
+                            if (error != null) {
+                                route.failed(error.getClass().getSimpleName());
+                            } else if (response.statusCode() >= 400) {
+                                route.failed(String.valueOf(response.statusCode()));
+                            } else {
+                                route.latency.record(now - due);
+                                total.record(now - due);
+                            }
+                            synchronized (lastResponse) {
+                                lastResponse[0] = Math.max(lastResponse[0], now);
+                            }
+                            completed.increment();
+                            inFlight.release();
+                        });
+            }
+            if (!inFlight.tryAcquire(CONCURRENCY, TIMEOUT_SECONDS + 5, TimeUnit.SECONDS)) {
+                System.out.println("[LoadTest] " + (CONCURRENCY - inFlight.availablePermits()) + " requests still running; reporting without them");
+            }
+        } finally {
+            progress.shutdownNow();
+        }
+        if (late.sum() > 0) {
+            System.out.println("[LoadTest] " + late.sum() + " requests went out more than 10 ms late (client or concurrency cap could not keep up)");
+        }
+        synchronized (lastResponse) {
+            return lastResponse[0] - start;
+        }
+    }
+
+    private static Route pick(List<Route> routes, int totalWeight, Random random) {
+        int n = random.nextInt(totalWeight);
+        for (Route r : routes) {
+            n -= r.weight;
+            if (n < 0) return r;
+        }
+        return routes.get(routes.size() - 1);
+    }
+
+    private static void report(List<Route> routes, Metrics.Histogram total, long elapsedNanos, SmtpStandIn smtp, long delivered) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-8s %10s %8s %10s %9s %9s %9s %9s",
+                "Route", "Requests", "Errors", "Req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        long errors = 0;
+        for (Route r : routes) {
+            row(r.name, r.latency.count() + r.errors.sum(), r.errors.sum(), seconds, r.latency);
+            errors += r.errors.sum();
+        }
+        row("total", total.count() + errors, errors, seconds, total);
+        System.out.println(String.format(Locale.ROOT, "Target %.0f req/s over %d s; achieved %.1f req/s. Latency is for successful requests.",
+                RATE, DURATION_SECONDS, (total.count() + errors) / seconds));
+        for (Route r : routes) {
+            if (!r.errorKinds.isEmpty()) {
+                StringBuilder sb = new StringBuilder("Errors on " + r.name + ":");
+                r.errorKinds.forEach((kind, n) -> sb.append(' ').append(kind).append(" x").append(n.sum()));
+                System.out.println(sb);
+            }
+        }
+        if (smtp != null) {
+            System.out.println(String.format(Locale.ROOT, "SMTP stand-in: %d messages delivered (%.1f MB) over %d connections",
+                    delivered, smtp.getBytes() / 1e6, smtp.getConnections()));
+        }
+    }
+
+    private static void row(String name, long requests, long errors, double seconds, Metrics.Histogram h) {
+        System.out.println(String.format(Locale.ROOT, "%-8s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f",
+                name, requests, errors, requests / seconds,
+                h.valueAt(0.50) / 1e6, h.valueAt(0.95) / 1e6, h.valueAt(0.99) / 1e6, h.valueAt(1.0) / 1e6));
+    }
+
+    // Email requests only queue a job; wait until the stand-in stops receiving (at most 60 s)
+    private static long awaitMail(SmtpStandIn smtp) throws InterruptedException {
+        long last = -1;
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (System.currentTimeMillis() < deadline) {
+            long now = smtp.getMessages();
+            if (now == last) break;
+            last = now;
+            Thread.sleep(2000);
+        }
+        return smtp.getMessages();
+    }
+
+    // --- setup ---
+
+    // Runs in scratch, so its catalog log, PDF folder, full-text index and import checkpoint all land there
+    private static Process startServer(SmtpStandIn smtp, Path scratch) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        if (!SERVER_OPTS.isBlank()) command.addAll(Arrays.asList(SERVER_OPTS.trim().split("\\s+")));
+        command.addAll(Arrays.asList("-cp", absoluteClassPath(), "WebServer"));
+        ProcessBuilder pb = new ProcessBuilder(command).directory(scratch.toFile());
+        // Environment, so -DCATALOG_STORE=mysql in load.serverOpts still wins (see AppConfig)
+        pb.environment().put("CATALOG_STORE", "embedded");
+        pb.environment().put("CATALOG_STORE_FILE", scratch.resolve("papers.log").toString());
+        if (smtp != null) {
+            pb.environment().put("SMTP_HOST", "127.0.0.1");
+            pb.environment().put("SMTP_PORT", String.valueOf(smtp.getPort()));
+            pb.environment().put("SMTP_STARTTLS", "false");
+            pb.environment().put("SMTP_USER", "loadtest@loadtest.invalid");
+            pb.environment().put("SMTP_PASS", "loadtest");
+        }
+        File log = new File("loadtest-server.log").getAbsoluteFile();
+        pb.redirectErrorStream(true).redirectOutput(log);
+        System.out.println("[LoadTest] Starting WebServer in " + scratch + " (output in " + log + ")");
+        return pb.start();
+    }
+
+    // The server runs in another directory, so relative entries (bench/classes, lib/*) must be resolved here
+    private static String absoluteClassPath() {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) entries.add(Paths.get(entry).toAbsolutePath().toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void deleteScratch(Path scratch) {
+        try (Stream<Path> files = Files.walk(scratch)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+            System.out.println("[LoadTest] Deleted " + scratch);
+        } catch (IOException e) {
+            System.err.println("[LoadTest] Could not delete " + scratch + ": " + e.getMessage());
+        }
+    }
+
+    private static void waitForServer(HttpClient client, int seconds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+        while (true) {
+            try {
+                client.send(get("/metrics"), HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("No server at " + BASE_URL + " (start it, or pass -Dload.startServer=true)");
+                }
+                Thread.sleep(250);
+            }
+        }
+    }
+
+    // PDFs named loadtest-00000.pdf ...; files of the right size from an earlier run are kept
+    private static void generatePdfs(Catalog catalog, Path dir) throws IOException {
+        if (PDFS <= 0) return;
+        Files.createDirectories(dir);
+        int written = 0;
+        for (int i = 0; i < PDFS; i++) {
+            String name = pdfName(i);
+            Path file = dir.resolve(name);
+            catalog.pdfs.add(name);
+            if (Files.exists(file) && Files.size(file) == PDF_BYTES) continue;
+            Files.write(file, pdf(i, SUBJECTS[i % SUBJECTS.length], PDF_BYTES));
+            written++;
+        }
+        System.out.println("[LoadTest] " + PDFS + " PDFs of " + PDF_BYTES + " bytes in " + dir.toAbsolutePath()
+                + " (" + written + " written)");
+    }
+
+    private static String pdfName(int i) {
+        return String.format(Locale.ROOT, "%s%05d.pdf", PDF_PREFIX, i);
+    }
+
+    // Inserts ROWS rows through POST /papers/bulk (NDJSON), SEED_BATCH rows per request
+    private static void seed(HttpClient client, Catalog catalog) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        int[] ids = new int[ROWS];
+        int count = 0;
+        for (int from = 0; from < ROWS; from += SEED_BATCH) {
+            int to = Math.min(ROWS, from + SEED_BATCH);
+            StringBuilder body = new StringBuilder((to - from) * 110);
+            for (int i = from; i < to; i++) {
+                String file = PDFS > 0 ? pdfName(i % PDFS) : PDF_PREFIX + i + ".pdf";
+                body.append("{\"subject\":\"").append(SUBJECTS[i % SUBJECTS.length])
+                        .append("\",\"year\":").append(2015 + i % 11)
+                        .append(",\"semester\":").append(1 + (i / 11) % 8)
+                        .append(",\"filePath\":\"").append(file).append("\"}\n");
+            }
+            HttpRequest request = HttpRequest.newBuilder(uri("/papers/bulk"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .timeout(Duration.ofMinutes(5))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+            }
+            for (JsonNode id : objectMapper.readTree(response.body()).path("ids")) ids[count++] = id.asInt();
+            System.out.println("[LoadTest] Seeded " + to + " / " + ROWS + " rows");
+        }
+        catalog.ids = Arrays.copyOf(ids, count);
+        for (int id : catalog.ids) catalog.maxId = Math.max(catalog.maxId, id);
+        System.out.println("[LoadTest] Catalog seeded in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // load.rows=0: use what the catalog already holds (first 1000 rows)
+    private static void discover(HttpClient client, Catalog catalog) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(get("/papers?after=0&limit=1000"), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IllegalStateException("GET /papers failed with " + response.statusCode());
+        List<Integer> ids = new ArrayList<>();
+        for (JsonNode paper : objectMapper.readTree(response.body()).path("items")) {
+            ids.add(paper.path("id").asInt());
+            catalog.maxId = Math.max(catalog.maxId, paper.path("id").asInt());
+            if (PDFS <= 0 && paper.hasNonNull("filePath")) catalog.pdfs.add(paper.get("filePath").asText());
+        }
+        catalog.ids = ids.stream().mapToInt(Integer::intValue).toArray();
+        System.out.println("[LoadTest] Using " + ids.size() + " existing papers");
+    }
+
+    /**
+     * A one-page PDF whose text the full-text index can read, padded with an unreferenced binary
+     * stream to about targetBytes
+     */
+    static byte[] pdf(int n, String subject, int targetBytes) {
+        String text = "BT /F1 18 Tf 72 720 Td (" + subject + " question paper " + n + ") Tj ET\n"
+                + "BT /F1 12 Tf 72 690 Td (Load test document. Answer all questions.) Tj ET\n";
+        byte[] content = deflate(text.getBytes(StandardCharsets.ISO_8859_1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(targetBytes + 1024);
+        List<Integer> offsets = new ArrayList<>();
+        ascii(out, "%PDF-1.7\n%âãÏÓ\n");
+        offsets.add(out.size());
+        ascii(out, "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        offsets.add(out.size());
+        ascii(out, "2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n");
+        offsets.add(out.size());
+        ascii(out, "3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents 4 0 R"
+                + " /Resources << /Font << /F1 5 0 R >> >> >>\nendobj\n");
+        offsets.add(out.size());
+        ascii(out, "4 0 obj\n<< /Length " + content.length + " /Filter /FlateDecode >>\nstream\n");
+        out.write(content, 0, content.length);
+        ascii(out, "\nendstream\nendobj\n");
+        offsets.add(out.size());
+        ascii(out, "5 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n");
+        // Padding: stands in for the page images of a scanned paper
+        int padding = Math.max(0, targetBytes - out.size() - 260);
+        byte[] filler = new byte[padding];
+        new Random(n).nextBytes(filler);
+        offsets.add(out.size());
+        ascii(out, "6 0 obj\n<< /Length " + padding + " >>\nstream\n");
+        out.write(filler, 0, filler.length);
+        ascii(out, "\nendstream\nendobj\n");
+        int xref = out.size();
+        ascii(out, "xref\n0 " + (offsets.size() + 1) + "\n0000000000 65535 f \n");
+        for (int offset : offsets) ascii(out, String.format(Locale.ROOT, "%010d 00000 n \n", offset));
+        ascii(out, "trailer\n<< /Size " + (offsets.size() + 1) + " /Root 1 0 R >>\nstartxref\n" + xref + "\n%%EOF\n");
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        while (!deflater.finished()) out.write(buf, 0, deflater.deflate(buf));
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static void ascii(ByteArrayOutputStream out, String s) {
+        byte[] b = s.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(b, 0, b.length);
+    }
+
+    private static HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).timeout(Duration.ofSeconds(TIMEOUT_SECONDS)).GET().build();
+    }
+
+    private static URI uri(String path) {
+        return URI.create(BASE_URL + path);
+    }
+
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,109 @@
+// Per-request benchmarks: query-string parsing and route matching (Router, against the regular
+// expressions the /papers if-chain used to run), email MIME assembly and PDF streaming
+
+import jakarta.mail.Message;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public final class RequestBench {
+
+    private static final String SEARCH_QUERY = "subject=Data%20Structures&year=2024&semester=3&status=AVAILABLE";
+    // What DELETE /papers/42 went through in the old if-chain: both email patterns fail, then the delete one matches
+    private static final String DELETE_PATH = "/papers/42";
+    private static final String EMAIL_REGEX = "^/papers/(\\d+)/email/?$";
+    private static final String BULK_REGEX = "^/papers/(\\d+)/email/bulk/?$";
+    private static final String DELETE_REGEX = "^/papers/(\\d+)/?$";
+    private static final Pattern EMAIL = Pattern.compile(EMAIL_REGEX);
+    private static final Pattern BULK = Pattern.compile(BULK_REGEX);
+    private static final Pattern DELETE = Pattern.compile(DELETE_REGEX);
+    // Size of the generated PDF for email and streaming (default 1 MB)
+    private static final int PDF_BYTES = Integer.getInteger("bench.pdfBytes", 1024 * 1024);
+
+    private RequestBench() {
+    }
+
+    static void register() throws Exception {
+        // The four lookups GET /papers/search makes
+        Bench.run("router.query", () -> {
+            Router.Query query = new Router.Query(SEARCH_QUERY);
+            return query.get("subject").length() + query.getInt("year", 0) + query.getInt("semester", 0)
+                    + query.get("status").length();
+        });
+        Bench.run("router.patternCompiled", () -> route(Pattern.compile(EMAIL_REGEX), Pattern.compile(BULK_REGEX),
+                Pattern.compile(DELETE_REGEX)));
+        Bench.run("router.patternPrecompiled", () -> route(EMAIL, BULK, DELETE));
+        Router router = apiRoutes();
+        Bench.run("router.trieMatch", () -> router.routeOf(DELETE_PATH));
+
+        Path pdf = samplePdf();
+        File pdfFile = pdf.toFile();
+        Bench.run("email.mimeAssembly", () -> {
+            Message message = EmailService.buildMessage("student@example.com", "Question paper: Maths 2024",
+                    "Please find the requested question paper attached.", pdfFile, "maths32024May.pdf");
+            // Content is encoded (base64) only when written, so this is what a send costs before the network
+            StubExchange.NullOutputStream out = new StubExchange.NullOutputStream();
+            message.writeTo(out);
+            return out.getCount();
+        });
+
+        long size = Files.size(pdf);
+        long lastModified = Files.getLastModifiedTime(pdf).toMillis();
+        Bench.run("pdf.sendFile", () -> {
+            StubExchange exchange = new StubExchange("GET", "/pdf/sample.pdf");
+            FileSender.sendFile(exchange, pdf, size, lastModified, "application/pdf", "public, max-age=3600");
+            return exchange.bodyBytes();
+        });
+        // What a PDF viewer asks for first: the first 64 KB
+        Bench.run("pdf.sendFileRange", () -> {
+            StubExchange exchange = new StubExchange("GET", "/pdf/sample.pdf");
+            exchange.getRequestHeaders().set("Range", "bytes=0-65535");
+            FileSender.sendFile(exchange, pdf, size, lastModified, "application/pdf", "public, max-age=3600");
+            return exchange.bodyBytes();
+        });
+    }
+
+    // Same templates as WebServer's API router, with handlers that do nothing
+    private static Router apiRoutes() {
+        Router.Handler none = (exchange, params) -> { };
+        return new Router((exchange, status, message) -> { }, (route, handler) -> handler)
+                .add("GET", "/papers", none)
+                .add("POST", "/papers/add", none)
+                .add("POST", "/papers/bulk", none)
+                .add("POST", "/papers/upload", none)
+                .add("POST", "/papers/blobs/gc", none)
+                .add("POST", "/papers/import", none)
+                .add("GET", "/papers/search", none)
+                .add("GET", "/papers/suggest", none)
+                .add("GET", "/papers/fulltext", none)
+                .add("DELETE", "/papers/{id:int}", none)
+                .add("POST", "/papers/{id:int}/email", none)
+                .add("POST", "/papers/{id:int}/email/bulk", none)
+                .add("GET", "/email-jobs/{id}", none)
+                .add("GET", "/metrics", none);
+    }
+
+    private static Object route(Pattern email, Pattern bulk, Pattern delete) {
+        if (email.matcher(DELETE_PATH).matches()) return "email";
+        if (bulk.matcher(DELETE_PATH).matches()) return "bulk";
+        Matcher m = delete.matcher(DELETE_PATH);
+        return m.matches() ? m.group(1) : null;
+    }
+
+    // Random bytes behind a PDF header: incompressible, like the streams in a real scanned paper
+    private static Path samplePdf() throws IOException {
+        byte[] data = new byte[PDF_BYTES];
+        new Random(42).nextBytes(data);
+        byte[] header = "%PDF-1.7\n".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, data, 0, Math.min(header.length, data.length));
+        Path file = Files.createTempFile("qpms-bench-", ".pdf");
+        file.toFile().deleteOnExit();
+        Files.write(file, data);
+        return file;
+    }
+}
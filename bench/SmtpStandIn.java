@@ -0,0 +1,174 @@
+// Minimal SMTP server for load tests: accepts any login and any message, counts them, keeps nothing
+// Point the web server at it with SMTP_HOST=127.0.0.1, SMTP_PORT=<port> and SMTP_STARTTLS=false.
+// Speaks just enough of RFC 5321 (EHLO/HELO, AUTH PLAIN/LOGIN, MAIL, RCPT, DATA, RSET, NOOP, QUIT)
+// for Jakarta Mail, with an optional delay per message to stand in for a real provider.
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SmtpStandIn implements AutoCloseable {
+
+    private static final int MAX_LINE = 64 * 1024;
+
+    private final ServerSocket socket;
+    private final long delayMillis;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Starts listening on 127.0.0.1
+     * @param port port to listen on (0 picks a free one)
+     * @param delayMillis pause before accepting each message, like a remote server's processing time
+     */
+    public SmtpStandIn(int port, long delayMillis) throws IOException {
+        this.socket = new ServerSocket();
+        this.socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 512);
+        this.delayMillis = delayMillis;
+        Thread acceptor = new Thread(this::acceptLoop, "smtp-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() { return socket.getLocalPort(); }
+    /** Messages accepted so far. */
+    public long getMessages() { return messages.get(); }
+    /** Message bytes (headers and encoded body) accepted so far. */
+    public long getBytes() { return bytes.get(); }
+    /** Connections opened so far; with a pooled transport this stays close to the pool size. */
+    public int getConnections() { return connections.get(); }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        socket.close();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket client = socket.accept();
+                connections.incrementAndGet();
+                Thread t = new Thread(() -> serve(client), "smtp-session-" + connections.get());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!closed) System.err.println("[SmtpStandIn] accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket s = client;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = s.getOutputStream()) {
+            reply(out, "220 qpms-loadtest ESMTP ready");
+            String line;
+            while ((line = readLine(in)) != null) {
+                String verb = (line.length() >= 4 ? line.substring(0, 4) : line).toUpperCase(Locale.ROOT);
+                switch (verb) {
+                    case "EHLO":
+                        reply(out, "250-qpms-loadtest\r\n250-AUTH PLAIN LOGIN\r\n250-8BITMIME\r\n250 SIZE 268435456");
+                        break;
+                    case "HELO":
+                        reply(out, "250 qpms-loadtest");
+                        break;
+                    case "AUTH":
+                        authenticate(line, in, out);
+                        break;
+                    case "MAIL":
+                    case "RCPT":
+                    case "RSET":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        long size = readData(in);
+                        if (size < 0) return;
+                        if (delayMillis > 0) Thread.sleep(delayMillis);
+                        messages.incrementAndGet();
+                        bytes.addAndGet(size);
+                        reply(out, "250 OK queued");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    case "STAR": // STARTTLS
+                        reply(out, "454 TLS not available");
+                        break;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // Client went away; nothing to clean up
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Any credentials are accepted; only the exchange itself is emulated
+    private static void authenticate(String line, InputStream in, OutputStream out) throws IOException {
+        String[] parts = line.trim().split("\\s+");
+        String mechanism = parts.length > 1 ? parts[1].toUpperCase(Locale.ROOT) : "";
+        if ("PLAIN".equals(mechanism)) {
+            if (parts.length < 3) {
+                reply(out, "334 ");
+                readLine(in);
+            }
+        } else if ("LOGIN".equals(mechanism)) {
+            if (parts.length < 3) {
+                reply(out, "334 VXNlcm5hbWU6"); // "Username:"
+                readLine(in);
+            }
+            reply(out, "334 UGFzc3dvcmQ6"); // "Password:"
+            readLine(in);
+        } else {
+            reply(out, "504 Unrecognized authentication type");
+            return;
+        }
+        reply(out, "235 2.7.0 Authentication successful");
+    }
+
+    // Reads up to the lone "." line; returns the number of bytes, or -1 if the connection closed
+    private static long readData(InputStream in) throws IOException {
+        long size = 0;
+        String line;
+        while ((line = readLine(in)) != null) {
+            if (line.equals(".")) return size;
+            size += line.length() + 2;
+        }
+        return -1;
+    }
+
+    // CRLF- (or LF-) terminated line, Latin-1; null at end of stream
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            if (b != '\r') line.write(b);
+            if (line.size() > MAX_LINE) throw new IOException("SMTP line too long");
+        }
+        if (b == -1 && line.size() == 0) return null;
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+}
@@ -13,6 +13,11 @@
         setTimeout(() => el.classList.remove('show'), 1800);
     }
 
+    // Uploaded files are stored as "<sha256>/name.pdf"; show just the name
+    function fileLabel(filePath) {
+        return (filePath || '').split(/[\\/]/).pop();
+    }
+
     function setYear() {
         const y = document.getElementById('yearNow');
         if (y) y.textContent = new Date().getFullYear();
@@ -63,7 +68,7 @@
                     <td>${item.year}</td>
                     <td>${item.semester}</td>
                     <td>${item.status}</td>
-                    <td><a href="${fileLink}" target="_blank" rel="noopener">${item.filePath}</a></td>
+                    <td><a href="${fileLink}" target="_blank" rel="noopener">${fileLabel(item.filePath)}</a></td>
                     <td>
                         <button class="send-email-btn" data-id="${item.id}">Send to Email</button>
                         <button class="delete-btn" data-id="${item.id}" style="margin-left:8px;color:#fff;background:#e74c3c;border:none;padding:6px 8px;border-radius:6px;">Delete</button>
@@ -159,11 +164,21 @@
                         toast(`Error: ${text}`);
                         console.error('Server error:', response.status, text);
                     } else {
-                        info.textContent = text;
-                        toast(text);
-                        setTimeout(() => {
-                            modal.style.display = 'none';
-                        }, 1600);
+                        // The server queues the email (202) and reports progress at /email-jobs/{id}
+                        const job = JSON.parse(text);
+                        info.textContent = 'Queued...';
+                        const final = await waitForEmailJob(job.statusUrl, info);
+                        if (final.status === 'SENT') {
+                            info.textContent = 'Email sent';
+                            toast('Email sent');
+                            setTimeout(() => {
+                                modal.style.display = 'none';
+                            }, 1600);
+                        } else {
+                            const errorMsg = final.error || 'Failed to send email';
+                            info.textContent = `Error: ${errorMsg}`;
+                            toast(`Error: ${errorMsg}`);
+                        }
                     }
                 } catch (err) {
                     const errorMsg = err.message || 'Failed to send email';
@@ -175,6 +190,18 @@
         }
     }
 
+    // Poll an email job until it is SENT or FAILED
+    async function waitForEmailJob(statusUrl, info) {
+        for (;;) {
+            await new Promise(resolve => setTimeout(resolve, 1000));
+            const resp = await fetch(statusUrl);
+            const job = await resp.json();
+            if (!resp.ok) return { status: 'FAILED', error: job.error };
+            if (job.status === 'SENT' || job.status === 'FAILED') return job;
+            if (info) info.textContent = job.status === 'SENDING' ? 'Sending...' : 'Queued...';
+        }
+    }
+
     function initRefreshAll() {
         const btn = document.getElementById('refreshAllBtn');
         if (btn) btn.addEventListener('click', renderAllPapers);
@@ -186,6 +213,7 @@
         if (!form) return;
         const info = document.getElementById('addInfo');
         const fileInput = form.querySelector('input[name="fileName"]');
+        const pdfInput = form.querySelector('input[name="file"]');
 
         function isPdf(name) { return PDF_REGEX.test((name || '').trim()); }
         if (fileInput) {
@@ -197,6 +225,16 @@
                 }
             });
         }
+        // Picking a PDF fills in its name; it is uploaded with the form
+        if (pdfInput && fileInput) {
+            pdfInput.addEventListener('change', () => {
+                const file = pdfInput.files[0];
+                if (file && !fileInput.value.trim()) {
+                    fileInput.value = file.name;
+                    fileInput.dispatchEvent(new Event('input'));
+                }
+            });
+        }
         
         form.addEventListener('submit', async (e) => {
             e.preventDefault();
@@ -219,29 +257,66 @@
             }
             
             try {
-                const response = await fetch(`${API_BASE_URL}/add`, {
-                    method: 'POST',
-                    headers: {
-                        'Content-Type': 'application/json'
-                    },
-                    body: JSON.stringify(paper)
-                });
+                const file = pdfInput && pdfInput.files[0];
+                // With a file: store it and register it in one multipart request (POST /papers/upload)
+                const response = file
+                    ? await fetch(`${API_BASE_URL}/upload`, { method: 'POST', body: data })
+                    : await fetch(`${API_BASE_URL}/add`, {
+                        method: 'POST',
+                        headers: {
+                            'Content-Type': 'application/json'
+                        },
+                        body: JSON.stringify(paper)
+                    });
                 
                 if (!response.ok) {
-                    throw new Error('Failed to add paper');
+                    const err = await response.json().catch(() => ({}));
+                    throw new Error(err.error || 'Failed to add paper');
                 }
                 
                 const result = await response.json();
-                if (info) info.textContent = `Added: ${result.subject} ${result.year} Sem ${result.semester}`;
+                const added = result.paper || paper;
+                if (info) info.textContent = `Added: ${added.subject} ${added.year} Sem ${added.semester}`;
                 toast('Paper added');
                 form.reset();
             } catch (err) {
                 console.error('Failed to add paper:', err);
+                if (info) info.textContent = err.message;
                 toast('Error adding paper');
             }
         });
     }
 
+    // Subject typeahead: suggest existing subjects (most papers first) as the user types
+    function initSubjectSuggest() {
+        document.querySelectorAll('input[name="subject"][list]').forEach(input => {
+            const list = document.getElementById(input.getAttribute('list'));
+            if (!list) return;
+            let latest = 0;
+            input.addEventListener('input', async () => {
+                // Suggest for the value being typed (the last one in a comma-separated list)
+                const parts = input.value.split(',');
+                const prefix = parts[parts.length - 1].trim();
+                const head = parts.slice(0, -1).map(p => p.trim()).filter(Boolean);
+                const request = ++latest;
+                try {
+                    const response = await fetch(`${API_BASE_URL}/suggest?prefix=${encodeURIComponent(prefix)}&limit=8`);
+                    const body = await response.json();
+                    if (request !== latest) return; // a newer keystroke already answered
+                    list.innerHTML = '';
+                    (body.suggestions || []).forEach(s => {
+                        const option = document.createElement('option');
+                        option.value = head.concat(s.subject).join(',');
+                        option.label = `${s.subject} (${s.count})`;
+                        list.appendChild(option);
+                    });
+                } catch (err) {
+                    console.error('Subject suggestions failed:', err);
+                }
+            });
+        });
+    }
+
     // Search form
     function initSearchForm() {
         const form = document.getElementById('searchPaperForm');
@@ -253,18 +328,28 @@
         form.addEventListener('submit', async (e) => {
             e.preventDefault();
             const data = new FormData(form);
-            const subject = data.get('subject').trim();
-            const year = Number(data.get('year'));
-            const semester = Number(data.get('semester'));
+            // Any combination of filters; empty fields are left out
+            const params = new URLSearchParams();
+            ['subject', 'year', 'semester'].forEach(name => {
+                const value = (data.get(name) || '').trim();
+                if (value) params.set(name, value);
+            });
+            params.set('limit', '1000');
             
             try {
-                const response = await fetch(
-                    `${API_BASE_URL}/search?subject=${encodeURIComponent(subject)}&year=${year}&semester=${semester}`
-                );
-                const results = await response.json();
+                const response = await fetch(`${API_BASE_URL}/search?${params}`);
+                const body = await response.json();
+                if (!response.ok) {
+                    toast(body.error || 'Error searching papers');
+                    return;
+                }
+                const results = body.items;
                 
                 tbody.innerHTML = '';
-                if (info) info.textContent = results.length ? '' : 'No results found.';
+                if (info) {
+                    info.textContent = !results.length ? 'No results found.'
+                        : body.total > results.length ? `Showing ${results.length} of ${body.total} results.` : '';
+                }
                 
                 results.forEach(item => {
                     const tr = document.createElement('tr');
@@ -275,7 +360,7 @@
                         <td>${item.year}</td>
                         <td>${item.semester}</td>
                         <td>${item.status}</td>
-                        <td><a href="${fileLink}" target="_blank" rel="noopener">${item.filePath}</a></td>
+                        <td><a href="${fileLink}" target="_blank" rel="noopener">${fileLabel(item.filePath)}</a></td>
                         <td><button class="send-email-btn" data-id="${item.id}">Send to Email</button></td>
                     `;
                     tbody.appendChild(tr);
@@ -323,6 +408,7 @@
         renderAllPapers();
         initAddForm();
         initSearchForm();
+        initSubjectSuggest();
         initEmailModal();
     });
 })();
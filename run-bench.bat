@@ -0,0 +1,19 @@
+@echo off
+REM Run the hot-path micro-benchmarks in bench/ (see README, "Benchmarks")
+REM Extra JVM options are passed through, e.g. run-bench.bat -Dbench.filter=catalog -Dbench.sizes=100,10000
+
+pushd "%~dp0"
+if not exist bench\classes mkdir bench\classes
+echo[Compiling] javac -cp lib\* -d bench\classes src\*.java bench\*.java
+javac -encoding UTF-8 -cp lib\* -d bench\classes src\*.java bench\*.java
+if %errorlevel% neq 0 (
+    echo Compilation failed.
+    popd
+    pause
+    exit /b 1
+)
+
+echo[Running] java -Xms2g -Xmx2g %* -cp bench\classes;lib\* Bench
+java -Xms2g -Xmx2g %* -cp bench\classes;lib\* Bench
+
+popd
@@ -0,0 +1,12 @@
+#!/bin/sh
+# Load test on one Linux box: compiles, starts WebServer in a temporary directory with the embedded
+# catalog store and email going to the built-in SMTP stand-in, seeds a synthetic catalog, reports
+# per-route latency and deletes the directory again.
+# Options are passed to the load generator, e.g.
+#   ./run-loadtest.sh -Dload.rows=1000000 -Dload.rate=2000 -Dload.concurrency=1000
+# See README, "Load testing".
+set -e
+cd "$(dirname "$0")"
+mkdir -p bench/classes
+javac -encoding UTF-8 -cp "lib/*" -d bench/classes src/*.java bench/*.java
+exec java -Dload.startServer=true "$@" -cp "bench/classes:lib/*" LoadTest
@@ -0,0 +1,324 @@
+// Content-addressed PDF storage
+// Uploaded PDFs are stored once per content as PDF/<sha256>.pdf and catalog rows point at them
+// with file_path "<sha256>/<display name>.pdf", so re-uploading a paper under another name costs
+// no disk or page cache. Rows are counted per blob; a background mark-and-sweep re-counts from the
+// database and deletes blobs nothing refers to any more. Rows holding a plain file name (everything
+// stored before this) are untouched and resolve exactly as before.
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.channels.FileChannel;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class BlobStore {
+
+    /** Where the current rows come from; the database is the source of truth for reference counts. */
+    public interface Catalog {
+        List<QuestionPaper> papers() throws SQLException;
+    }
+
+    /** Outcome of storing one upload. */
+    public static final class Ingest {
+        private final String hash;
+        private final boolean duplicate;
+
+        Ingest(String hash, boolean duplicate) {
+            this.hash = hash;
+            this.duplicate = duplicate;
+        }
+
+        public String getHash() { return hash; }
+        /** True if identical content was already stored and the upload was dropped. */
+        public boolean isDuplicate() { return duplicate; }
+    }
+
+    /** Outcome of one GC pass. */
+    public static final class GcReport {
+        private int blobs;
+        private int referenced;
+        private int reclaimed;
+        private long reclaimedBytes;
+        private int staleUploads;
+        private long elapsedMillis;
+
+        public int getBlobs() { return blobs; }
+        public int getReferenced() { return referenced; }
+        public int getReclaimed() { return reclaimed; }
+        public long getReclaimedBytes() { return reclaimedBytes; }
+        /** Temp files left behind by uploads that never finished. */
+        public int getStaleUploads() { return staleUploads; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    private static final Pattern BLOB_NAME = Pattern.compile("^([0-9a-f]{64})\\.pdf$");
+    private static final Pattern BLOB_REF = Pattern.compile("^/?([0-9a-f]{64})/[^/\\\\]+$");
+
+    private final PdfRepository repository;
+    private final Catalog catalog;
+    private final long graceMillis;
+    private final Object lock = new Object();
+    // Rows per stored name (blob or plain file name); null until first loaded from the catalog
+    private Map<String, Integer> refs;
+    // Uploads stored but not inserted yet
+    private final Map<String, Integer> pending = new HashMap<>();
+    // Blobs ingested since the current GC pass read the catalog: its counts may not include them
+    private final Set<String> touched = new HashSet<>();
+    private ScheduledExecutorService gcTimer;
+
+    /**
+     * @param repository PDF folder the blobs live in
+     * @param catalog source of the rows that reference files
+     * @param graceMillis unreferenced blobs (and stale upload temp files) younger than this are kept
+     */
+    public BlobStore(PdfRepository repository, Catalog catalog, long graceMillis) {
+        this.repository = repository;
+        this.catalog = catalog;
+        this.graceMillis = Math.max(0, graceMillis);
+    }
+
+    /** The hash a file_path refers to, or null for plain file names. */
+    public static String hashOf(String filePath) {
+        if (filePath == null) return null;
+        Matcher m = BLOB_REF.matcher(filePath.replace('\\', '/'));
+        return m.matches() ? m.group(1) : null;
+    }
+
+    /** file_path for a blob, keeping the uploaded name for display and downloads. */
+    public static String reference(String hash, String displayName) {
+        return hash + "/" + displayName;
+    }
+
+    /** File name of a blob in the PDF folder. */
+    public static String blobName(String hash) {
+        return hash + ".pdf";
+    }
+
+    /** True for files in the PDF folder that are blobs rather than named PDFs. */
+    public static boolean isBlobName(String fileName) {
+        return BLOB_NAME.matcher(fileName).matches();
+    }
+
+    /**
+     * Moves a fully written, fsync-ed temp file into the store, unless identical content is already
+     * there, in which case the temp file is deleted. Either way the blob is held until
+     * {@link #unpin}, so GC cannot remove it before its row is inserted.
+     * @param tmp temp file in the PDF folder
+     * @param sha256 lower-case hex digest of its content
+     */
+    public Ingest ingest(Path tmp, String sha256) throws IOException {
+        String hash = sha256.toLowerCase(Locale.ROOT);
+        Path target = repository.getDirectory().resolve(blobName(hash));
+        boolean duplicate;
+        synchronized (lock) {
+            duplicate = Files.exists(target);
+            if (duplicate) {
+                Files.delete(tmp);
+            } else {
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target);
+                }
+                syncDirectory(target.getParent());
+            }
+            pending.merge(hash, 1, Integer::sum);
+            touched.add(hash);
+        }
+        if (!duplicate) repository.refresh(blobName(hash));
+        return new Ingest(hash, duplicate);
+    }
+
+    /** The insert for an ingested blob has finished, successfully or not. A blob nothing refers to is left for GC. */
+    public void unpin(String hash) {
+        synchronized (lock) {
+            release(pending, hash);
+        }
+    }
+
+    /** A row pointing at filePath was inserted. */
+    public void added(String filePath) {
+        if (filePath == null) return;
+        String hash = hashOf(filePath);
+        synchronized (lock) {
+            if (refs != null) refs.merge(hash != null ? hash : PdfRepository.storedName(filePath), 1, Integer::sum);
+        }
+    }
+
+    /** Rows now referring to a blob (0 if none or unknown). */
+    public int references(String hash) {
+        synchronized (lock) {
+            return refs == null ? 0 : refs.getOrDefault(hash, 0);
+        }
+    }
+
+    /**
+     * A row pointing at filePath was deleted. Blobs are left for GC; a plain file name is deleted
+     * straight away once no other row uses it (the old behaviour, now reference-checked).
+     */
+    public void released(String filePath) {
+        if (filePath == null) return;
+        String hash = hashOf(filePath);
+        String stored = PdfRepository.storedName(filePath);
+        String key = hash != null ? hash : stored;
+        synchronized (lock) {
+            // Without counts we cannot tell whether another row still needs the file: keep it
+            boolean fresh = refs == null;
+            if (fresh && !loadRefs()) return;
+            // Freshly counted after the delete, the row is already gone from the counts
+            int left = fresh ? refs.getOrDefault(key, 0) : release(refs, key);
+            if (hash != null || left > 0) return;
+            // Counts kept in memory can miss rows written by other processes; confirm before deleting
+            if (!fresh && (!loadRefs() || refs.getOrDefault(key, 0) > 0)) return;
+        }
+        PdfRepository.PdfEntry pdf = repository.find(stored);
+        if (pdf == null) return;
+        try {
+            Files.deleteIfExists(pdf.getPath());
+            repository.refresh(pdf.getName());
+            System.out.println("Associated PDF file deleted: " + filePath);
+        } catch (IOException e) {
+            System.out.println("Failed to delete PDF file: " + filePath);
+        }
+    }
+
+    /**
+     * Deletes blobs that no row refers to, counting references from the catalog first so counts that
+     * drifted (rows written by another process) can never cost a referenced blob
+     * @throws SQLException if the catalog cannot be read; nothing is deleted then
+     */
+    public GcReport collectGarbage() throws SQLException {
+        long start = System.currentTimeMillis();
+        GcReport report = new GcReport();
+        synchronized (lock) {
+            touched.clear();
+        }
+        Map<String, Integer> counts = count(catalog.papers());
+        long cutoff = System.currentTimeMillis() - graceMillis;
+
+        synchronized (lock) {
+            try (DirectoryStream<Path> dir = Files.newDirectoryStream(repository.getDirectory())) {
+                for (Path file : dir) {
+                    String name = file.getFileName().toString();
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    boolean old = attrs.lastModifiedTime().toMillis() < cutoff;
+                    if (name.startsWith(".upload-") && name.endsWith(".part")) {
+                        if (old && Files.deleteIfExists(file)) report.staleUploads++;
+                        continue;
+                    }
+                    Matcher m = BLOB_NAME.matcher(name);
+                    if (!m.matches()) continue;
+                    String hash = m.group(1);
+                    report.blobs++;
+                    if (counts.getOrDefault(hash, 0) > 0 || pending.containsKey(hash) || touched.contains(hash)) {
+                        report.referenced++;
+                        continue;
+                    }
+                    if (!old) continue;
+                    if (Files.deleteIfExists(file)) {
+                        repository.refresh(name);
+                        report.reclaimed++;
+                        report.reclaimedBytes += attrs.size();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("[BlobStore] GC could not list " + repository.getDirectory() + ": " + e.getMessage());
+            }
+            // Rows added while the catalog was being read are in the old counts, not the new ones
+            if (refs != null) {
+                for (String hash : touched) counts.put(hash, Math.max(counts.getOrDefault(hash, 0), refs.getOrDefault(hash, 0)));
+            }
+            refs = counts;
+        }
+        report.elapsedMillis = System.currentTimeMillis() - start;
+        if (report.reclaimed > 0 || report.staleUploads > 0) {
+            System.out.println("[BlobStore] Reclaimed " + report.reclaimed + " blobs (" + report.reclaimedBytes + " bytes) and "
+                    + report.staleUploads + " stale uploads; " + report.referenced + " of " + report.blobs + " blobs in use");
+        }
+        return report;
+    }
+
+    /** Runs GC every intervalMillis on a daemon thread. */
+    public synchronized void startGc(long intervalMillis) {
+        if (gcTimer != null || intervalMillis <= 0) return;
+        gcTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "blob-gc");
+            t.setDaemon(true);
+            return t;
+        });
+        gcTimer.scheduleWithFixedDelay(() -> {
+            try {
+                collectGarbage();
+            } catch (SQLException e) {
+                System.err.println("[BlobStore] GC skipped, catalog unavailable: " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("[BlobStore] GC failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (gcTimer != null) gcTimer.shutdownNow();
+    }
+
+    // Caller holds lock
+    private boolean loadRefs() {
+        try {
+            refs = count(catalog.papers());
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[BlobStore] Could not count references: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Blob rows count under their hash, plain rows under their file name
+    private static Map<String, Integer> count(List<QuestionPaper> papers) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (QuestionPaper p : papers) {
+            if (p.getFilePath() == null) continue;
+            String hash = hashOf(p.getFilePath());
+            counts.merge(hash != null ? hash : PdfRepository.storedName(p.getFilePath()), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static int release(Map<String, Integer> counts, String key) {
+        Integer n = counts.get(key);
+        if (n == null || n <= 1) {
+            counts.remove(key);
+            return 0;
+        }
+        counts.put(key, n - 1);
+        return n - 1;
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Directories cannot be opened for sync on Windows; the rename is still durable there
+        }
+    }
+}
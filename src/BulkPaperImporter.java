@@ -0,0 +1,208 @@
+// Streaming bulk import for POST /papers/bulk
+// Reads a JSON array or NDJSON with Jackson's streaming parser, so only one batch of rows is in
+// memory at a time, and inserts each batch as one JDBC batch/transaction.
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BulkPaperImporter {
+
+    /** Outcome of one import. Row numbers are 1-based positions in the input. */
+    public static final class Report {
+        private final List<Integer> ids = new ArrayList<>();
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private int inserted;
+        private int failed;
+        private boolean errorsTruncated;
+        private String aborted;
+        private boolean databaseUnavailable;
+        private long elapsedMillis;
+
+        /** Generated id per input row, null where the row failed. */
+        public List<Integer> getIds() { return ids; }
+        public List<Map<String, Object>> getErrors() { return errors; }
+        public int getInserted() { return inserted; }
+        public int getFailed() { return failed; }
+        public boolean isErrorsTruncated() { return errorsTruncated; }
+        /** Why reading stopped early (malformed input), or null. Rows before that point were still imported. */
+        public String getAborted() { return aborted; }
+        /** True when the import stopped because the database could not be reached. */
+        public boolean isDatabaseUnavailable() { return databaseUnavailable; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    // Column sizes from setup-database.sql, checked up front so one long value cannot sink a batch
+    private static final int MAX_SUBJECT = 100;
+    private static final int MAX_FILE_PATH = 255;
+    private static final int MAX_STATUS = 50;
+
+    private final QuestionPaperService service;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+    private final int maxErrors;
+
+    /**
+     * @param service where rows are inserted
+     * @param mapper used to read each row object
+     * @param batchSize rows per JDBC batch (and per transaction)
+     * @param maxErrors per-row errors listed in the report; later ones are only counted
+     */
+    public BulkPaperImporter(QuestionPaperService service, ObjectMapper mapper, int batchSize, int maxErrors) {
+        this.service = service;
+        this.mapper = mapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxErrors = Math.max(0, maxErrors);
+    }
+
+    /**
+     * Imports rows from a JSON array (`[{...}, {...}]`) or NDJSON (one object per line)
+     * @param in request body
+     * @return ids and per-row errors; malformed JSON or an unreachable database stops the import
+     *         and is reported in aborted
+     */
+    public Report importFrom(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        Report report = new Report();
+        List<QuestionPaper> batch = new ArrayList<>(batchSize);
+        List<Integer> batchRows = new ArrayList<>(batchSize);
+        int row = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) token = parser.nextToken();
+            // NDJSON is just a sequence of root-level objects to the parser
+            while (token != null && token != JsonToken.END_ARRAY) {
+                row++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    fail(report, row, "expected a JSON object");
+                } else {
+                    JsonNode node = mapper.readTree(parser);
+                    try {
+                        batch.add(toPaper(node));
+                        batchRows.add(row);
+                    } catch (IllegalArgumentException e) {
+                        fail(report, row, e.getMessage());
+                    }
+                }
+                if (batch.size() >= batchSize && !flush(report, batch, batchRows)) break;
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            report.aborted = "Malformed JSON after row " + row + ": " + e.getOriginalMessage();
+        }
+        if (!report.databaseUnavailable) flush(report, batch, batchRows);
+        // Validation errors are recorded as rows are read, insert errors per batch
+        report.errors.sort(Comparator.comparingInt(e -> (Integer) e.get("row")));
+        report.elapsedMillis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    private static QuestionPaper toPaper(JsonNode node) {
+        String subject = text(node, "subject", MAX_SUBJECT, true);
+        int year = number(node, "year");
+        int semester = number(node, "semester");
+        String filePath = text(node, "filePath", MAX_FILE_PATH, true);
+        String status = text(node, "status", MAX_STATUS, false);
+        return new QuestionPaper(subject, year, semester, filePath, status == null ? "AVAILABLE" : status);
+    }
+
+    private static String text(JsonNode node, String field, int maxLength, boolean required) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) {
+            if (required) throw new IllegalArgumentException(field + " is required");
+            return null;
+        }
+        if (!v.isTextual()) throw new IllegalArgumentException(field + " must be a string");
+        String s = v.asText().trim();
+        if (s.isEmpty() && required) throw new IllegalArgumentException(field + " is required");
+        if (s.length() > maxLength) throw new IllegalArgumentException(field + " is longer than " + maxLength + " characters");
+        return s;
+    }
+
+    private static int number(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) throw new IllegalArgumentException(field + " is required");
+        if (v.isIntegralNumber() && v.canConvertToInt()) return v.intValue();
+        if (v.isTextual()) {
+            try {
+                return Integer.parseInt(v.asText().trim());
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new IllegalArgumentException(field + " must be an integer");
+    }
+
+    // Rows are reported in input order: ids has a slot for every row, including failed ones.
+    // Returns false if the database is unavailable and the import should stop.
+    private boolean flush(Report report, List<QuestionPaper> batch, List<Integer> batchRows) {
+        if (batch.isEmpty()) return true;
+        try {
+            int[] ids = service.addPapers(batch);
+            for (int i = 0; i < ids.length; i++) setId(report, batchRows.get(i), ids[i]);
+            report.inserted += ids.length;
+        } catch (SQLException batchError) {
+            if (!isRowError(batchError)) {
+                // Connection/server trouble: retrying row by row (or reading on) would only fail slower
+                for (int row : batchRows) fail(report, row, batchError.getMessage());
+                report.databaseUnavailable = true;
+                report.aborted = "Database error, import stopped: " + batchError.getMessage();
+                batch.clear();
+                batchRows.clear();
+                return false;
+            }
+            // The batch was rolled back; insert its rows one by one to find the bad ones
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    int id = service.addPapers(batch.subList(i, i + 1))[0];
+                    setId(report, batchRows.get(i), id);
+                    report.inserted++;
+                } catch (SQLException rowError) {
+                    fail(report, batchRows.get(i), rowError.getMessage());
+                }
+            }
+        }
+        batch.clear();
+        batchRows.clear();
+        return true;
+    }
+
+    // Something wrong with a row (bad data, constraint) rather than with the database
+    private static boolean isRowError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof BatchUpdateException
+                || (state != null && (state.startsWith("22") || state.startsWith("23")));
+    }
+
+    private static void setId(Report report, int row, int id) {
+        while (report.ids.size() < row) report.ids.add(null);
+        report.ids.set(row - 1, id);
+    }
+
+    private void fail(Report report, int row, String message) {
+        while (report.ids.size() < row) report.ids.add(null);
+        report.failed++;
+        if (report.errors.size() < maxErrors) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("row", row);
+            error.put("error", message);
+            report.errors.add(error);
+        } else {
+            report.errorsTruncated = true;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+// Read-through cache in front of QuestionPaperDAO
+// Serves the catalog, id lookups and searches from memory; writes update or invalidate it.
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CachingQuestionPaperDAO extends QuestionPaperDAO {
+
+    /**
+     * The whole table, ordered by id. Writes through this DAO update it in place (O(log n) each);
+     * the list and facet index derived from it are rebuilt on the next read that needs them.
+     */
+    private static final class Snapshot {
+        private final ConcurrentNavigableMap<Integer, QuestionPaper> rows;
+        final NavigableMap<Integer, QuestionPaper> byId;
+        final long loadedAt;
+        private List<QuestionPaper> all;
+        private PaperFacetIndex facets;
+
+        Snapshot(ConcurrentNavigableMap<Integer, QuestionPaper> rows, long loadedAt) {
+            this.rows = rows;
+            this.byId = Collections.unmodifiableNavigableMap(rows);
+            this.loadedAt = loadedAt;
+        }
+
+        synchronized List<QuestionPaper> all() {
+            if (all == null) all = Collections.unmodifiableList(new ArrayList<>(rows.values()));
+            return all;
+        }
+
+        // Built on the first faceted search after a change
+        synchronized PaperFacetIndex facets() {
+            if (facets == null) facets = new PaperFacetIndex(all());
+            return facets;
+        }
+
+        synchronized void put(QuestionPaper paper) {
+            rows.put(paper.getId(), paper);
+            all = null;
+            facets = null;
+        }
+
+        synchronized QuestionPaper remove(int id) {
+            QuestionPaper removed = rows.remove(id);
+            if (removed != null) {
+                all = null;
+                facets = null;
+            }
+            return removed;
+        }
+    }
+
+    private static final class SearchEntry {
+        final List<QuestionPaper> results;
+        final long loadedAt;
+
+        SearchEntry(List<QuestionPaper> results, long loadedAt) {
+            this.results = results;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final long ttlMs;
+    private final Map<String, SearchEntry> searchCache;
+
+    private volatile Snapshot snapshot;
+    // One thread loads the table on a miss; the others wait for its snapshot
+    private final Object loadLock = new Object();
+    // Bumped on every write so a load that raced with a write is not installed
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachingQuestionPaperDAO() {
+        this(AppConfig.getLong("CATALOG_CACHE_TTL_MS", 0), AppConfig.getInt("CATALOG_CACHE_SEARCH_MAX", 256));
+    }
+
+    /**
+     * @param ttlMs how long cached data is trusted (0 = until the next write through this DAO)
+     * @param maxSearchEntries maximum number of cached search results (LRU eviction)
+     */
+    public CachingQuestionPaperDAO(long ttlMs, int maxSearchEntries) {
+        this.ttlMs = ttlMs;
+        this.searchCache = new LinkedHashMap<String, SearchEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SearchEntry> eldest) {
+                if (size() > maxSearchEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public List<QuestionPaper> viewAllPapers() {
+        return loadSnapshot().all();
+    }
+
+    @Override
+    public QuestionPaper findById(int id) {
+        Snapshot s = snapshot;
+        if (s != null && isFresh(s.loadedAt)) {
+            hits.incrementAndGet();
+            return s.byId.get(id);
+        }
+        // No catalog in memory yet: a primary-key query is cheaper than loading the whole table
+        misses.incrementAndGet();
+        return super.findById(id);
+    }
+
+    @Override
+    public List<QuestionPaper> findPage(int afterId, int limit) {
+        List<QuestionPaper> page = new ArrayList<>(Math.min(limit, 1024));
+        for (QuestionPaper p : loadSnapshot().byId.tailMap(afterId, false).values()) {
+            if (page.size() >= limit) break;
+            page.add(p);
+        }
+        return page;
+    }
+
+    // The catalog is already in memory here, so "streaming" just walks the snapshot
+    @Override
+    public void streamAllPapers(PaperConsumer consumer) throws IOException {
+        for (QuestionPaper p : loadSnapshot().byId.values()) consumer.accept(p);
+    }
+
+    // A write drops the snapshot's index, so it is rebuilt on the next faceted search
+    @Override
+    public PaperFacetIndex facetIndex() {
+        return loadSnapshot().facets();
+    }
+
+    @Override
+    public List<QuestionPaper> searchPaper(String subject, int year, int semester) {
+        String key = searchKey(subject, year, semester);
+        synchronized (searchCache) {
+            SearchEntry entry = searchCache.get(key);
+            if (entry != null && isFresh(entry.loadedAt)) {
+                hits.incrementAndGet();
+                return entry.results;
+            }
+        }
+        misses.incrementAndGet();
+        long gen = generation.get();
+        List<QuestionPaper> results;
+        // Every client is served this result, so it must not come from a replica behind a recent write
+        try {
+            results = Collections.unmodifiableList(DatabaseConnection.runIn(DatabaseConnection.forSharedCache(),
+                    () -> querySearch(subject, year, semester)));
+        } catch (SQLException e) {
+            // Don't cache an empty result caused by a database error
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+        synchronized (searchCache) {
+            if (gen == generation.get()) searchCache.put(key, new SearchEntry(results, System.currentTimeMillis()));
+        }
+        return results;
+    }
+
+    @Override
+    public int addPaper(QuestionPaper paper) {
+        int id = super.addPaper(paper);
+        synchronized (this) {
+            generation.incrementAndGet();
+            Snapshot s = snapshot;
+            if (id > 0 && s != null) {
+                s.put(new QuestionPaper(id, paper.getSubject(), paper.getYear(),
+                        paper.getSemester(), paper.getFilePath(), paper.getStatus()));
+            } else {
+                snapshot = null;
+            }
+        }
+        invalidateSearch(id > 0 ? paper : null);
+        return id;
+    }
+
+    @Override
+    public int[] addPapers(List<QuestionPaper> papers) throws SQLException {
+        // On failure the batch was rolled back, so there is nothing to update
+        int[] ids = super.addPapers(papers);
+        boolean allKeys = true;
+        for (int id : ids) allKeys &= id > 0;
+        synchronized (this) {
+            generation.incrementAndGet();
+            Snapshot s = snapshot;
+            if (s != null && !allKeys) {
+                snapshot = null;
+            } else if (s != null) {
+                for (int i = 0; i < ids.length; i++) {
+                    QuestionPaper p = papers.get(i);
+                    s.put(new QuestionPaper(ids[i], p.getSubject(), p.getYear(), p.getSemester(),
+                            p.getFilePath(), p.getStatus()));
+                }
+            }
+        }
+        invalidateSearch(null);
+        return ids;
+    }
+
+    @Override
+    public void deletePaper(int id) throws RuntimeException {
+        QuestionPaper removed = null;
+        try {
+            super.deletePaper(id);
+        } finally {
+            // Invalidate even on failure: the row may have been removed by someone else
+            synchronized (this) {
+                generation.incrementAndGet();
+                Snapshot s = snapshot;
+                if (s != null) removed = s.remove(id);
+            }
+            invalidateSearch(removed);
+        }
+    }
+
+    /** Drops everything; the next read reloads from the database. */
+    public void invalidateAll() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+        invalidateSearch(null);
+    }
+
+    /**
+     * Cache counters
+     * @return hits, misses, search evictions and current sizes
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        Snapshot s = snapshot;
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("searchEvictions", evictions.get());
+        stats.put("catalogSize", s == null ? -1L : s.byId.size());
+        synchronized (searchCache) {
+            stats.put("searchEntries", (long) searchCache.size());
+        }
+        return stats;
+    }
+
+    private Snapshot loadSnapshot() {
+        Snapshot s = snapshot;
+        if (s != null && isFresh(s.loadedAt)) {
+            hits.incrementAndGet();
+            return s;
+        }
+        synchronized (loadLock) {
+            // Loaded by the thread we waited for
+            s = snapshot;
+            if (s != null && isFresh(s.loadedAt)) {
+                hits.incrementAndGet();
+                return s;
+            }
+            misses.incrementAndGet();
+            long gen = generation.get();
+            long now = System.currentTimeMillis();
+            ConcurrentNavigableMap<Integer, QuestionPaper> rows = new ConcurrentSkipListMap<>();
+            try {
+                for (QuestionPaper p : DatabaseConnection.runIn(DatabaseConnection.forSharedCache(), this::queryAllPapers)) {
+                    rows.put(p.getId(), p);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return new Snapshot(rows, now);
+            }
+            Snapshot loaded = new Snapshot(rows, now);
+            synchronized (this) {
+                if (gen == generation.get()) snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    private boolean isFresh(long loadedAt) {
+        return ttlMs <= 0 || System.currentTimeMillis() - loadedAt < ttlMs;
+    }
+
+    // Searches match all three columns exactly, so a write only affects one key
+    private void invalidateSearch(QuestionPaper changed) {
+        synchronized (searchCache) {
+            if (changed == null) searchCache.clear();
+            else searchCache.remove(searchKey(changed.getSubject(), changed.getYear(), changed.getSemester()));
+        }
+    }
+
+    // MySQL's default collation compares subjects case-insensitively, so the key does too
+    private static String searchKey(String subject, int year, int semester) {
+        return subject.trim().toLowerCase(Locale.ROOT) + '\u0000' + year + '\u0000' + semester;
+    }
+}
@@ -0,0 +1,319 @@
+// Bounded JDBC connection pool used by DatabaseConnection
+// Keeps physical connections open between DAO calls so requests skip the TCP + auth handshake.
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConnectionPool {
+
+    /** The pool was busy: no connection came free within the wait timeout. Nothing is wrong with the database. */
+    public static final class WaitTimeoutException extends SQLTransientConnectionException {
+        private static final long serialVersionUID = 1L;
+
+        WaitTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private final String name;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitMs;
+    private final long idleTimeoutMs;
+    private final long validateAfterMs;
+    private final long leakThresholdMs;
+    private final boolean traceLeaks;
+
+    // Idle connections, most recently used first (keeps a hot working set)
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    // Connections currently handed out, used for leak detection
+    private final Map<PooledConnection, Boolean> active = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+
+    // Stats
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String name, String url, String user, String password,
+                          int minSize, int maxSize, long maxWaitMs, long idleTimeoutMs,
+                          long validateAfterMs, long leakThresholdMs, boolean traceLeaks) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+        this.name = name;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = Math.max(0, Math.min(minSize, maxSize));
+        this.maxSize = maxSize;
+        this.maxWaitMs = maxWaitMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validateAfterMs = validateAfterMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.traceLeaks = traceLeaks;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMs, 30_000L) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection. Closing the returned connection hands it back to the pool.
+     * @return pooled connection
+     * @throws WaitTimeoutException if every connection stayed in use for the whole wait timeout
+     * @throws SQLException if a connection could not be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool " + name + " is shut down");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new WaitTimeoutException("Timed out after " + maxWaitMs + " ms waiting for a connection from " + name
+                        + " (active=" + active.size() + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        totalWaitNanos.addAndGet(System.nanoTime() - start);
+
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc)) break;
+                destroy(pc);
+            }
+            if (pc == null) pc = create();
+            pc.borrowedAt = System.currentTimeMillis();
+            // Capturing a stack trace costs more than the rest of the borrow, so only when debugging leaks
+            pc.borrowSite = traceLeaks && leakThresholdMs > 0 ? new Throwable("Connection borrowed here") : null;
+            pc.leakReported = false;
+            active.put(pc, Boolean.TRUE);
+            borrowed.incrementAndGet();
+            return pc.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Opens connections up to the configured minimum. Failures are logged, not thrown. */
+    public void warmUp() {
+        while (!closed && totalConnections.get() < minSize) {
+            try {
+                PooledConnection pc = create();
+                pc.lastUsed = System.currentTimeMillis();
+                idle.offerLast(pc);
+            } catch (SQLException e) {
+                System.err.println("[" + name + "] Could not pre-open connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Snapshot of pool counters (sizes, borrows, timeouts, leaks, average wait)
+     * @return ordered map of stat name to value
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        long borrows = borrowed.get();
+        stats.put("total", (long) totalConnections.get());
+        stats.put("active", (long) active.size());
+        stats.put("idle", (long) idle.size());
+        stats.put("max", (long) maxSize);
+        stats.put("waiting", (long) permits.getQueueLength());
+        stats.put("borrowed", borrows);
+        stats.put("created", created.get());
+        stats.put("destroyed", destroyed.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("validationFailures", validationFailures.get());
+        stats.put("leaksDetected", leaksDetected.get());
+        stats.put("avgWaitMicros", borrows == 0 ? 0L : totalWaitNanos.get() / borrows / 1000);
+        return stats;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Closes idle connections and stops housekeeping. Borrowed connections are closed when returned. */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) destroy(pc);
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        created.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            if (pc.physical.isClosed()) return false;
+            // Only ping connections that sat idle for a while; hot connections skip the round trip
+            if (System.currentTimeMillis() - pc.lastUsed >= validateAfterMs && !pc.physical.isValid(2)) {
+                validationFailures.incrementAndGet();
+                return false;
+            }
+            return true;
+        } catch (SQLException e) {
+            validationFailures.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        active.remove(pc);
+        boolean reusable = !closed;
+        try {
+            if (pc.physical.isClosed()) {
+                reusable = false;
+            } else if (!pc.physical.getAutoCommit()) {
+                // Never hand out a connection with a half-finished transaction
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        if (reusable) {
+            pc.lastUsed = System.currentTimeMillis();
+            pc.borrowSite = null;
+            idle.offerFirst(pc);
+        } else {
+            destroy(pc);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection pc) {
+        try {
+            pc.physical.close();
+        } catch (SQLException ignored) {
+            // Connection is being discarded anyway
+        }
+        totalConnections.decrementAndGet();
+        destroyed.incrementAndGet();
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        // Idle eviction: close connections unused for idleTimeoutMs while staying above minSize
+        if (idleTimeoutMs > 0) {
+            for (PooledConnection pc : idle) {
+                if (totalConnections.get() <= minSize) break;
+                if (now - pc.lastUsed >= idleTimeoutMs && idle.remove(pc)) destroy(pc);
+            }
+        }
+
+        // Leak detection: report connections held longer than the threshold (once per borrow)
+        if (leakThresholdMs > 0) {
+            for (PooledConnection pc : active.keySet()) {
+                if (!pc.leakReported && now - pc.borrowedAt >= leakThresholdMs) {
+                    pc.leakReported = true;
+                    leaksDetected.incrementAndGet();
+                    System.err.println("[" + name + "] Possible connection leak: held for "
+                            + (now - pc.borrowedAt) + " ms" + (traceLeaks ? "" : " (set DB_POOL_LEAK_TRACE=true to log where it was borrowed)"));
+                    if (pc.borrowSite != null) pc.borrowSite.printStackTrace();
+                }
+            }
+        }
+
+        warmUp();
+    }
+
+    /** A physical connection plus bookkeeping. Each borrow gets a fresh proxy handle. */
+    private final class PooledConnection {
+        final Connection physical;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Handle(this));
+        }
+    }
+
+    /** Proxy handler: close() returns the connection to the pool, everything else is delegated. */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned = false;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pc.physical + "]";
+                default:
+                    if (returned) throw new SQLException("Connection has already been returned to the pool");
+                    try {
+                        return method.invoke(pc.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -1,23 +1,359 @@
 //Connecting database to java
+// Connections come from a shared pool; closing a connection returns it to the pool.
+// Writes always go to the primary (DB_URL). With DB_REPLICA_URLS set, reads made while serving a
+// client are spread round-robin over the replicas that pass the health check (reachable, and no
+// more than DB_REPLICA_MAX_LAG_MS behind). A client that inserted or deleted within the last
+// DB_READ_YOUR_WRITES_MS reads from the primary, so it sees its own change. Reads outside a client
+// scope (background jobs, the console) and loads into shared caches after a recent write also use
+// the primary.
 
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/questionpaper";
-    private static final String USER = "root";
-    private static final String PASSWORD = "soham1234";
+    private static final String URL = AppConfig.get("DB_URL", "jdbc:mysql://localhost:3306/questionpaper");
+    private static final String USER = AppConfig.get("DB_USER", "root");
+    private static final String PASSWORD = AppConfig.get("DB_PASS", "soham1234");
+
+    // Connector/J keeps a prepared-statement cache per physical connection, which the pool keeps alive
+    private static final String STATEMENT_CACHE_PARAMS =
+            "cachePrepStmts=true&useServerPrepStmts=true"
+            + "&prepStmtCacheSize=" + AppConfig.getInt("DB_STMT_CACHE_SIZE", 250)
+            + "&prepStmtCacheSqlLimit=2048"
+            // Sends an INSERT batch as multi-row INSERTs instead of one round trip per row
+            + "&rewriteBatchedStatements=true";
+
+    private static final long READ_YOUR_WRITES_MS = AppConfig.getLong("DB_READ_YOUR_WRITES_MS", 5000);
+    private static final long MAX_REPLICA_LAG_MS = AppConfig.getLong("DB_REPLICA_MAX_LAG_MS", 2000);
+
+    private static ConnectionPool pool;
+    // Null before the pool starts and after shutdown; read without the lock by recordWrite/getReadConnection
+    private static volatile List<Replica> replicas;
+    private static ScheduledExecutorService healthChecker;
+    private static final AtomicInteger nextReplica = new AtomicInteger();
+
+    // Who the current thread is reading for; see forClient/forSharedCache
+    private static final ThreadLocal<ReadScope> SCOPE = new ThreadLocal<>();
+    // Client -> time of its last write through this process; expired entries are dropped by the health checker
+    private static final Map<String, Long> lastWriteByClient = new ConcurrentHashMap<>();
+    private static volatile long lastWrite;
+
+    private static final Metrics.Counter PRIMARY_READS = Metrics.counter("qpms_db_reads_total",
+            "Read connections borrowed, by target", "target", "primary");
+
+    /** Read routing for the current thread; close it (or use runIn) when the request is done. */
+    public static final class ReadScope implements AutoCloseable {
+        private final String client;
+        private final boolean sharedCache;
+        private final ReadScope outer;
+
+        private ReadScope(String client, boolean sharedCache, ReadScope outer) {
+            this.client = client;
+            this.sharedCache = sharedCache;
+            this.outer = outer;
+        }
+
+        @Override
+        public void close() {
+            if (outer == null) SCOPE.remove();
+            else SCOPE.set(outer);
+        }
+    }
+
+    // One read replica: its own pool plus what the last health check found
+    private static final class Replica {
+        final String name;
+        // Driver timeouts for this connection only (DriverManager.setLoginTimeout would change every
+        // connection the JVM opens), so a dead replica cannot stall the health checker
+        final String probeUrl;
+        final ConnectionPool pool;
+        final Metrics.Counter reads;
+        volatile boolean healthy = true;
+        volatile long lagMs;
+        private Connection probe; // health checks only, so a busy pool cannot fail them
+
+        Replica(String name, String url, ConnectionPool pool) {
+            this.name = name;
+            this.probeUrl = withParams(url, "connectTimeout=2000&socketTimeout=5000");
+            this.pool = pool;
+            this.reads = Metrics.counter("qpms_db_reads_total", "Read connections borrowed, by target", "target", name);
+        }
+    }
+
+    private static synchronized ConnectionPool pool() throws SQLException {
+        if (pool == null) {
+            try {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("MySQL driver not found on classpath", e);
+            }
+            pool = new ConnectionPool(
+                    "db-pool",
+                    withParams(URL, STATEMENT_CACHE_PARAMS),
+                    USER,
+                    PASSWORD,
+                    AppConfig.getInt("DB_POOL_MIN", 2),
+                    AppConfig.getInt("DB_POOL_MAX", 10),
+                    AppConfig.getLong("DB_POOL_MAX_WAIT_MS", 5000),
+                    AppConfig.getLong("DB_POOL_IDLE_TIMEOUT_MS", 300_000),
+                    AppConfig.getLong("DB_POOL_VALIDATE_AFTER_MS", 1000),
+                    AppConfig.getLong("DB_POOL_LEAK_THRESHOLD_MS", 30_000),
+                    AppConfig.getBoolean("DB_POOL_LEAK_TRACE", false));
+            pool.warmUp();
+            startReplicas();
+        }
+        return pool;
+    }
+
+    // DB_REPLICA_URLS: comma-separated JDBC URLs; empty means every read goes to the primary
+    private static void startReplicas() {
+        List<Replica> list = new ArrayList<>();
+        String user = AppConfig.get("DB_REPLICA_USER", USER);
+        String password = AppConfig.get("DB_REPLICA_PASS", PASSWORD);
+        for (String url : AppConfig.get("DB_REPLICA_URLS", "").split(",")) {
+            if (url.trim().isEmpty()) continue;
+            String name = "replica-" + (list.size() + 1);
+            ConnectionPool replicaPool = new ConnectionPool(
+                    "db-" + name,
+                    withParams(url.trim(), STATEMENT_CACHE_PARAMS),
+                    user,
+                    password,
+                    AppConfig.getInt("DB_REPLICA_POOL_MIN", AppConfig.getInt("DB_POOL_MIN", 2)),
+                    AppConfig.getInt("DB_REPLICA_POOL_MAX", AppConfig.getInt("DB_POOL_MAX", 10)),
+                    // Waiting long for a busy replica is worse than asking the primary
+                    AppConfig.getLong("DB_REPLICA_MAX_WAIT_MS", 500),
+                    AppConfig.getLong("DB_POOL_IDLE_TIMEOUT_MS", 300_000),
+                    AppConfig.getLong("DB_POOL_VALIDATE_AFTER_MS", 1000),
+                    AppConfig.getLong("DB_POOL_LEAK_THRESHOLD_MS", 30_000),
+                    AppConfig.getBoolean("DB_POOL_LEAK_TRACE", false));
+            Replica replica = new Replica(name, url.trim(), replicaPool);
+            list.add(replica);
+            Metrics.gauge("qpms_db_replica_healthy", "1 if the replica passed its last health check", () -> replica.healthy ? 1 : 0, "replica", name);
+            Metrics.gauge("qpms_db_replica_lag_seconds", "Replication delay reported by the replica", () -> replica.lagMs / 1000.0, "replica", name);
+        }
+        replicas = Collections.unmodifiableList(list);
+        if (list.isEmpty()) return;
+        for (Replica r : list) {
+            checkReplica(r, user, password);
+            if (r.healthy) r.pool.warmUp();
+        }
+        long interval = AppConfig.getLong("DB_REPLICA_CHECK_INTERVAL_MS", 2000);
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        healthChecker.scheduleWithFixedDelay(() -> {
+            for (Replica r : list) checkReplica(r, user, password);
+            long cutoff = System.currentTimeMillis() - READ_YOUR_WRITES_MS;
+            lastWriteByClient.values().removeIf(t -> t < cutoff);
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        System.out.println("[DatabaseConnection] Reads are spread over " + list.size() + " replica(s)");
+    }
+
+    // Reachable and caught up? Lag comes from SHOW REPLICA STATUS (MySQL 8.0.22+) or SHOW SLAVE STATUS;
+    // a server that is not replicating (e.g. a second standalone instance for testing) counts as lag 0
+    private static void checkReplica(Replica r, String user, String password) {
+        boolean was = r.healthy;
+        try {
+            if (r.probe == null || !r.probe.isValid(2)) {
+                if (r.probe != null) {
+                    try {
+                        r.probe.close();
+                    } catch (SQLException ignored) {
+                    }
+                }
+                r.probe = DriverManager.getConnection(r.probeUrl, user, password);
+            }
+            long lag = replicationLagMs(r.probe);
+            r.lagMs = Math.max(0, lag);
+            r.healthy = lag >= 0 && lag <= MAX_REPLICA_LAG_MS;
+            if (was != r.healthy) {
+                System.out.println("[DatabaseConnection] " + r.name + (r.healthy ? " is back in rotation"
+                        : " taken out of rotation: " + (lag < 0 ? "replication stopped" : "lag " + lag + " ms")));
+            }
+        } catch (SQLException e) {
+            r.healthy = false;
+            if (was) System.err.println("[DatabaseConnection] " + r.name + " taken out of rotation: " + e.getMessage());
+            if (r.probe != null) {
+                try {
+                    r.probe.close();
+                } catch (SQLException ignored) {
+                }
+                r.probe = null;
+            }
+        }
+    }
+
+    // Milliseconds behind the source; 0 if not a replica or not allowed to ask, -1 if replication is stopped
+    private static long replicationLagMs(Connection conn) throws SQLException {
+        String[][] queries = {
+                {"SHOW REPLICA STATUS", "Seconds_Behind_Source"},
+                {"SHOW SLAVE STATUS", "Seconds_Behind_Master"}
+        };
+        for (String[] q : queries) {
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(q[0])) {
+                if (!rs.next()) return 0;
+                long seconds = rs.getLong(q[1]);
+                return rs.wasNull() ? -1 : seconds * 1000;
+            } catch (SQLException e) {
+                // Older server (no REPLICA syntax) or missing REPLICATION CLIENT privilege: try the next form
+                if (!conn.isValid(2)) throw e;
+            }
+        }
+        return 0;
+    }
 
     public static Connection getConnection() {
         Connection conn = null;
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            conn = DriverManager.getConnection(URL, USER, PASSWORD);
-        } catch (ClassNotFoundException | SQLException e) {
+            conn = pool().getConnection();
+        } catch (SQLException e) {
             e.printStackTrace();
         }
         return conn;
     }
+
+    /**
+     * A connection for reading: a healthy replica unless the current scope needs the primary
+     * (see the class comment). Falls back to the primary when no replica can be borrowed from.
+     */
+    public static Connection getReadConnection() {
+        List<Replica> list;
+        try {
+            pool();
+            list = replicas;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        // Null if shutdown ran since pool(): read from the primary
+        if (list != null && !list.isEmpty() && !needsPrimary()) {
+            int start = Math.floorMod(nextReplica.getAndIncrement(), list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Replica r = list.get((start + i) % list.size());
+                if (!r.healthy) continue;
+                try {
+                    Connection conn = r.pool.getConnection();
+                    r.reads.inc();
+                    return conn;
+                } catch (ConnectionPool.WaitTimeoutException busy) {
+                    // A full pool just means busy: try the next replica, keep this one in rotation
+                } catch (SQLException e) {
+                    // Down until the health check says otherwise
+                    r.healthy = false;
+                    System.err.println("[DatabaseConnection] " + r.name + " taken out of rotation: " + e.getMessage());
+                }
+            }
+        }
+        PRIMARY_READS.inc();
+        return getConnection();
+    }
+
+    /**
+     * Reads on this thread are made for client (e.g. the remote address) until the scope is closed
+     * @return scope to close when the request is done
+     */
+    public static ReadScope forClient(String client) {
+        ReadScope scope = new ReadScope(client, false, SCOPE.get());
+        SCOPE.set(scope);
+        return scope;
+    }
+
+    /** Reads on this thread fill a cache every client sees, so they must include every write made here. */
+    public static ReadScope forSharedCache() {
+        ReadScope outer = SCOPE.get();
+        ReadScope scope = new ReadScope(outer == null ? null : outer.client, true, outer);
+        SCOPE.set(scope);
+        return scope;
+    }
+
+    /** Work done inside a ReadScope; see runIn. */
+    @FunctionalInterface
+    public interface ScopedRead<T, E extends Exception> {
+        T get() throws E;
+    }
+
+    /**
+     * Runs read with scope in effect, then closes the scope
+     * @param scope from forClient or forSharedCache
+     * @return what read returned
+     */
+    public static <T, E extends Exception> T runIn(ReadScope scope, ScopedRead<T, E> read) throws E {
+        try {
+            return read.get();
+        } finally {
+            scope.close();
+        }
+    }
+
+    /** Called after an insert or delete, committed or not: starts the current client's read-your-writes window. */
+    public static void recordWrite() {
+        long now = System.currentTimeMillis();
+        lastWrite = now;
+        // Per-client times only steer replica reads, and the health checker that expires them runs only with replicas
+        List<Replica> list = replicas;
+        if (list == null || list.isEmpty()) return;
+        ReadScope scope = SCOPE.get();
+        if (scope != null && scope.client != null) lastWriteByClient.put(scope.client, now);
+    }
+
+    private static boolean needsPrimary() {
+        ReadScope scope = SCOPE.get();
+        if (scope == null) return true;
+        long cutoff = System.currentTimeMillis() - READ_YOUR_WRITES_MS;
+        if (scope.sharedCache) return lastWrite >= cutoff;
+        if (scope.client == null) return true;
+        Long wrote = lastWriteByClient.get(scope.client);
+        return wrote != null && wrote >= cutoff;
+    }
+
+    /**
+     * Current pool counters (total/active/idle connections, borrows, timeouts, leaks)
+     * @return stats map, empty if the pool has not been started yet
+     */
+    public static synchronized Map<String, Long> getPoolStats() {
+        return pool == null ? Map.of() : pool.getStats();
+    }
+
+    /** Closes all pooled connections (used on server shutdown). */
+    public static synchronized void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+        if (replicas != null) {
+            for (Replica r : replicas) {
+                r.pool.shutdown();
+                if (r.probe != null) {
+                    try {
+                        r.probe.close();
+                    } catch (SQLException ignored) {
+                    }
+                }
+            }
+            replicas = null;
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    static String withParams(String url, String params) {
+        return url + (url.contains("?") ? "&" : "?") + params;
+    }
 }
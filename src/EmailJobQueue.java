@@ -0,0 +1,184 @@
+// Background queue for sending question papers by email
+// The HTTP request only enqueues a job; worker threads do the SMTP conversation.
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EmailJobQueue {
+
+    public enum Status { QUEUED, SENDING, SENT, FAILED }
+
+    /** One email request and its progress. Timestamps are epoch millis (0 = not reached yet). */
+    public static class EmailJob {
+        private final String id;
+        private final int paperId;
+        private final long queuedAt;
+        private volatile Status status = Status.QUEUED;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile String error;
+        private final int recipientCount;
+        private final AtomicInteger sentCount = new AtomicInteger();
+        // Failed recipient -> reason (bulk jobs)
+        private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+        EmailJob(String id, int paperId, int recipientCount) {
+            this.id = id;
+            this.paperId = paperId;
+            this.recipientCount = recipientCount;
+            this.queuedAt = System.currentTimeMillis();
+        }
+
+        public String getId() { return id; }
+        public int getPaperId() { return paperId; }
+        public Status getStatus() { return status; }
+        public long getQueuedAt() { return queuedAt; }
+        public long getStartedAt() { return startedAt; }
+        public long getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+        public int getRecipientCount() { return recipientCount; }
+        public int getSentCount() { return sentCount.get(); }
+        public Map<String, String> getFailures() { return failures; }
+
+        // Time spent waiting for a worker, and time spent talking to the mail server
+        public long getQueueMillis() { return startedAt == 0 ? 0 : startedAt - queuedAt; }
+        public long getSendMillis() { return finishedAt == 0 || startedAt == 0 ? 0 : finishedAt - startedAt; }
+    }
+
+    private final ExecutorService workers;
+    private final Map<String, EmailJob> jobs = new ConcurrentHashMap<>();
+    // Finished jobs in the order they finished; prune() forgets them from the head
+    private final ConcurrentLinkedQueue<EmailJob> finished = new ConcurrentLinkedQueue<>();
+    private final int retention;
+
+    public EmailJobQueue() {
+        this(AppConfig.getInt("EMAIL_WORKERS", 4), AppConfig.getInt("EMAIL_QUEUE_CAPACITY", 10_000),
+                AppConfig.getInt("EMAIL_JOB_RETENTION", 1000));
+    }
+
+    /**
+     * @param workerCount number of concurrent SMTP sends
+     * @param capacity maximum number of jobs waiting for a worker
+     * @param retention how many jobs (including finished ones) to remember for status queries
+     */
+    public EmailJobQueue(int workerCount, int capacity, int retention) {
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(capacity), r -> {
+                    Thread t = new Thread(r, "email-worker-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.retention = Math.max(1, retention);
+    }
+
+    /**
+     * Queues a question paper to be emailed
+     * @param recipientEmail Email address of the recipient
+     * @param paper The question paper to send
+     * @return the queued job
+     * @throws IllegalStateException if the queue is full
+     */
+    public EmailJob submit(String recipientEmail, QuestionPaper paper) {
+        EmailJob job = new EmailJob(UUID.randomUUID().toString(), paper.getId(), 1);
+        return enqueue(job, () -> run(job, recipientEmail, paper));
+    }
+
+    /**
+     * Queues a question paper to be emailed to many recipients over one SMTP connection
+     * @param recipients Email addresses of the recipients
+     * @param paper The question paper to send
+     * @return the queued job; per-recipient failures are reported in its failures map
+     * @throws IllegalStateException if the queue is full
+     */
+    public EmailJob submitBulk(List<String> recipients, QuestionPaper paper) {
+        EmailJob job = new EmailJob(UUID.randomUUID().toString(), paper.getId(), recipients.size());
+        List<String> copy = new ArrayList<>(recipients);
+        return enqueue(job, () -> runBulk(job, copy, paper));
+    }
+
+    private EmailJob enqueue(EmailJob job, Runnable task) {
+        jobs.put(job.id, job);
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new IllegalStateException("Email queue is full, try again later");
+        }
+        prune();
+        return job;
+    }
+
+    /**
+     * @param id job id returned by submit
+     * @return the job, or null if unknown or already pruned
+     */
+    public EmailJob get(String id) {
+        return jobs.get(id);
+    }
+
+    /** Number of jobs waiting for a worker. */
+    public int getQueuedCount() {
+        return ((ThreadPoolExecutor) workers).getQueue().size();
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private void run(EmailJob job, String recipientEmail, QuestionPaper paper) {
+        job.startedAt = System.currentTimeMillis();
+        job.status = Status.SENDING;
+        boolean ok = false;
+        String error = null;
+        try {
+            ok = EmailService.sendQuestionPaper(recipientEmail, paper);
+            if (!ok) error = "Failed to send email";
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+        }
+        if (ok) job.sentCount.incrementAndGet();
+        // Timings are written before the final status so a SENT/FAILED job always has them
+        job.error = error;
+        job.finishedAt = System.currentTimeMillis();
+        job.status = ok ? Status.SENT : Status.FAILED;
+        finished.add(job);
+    }
+
+    private void runBulk(EmailJob job, List<String> recipients, QuestionPaper paper) {
+        job.startedAt = System.currentTimeMillis();
+        job.status = Status.SENDING;
+        try {
+            EmailService.sendQuestionPaperToAll(recipients, paper, (recipient, error) -> {
+                if (error == null) job.sentCount.incrementAndGet();
+                else job.failures.put(recipient, error);
+            });
+        } catch (RuntimeException e) {
+            job.error = e.getMessage();
+        }
+        int failed = job.recipientCount - job.sentCount.get();
+        if (failed > 0 && job.error == null) job.error = failed + " of " + job.recipientCount + " recipients failed";
+        job.finishedAt = System.currentTimeMillis();
+        job.status = failed == 0 ? Status.SENT : Status.FAILED;
+        finished.add(job);
+    }
+
+    // Forget the oldest finished jobs once more than `retention` are tracked
+    private void prune() {
+        while (jobs.size() > retention) {
+            EmailJob oldest = finished.poll();
+            if (oldest == null) return;
+            jobs.remove(oldest.id);
+        }
+    }
+}
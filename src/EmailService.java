@@ -3,14 +3,22 @@
 
 import jakarta.mail.*;
 import jakarta.mail.internet.*;
+import jakarta.mail.util.SharedByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
 
 public class EmailService {
     
     // Configuration
-    private static final String SMTP_HOST = "smtp.gmail.com";
-    private static final int SMTP_PORT = 587;
+    // SMTP_HOST/SMTP_PORT can point at a local SMTP stand-in for testing (set SMTP_STARTTLS=false)
+    private static final String SMTP_HOST = AppConfig.get("SMTP_HOST", "smtp.gmail.com");
+    private static final int SMTP_PORT = AppConfig.getInt("SMTP_PORT", 587);
+    private static final boolean SMTP_STARTTLS = AppConfig.getBoolean("SMTP_STARTTLS", true);
     
     // Use environment variables if set, otherwise use defaults
     private static final String SMTP_USER = System.getenv("SMTP_USER") != null
@@ -21,7 +29,34 @@ public class EmailService {
             ? System.getenv("SMTP_PASS")
             : "xjhvnwmhgynhqbfq";
     
-    private static final String PDF_BASE_DIR = "PDF";
+    // Long-lived session and a small pool of connected transports, so sends skip DNS/TCP/STARTTLS/AUTH
+    private static final int SMTP_POOL_SIZE = AppConfig.getInt("SMTP_POOL_SIZE", 2);
+    private static final long SMTP_IDLE_MS = AppConfig.getLong("SMTP_IDLE_MS", 60_000);
+    private static final LinkedBlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+    private static final Semaphore transportPermits = new Semaphore(Math.max(1, SMTP_POOL_SIZE), true);
+    private static volatile Session session;
+
+    // SMTP time per message (including a reconnect), exported at /metrics
+    private static final Metrics.Histogram SEND_OK = Metrics.histogram("qpms_email_send_duration_seconds",
+            "Time to hand one message to the SMTP server", "result", "sent");
+    private static final Metrics.Histogram SEND_FAILED = Metrics.histogram("qpms_email_send_duration_seconds",
+            "Time to hand one message to the SMTP server", "result", "failed");
+
+    /** A connected SMTP transport and when it was last used. */
+    private static final class PooledTransport {
+        Transport transport;
+        long lastUsed;
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /** Receives the outcome for each recipient of a bulk send (error is null on success). */
+    public interface RecipientListener {
+        void onResult(String recipient, String error);
+    }
     
     /**
      * Sends an email with a PDF attachment
@@ -41,51 +76,22 @@ public class EmailService {
             return false;
         }
         
+        PooledTransport pooled = null;
+        boolean healthy = false;
         try {
-            // Setup mail properties
-            Properties props = new Properties();
-            props.put("mail.smtp.host", SMTP_HOST);
-            props.put("mail.smtp.port", String.valueOf(SMTP_PORT));
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", "true");
-            props.put("mail.smtp.ssl.trust", SMTP_HOST);
-            
-            // Create session with authentication
-            Session session = Session.getInstance(props, new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(SMTP_USER, SMTP_PASS);
-                }
-            });
-            
-            // Create message
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(SMTP_USER));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipientEmail));
-            message.setSubject(subject);
-            
-            // Create text part
-            MimeBodyPart textPart = new MimeBodyPart();
-            textPart.setText(body, "utf-8");
-            
-            // Create attachment part
-            MimeBodyPart attachmentPart = new MimeBodyPart();
-            attachmentPart.attachFile(attachmentFile);
-            attachmentPart.setFileName(attachmentFile.getName());
-            
-            // Combine parts
-            Multipart multipart = new MimeMultipart();
-            multipart.addBodyPart(textPart);
-            multipart.addBodyPart(attachmentPart);
-            
-            message.setContent(multipart);
-            
-            // Send email
-            Transport.send(message);
+            Message message = buildMessage(recipientEmail, subject, body, attachmentFile, PdfRepository.cleanName(pdfFile));
+            pooled = borrowTransport();
+            send(pooled, message);
+            healthy = true;
             
             System.out.println("✅ Email sent successfully to " + recipientEmail);
             return true;
             
+        } catch (SendFailedException e) {
+            // Rejected address: the connection itself is still fine
+            healthy = true;
+            System.err.println("❌ Email sending failed: " + e.getMessage());
+            return false;
         } catch (MessagingException e) {
             System.err.println("❌ Email sending failed: " + e.getMessage());
             e.printStackTrace();
@@ -94,8 +100,219 @@ public class EmailService {
             System.err.println("❌ Unexpected error: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            if (pooled != null) returnTransport(pooled, healthy);
+        }
+    }
+
+    /**
+     * Sends the same PDF to many recipients over one SMTP connection.
+     * Each recipient gets their own message, so addresses are not disclosed to each other.
+     * @param recipients Email addresses
+     * @param subject Email subject
+     * @param body Email body text
+     * @param pdfFile PDF file to attach (can be relative to PDF folder or absolute path)
+     * @param listener notified after each recipient (may be null)
+     * @return number of recipients the message was delivered to
+     */
+    public static int sendEmailWithAttachmentToAll(List<String> recipients, String subject, String body,
+                                                   String pdfFile, RecipientListener listener) {
+        File attachmentFile = resolvePdfFile(pdfFile);
+        if (!attachmentFile.exists()) {
+            System.err.println("❌ PDF file not found: " + attachmentFile.getAbsolutePath());
+            if (listener != null) for (String r : recipients) listener.onResult(r, "PDF file not found");
+            return 0;
+        }
+
+        int sent = 0;
+        PooledTransport pooled = null;
+        boolean healthy = true;
+        try {
+            // Read and base64-encoded once; every message below reuses the same bytes
+            Attachment attachment = new Attachment(attachmentFile, PdfRepository.cleanName(pdfFile));
+            pooled = borrowTransport();
+            for (String recipient : recipients) {
+                String error = null;
+                try {
+                    send(pooled, buildMessage(recipient, subject, body, attachment));
+                    sent++;
+                } catch (SendFailedException e) {
+                    error = e.getMessage();
+                } catch (MessagingException e) {
+                    // send() already retried on a fresh connection; keep going with the rest
+                    error = e.getMessage();
+                }
+                if (listener != null) listener.onResult(recipient, error);
+            }
+        } catch (MessagingException e) {
+            healthy = false;
+            System.err.println("❌ Could not connect to SMTP server: " + e.getMessage());
+            if (listener != null) for (int i = sent; i < recipients.size(); i++) listener.onResult(recipients.get(i), e.getMessage());
+        } catch (IOException e) {
+            System.err.println("❌ Could not read PDF file: " + e.getMessage());
+            if (listener != null) for (String r : recipients) listener.onResult(r, "Could not read PDF file");
+        } finally {
+            if (pooled != null) returnTransport(pooled, healthy);
+        }
+        System.out.println("✅ Bulk email: " + sent + " of " + recipients.size() + " sent");
+        return sent;
+    }
+
+    // attachmentName: the name users know the file by (blobs are stored under their hash)
+    // Not private so bench/RequestBench can time MIME assembly without an SMTP server
+    static Message buildMessage(String recipientEmail, String subject, String body, File attachmentFile,
+                                        String attachmentName) throws MessagingException, IOException {
+        // Read and encoded from disk while the message is sent, so a large PDF is never held in memory
+        MimeBodyPart attachmentPart = new MimeBodyPart();
+        attachmentPart.attachFile(attachmentFile);
+        attachmentPart.setFileName(attachmentName);
+        return buildMessage(recipientEmail, subject, body, attachmentPart);
+    }
+
+    // One of many messages sharing an attachment that was encoded once (bulk sends)
+    static Message buildMessage(String recipientEmail, String subject, String body, Attachment attachment)
+            throws MessagingException {
+        return buildMessage(recipientEmail, subject, body, attachment.part());
+    }
+
+    private static Message buildMessage(String recipientEmail, String subject, String body, MimeBodyPart attachmentPart)
+            throws MessagingException {
+        // Create message
+        Message message = new MimeMessage(session());
+        message.setFrom(new InternetAddress(SMTP_USER));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipientEmail));
+        message.setSubject(subject);
+        
+        // Create text part
+        MimeBodyPart textPart = new MimeBodyPart();
+        textPart.setText(body, "utf-8");
+        
+        // Combine parts
+        Multipart multipart = new MimeMultipart();
+        multipart.addBodyPart(textPart);
+        multipart.addBodyPart(attachmentPart);
+        
+        message.setContent(multipart);
+        // Transport.send() does this implicitly; sendMessage() on a pooled transport does not
+        message.saveChanges();
+        return message;
+    }
+
+    /**
+     * A PDF attachment with its headers, encoded once. Parts made from it share the encoded bytes,
+     * and Jakarta Mail writes an already-encoded part as-is instead of encoding the file again.
+     */
+    static final class Attachment extends MimeBodyPart {
+        private final byte[] encoded;
+
+        Attachment(File file, String name) throws MessagingException, IOException {
+            attachFile(file);
+            setFileName(name);
+            // Sets Content-Type and picks the transfer encoding, as saveChanges() does for a message
+            updateHeaders();
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, file.length() / 3 * 4 + 4096));
+            writeTo(out);
+            encoded = out.toByteArray();
+        }
+
+        // A new part per message (a part belongs to one multipart), backed by the shared bytes
+        MimeBodyPart part() throws MessagingException {
+            return new MimeBodyPart(new SharedByteArrayInputStream(encoded));
         }
     }
+
+    // Sends on a pooled connection; if the server dropped it, reconnects once and retries
+    private static void send(PooledTransport pooled, Message message) throws MessagingException {
+        long start = System.nanoTime();
+        boolean sent = false;
+        try {
+            try {
+                pooled.transport.sendMessage(message, message.getAllRecipients());
+            } catch (SendFailedException e) {
+                throw e;
+            } catch (MessagingException | IllegalStateException e) {
+                // IllegalStateException: the transport was closed by an earlier failed reconnect
+                closeQuietly(pooled.transport);
+                pooled.transport = connect();
+                pooled.transport.sendMessage(message, message.getAllRecipients());
+            }
+            sent = true;
+        } finally {
+            (sent ? SEND_OK : SEND_FAILED).recordSince(start);
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+    }
+
+    private static Session session() {
+        Session s = session;
+        if (s == null) {
+            synchronized (EmailService.class) {
+                if (session == null) {
+                    // Setup mail properties
+                    Properties props = new Properties();
+                    props.put("mail.smtp.host", SMTP_HOST);
+                    props.put("mail.smtp.port", String.valueOf(SMTP_PORT));
+                    props.put("mail.smtp.auth", "true");
+                    props.put("mail.smtp.starttls.enable", String.valueOf(SMTP_STARTTLS));
+                    props.put("mail.smtp.ssl.trust", SMTP_HOST);
+                    props.put("mail.smtp.connectiontimeout", "10000");
+                    props.put("mail.smtp.timeout", "30000");
+                    
+                    // Create session with authentication
+                    session = Session.getInstance(props, new Authenticator() {
+                        @Override
+                        protected PasswordAuthentication getPasswordAuthentication() {
+                            return new PasswordAuthentication(SMTP_USER, SMTP_PASS);
+                        }
+                    });
+                }
+                s = session;
+            }
+        }
+        return s;
+    }
+
+    private static Transport connect() throws MessagingException {
+        Transport transport = session().getTransport("smtp");
+        transport.connect(SMTP_HOST, SMTP_PORT, SMTP_USER, SMTP_PASS);
+        return transport;
+    }
+
+    private static PooledTransport borrowTransport() throws MessagingException {
+        transportPermits.acquireUninterruptibly();
+        try {
+            PooledTransport pooled;
+            while ((pooled = idleTransports.pollFirst()) != null) {
+                // Servers drop idle SMTP connections, so don't trust one that sat around too long
+                if (System.currentTimeMillis() - pooled.lastUsed < SMTP_IDLE_MS) return pooled;
+                closeQuietly(pooled.transport);
+            }
+            return new PooledTransport(connect());
+        } catch (MessagingException | RuntimeException e) {
+            transportPermits.release();
+            throw e;
+        }
+    }
+
+    private static void returnTransport(PooledTransport pooled, boolean healthy) {
+        if (healthy) idleTransports.offerFirst(pooled);
+        else closeQuietly(pooled.transport);
+        transportPermits.release();
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException ignored) {
+            // Connection is being discarded anyway
+        }
+    }
+
+    /** Closes pooled SMTP connections (used on server shutdown). */
+    public static void shutdown() {
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null) closeQuietly(pooled.transport);
+    }
     
     /**
      * Sends a question paper to an email address
@@ -104,10 +321,17 @@ public class EmailService {
      * @return true if email sent successfully, false otherwise
      */
     public static boolean sendQuestionPaper(String recipientEmail, QuestionPaper questionPaper) {
-        String subject = "Question Paper: " + questionPaper.getSubject() + " (" + 
-                        questionPaper.getYear() + " - Semester " + questionPaper.getSemester() + ")";
-        
-        String body = String.format(
+        return sendEmailWithAttachment(recipientEmail, questionPaperSubject(questionPaper),
+                questionPaperBody(questionPaper), questionPaper.getFilePath());
+    }
+
+    private static String questionPaperSubject(QuestionPaper questionPaper) {
+        return "Question Paper: " + questionPaper.getSubject() + " (" + 
+               questionPaper.getYear() + " - Semester " + questionPaper.getSemester() + ")";
+    }
+
+    private static String questionPaperBody(QuestionPaper questionPaper) {
+        return String.format(
             "Dear Recipient,\n\n" +
             "Please find attached the requested question paper:\n\n" +
             "Subject: %s\n" +
@@ -121,8 +345,19 @@ public class EmailService {
             questionPaper.getSemester(),
             questionPaper.getStatus()
         );
-        
-        return sendEmailWithAttachment(recipientEmail, subject, body, questionPaper.getFilePath());
+    }
+    
+    /**
+     * Sends a question paper to many recipients over a single SMTP connection
+     * @param recipients Email addresses of the recipients
+     * @param questionPaper The question paper to send
+     * @param listener notified after each recipient (may be null)
+     * @return number of recipients the paper was delivered to
+     */
+    public static int sendQuestionPaperToAll(List<String> recipients, QuestionPaper questionPaper,
+                                             RecipientListener listener) {
+        return sendEmailWithAttachmentToAll(recipients, questionPaperSubject(questionPaper),
+                questionPaperBody(questionPaper), questionPaper.getFilePath(), listener);
     }
     
     /**
@@ -131,75 +366,23 @@ public class EmailService {
      * @return Resolved File object
      */
     private static File resolvePdfFile(String pdfFile) {
-        // Remove any path separators and clean the filename
-        String cleanFileName = pdfFile.replace("\\", "/").replaceAll(".*/", ""); // Get just filename
-        
-        System.out.println("   📁 Looking for PDF file: " + cleanFileName);
-        
         File file = new File(pdfFile);
         
         // If absolute path and exists, return it
         if (file.isAbsolute() && file.exists()) {
-            System.out.println("   ✓ Found at absolute path: " + file.getAbsolutePath());
             return file;
         }
         
-        // Candidate locations to search for PDFs (handles running from src/ or project root)
-        String userDir = System.getProperty("user.dir");
-        String projectRoot = null;
-        try {
-            // If running from src/, parent is project root
-            File ud = new File(userDir);
-            File parent = ud.getParentFile();
-            if (parent != null) projectRoot = parent.getAbsolutePath();
-        } catch (Exception ex) {
-            projectRoot = null;
-        }
-
-        String[] candidates;
-        if (projectRoot != null) {
-            candidates = new String[] {
-                PDF_BASE_DIR + File.separator + cleanFileName,
-                "." + File.separator + PDF_BASE_DIR + File.separator + cleanFileName,
-                projectRoot + File.separator + PDF_BASE_DIR + File.separator + cleanFileName,
-                userDir + File.separator + PDF_BASE_DIR + File.separator + cleanFileName,
-                ".." + File.separator + PDF_BASE_DIR + File.separator + cleanFileName
-            };
-        } else {
-            candidates = new String[] {
-                PDF_BASE_DIR + File.separator + cleanFileName,
-                "." + File.separator + PDF_BASE_DIR + File.separator + cleanFileName,
-                userDir + File.separator + PDF_BASE_DIR + File.separator + cleanFileName
-            };
-        }
-
-        for (String p : candidates) {
-            File f = new File(p);
-            if (f.exists()) {
-                System.out.println("   ✓ Found at: " + f.getAbsolutePath());
-                return f;
-            }
-        }
-        
-        // List available PDFs for debugging
-        File pdfDir = new File(PDF_BASE_DIR);
-        if (pdfDir.exists() && pdfDir.isDirectory()) {
-            System.out.println("   📋 Available PDF files in " + pdfDir.getAbsolutePath() + ":");
-            File[] files = pdfDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".pdf"));
-            if (files != null) {
-                for (File f : files) {
-                    System.out.println("      - " + f.getName());
-                }
-            }
-        }
-        
-        System.out.println("   ❌ File not found. Tried these candidate paths:");
-        for (String p : candidates) {
-            System.out.println("      - " + p);
+        PdfRepository repository = PdfRepository.getInstance();
+        PdfRepository.PdfEntry entry = repository.find(pdfFile);
+        if (entry != null) {
+            return entry.getPath().toFile();
         }
 
-        // Return a non-existing file object from the first candidate so caller sees attempted path
-        return new File(candidates.length > 0 ? candidates[0] : (PDF_BASE_DIR + File.separator + cleanFileName));
+        // Return a non-existing file object so caller sees attempted path
+        File missing = repository.pathFor(pdfFile).toFile();
+        System.out.println("   ❌ PDF not in " + repository.getDirectory() + ": " + missing.getName());
+        return missing;
     }
     
     /**
@@ -0,0 +1,616 @@
+// In-process catalog store (CATALOG_STORE=embedded): no MySQL server, no network hop
+// Every write is appended to one log file (papers.log next to PDF/) as a checksummed record and
+// applied to in-memory indexes: a sorted primary index by id and a secondary index on
+// (subject, year, semester), so reads never touch the disk. On startup the log is replayed; a
+// record cut short by a crash fails its length/CRC check and the tail is truncated there.
+// Deleted and replaced rows stay in the log as garbage until compaction rewrites it with only the
+// live rows (then atomically renames it into place).
+//
+// Log layout: header (magic, version, next id), then records of
+//   int payloadLength, int crc32(payload), payload
+// where payload is PUT (count, then count x id/year/semester/subject/filePath/status) or DELETE (id).
+// A batch insert is one PUT record, so it survives a crash completely or not at all.
+// Only one process may use a log: an exclusive lock on a sibling ".lock" file is taken at open
+// (so the console and the web server cannot both append with their own next id).
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+public class EmbeddedPaperStore implements QuestionPaperRepository {
+
+    private static final int FILE_MAGIC = 0x5150434C; // "QPCL"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int RECORD_OVERHEAD = 8; // length + crc
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int COMPACT_BATCH = 4096;
+    // Column sizes from setup-database.sql, enforced like MySQL's strict mode does
+    private static final int MAX_SUBJECT = 100;
+    private static final int MAX_FILE_PATH = 255;
+    private static final int MAX_STATUS = 50;
+
+    private static volatile EmbeddedPaperStore instance;
+    // Lock files held by this JVM. Closing any channel on a locked file drops the process's lock
+    // (POSIX), so a second open here must be refused before it touches the file
+    private static final Set<Path> HELD_LOCKS = ConcurrentHashMap.newKeySet();
+
+    private final Path logFile;
+    private final boolean fsync;
+    private final double compactRatio;
+    private final long compactMinBytes;
+
+    // Primary index (id order, as the MySQL table is read) and secondary index on the search columns
+    private final ConcurrentNavigableMap<Integer, QuestionPaper> byId = new ConcurrentSkipListMap<>();
+    private final Map<String, NavigableSet<Integer>> bySearchKey = new ConcurrentHashMap<>();
+    // Log bytes each live row occupies, so deletes know how much garbage they leave
+    private final Map<Integer, Integer> rowBytes = new ConcurrentHashMap<>();
+
+    // Writers take the lock; readers only use the concurrent indexes
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel log;
+    private FileChannel lockChannel; // holds the process lock for as long as the store is open
+    private Path lockFile;
+    private long logBytes;
+    private long garbageBytes;
+    private int nextId = 1;
+    private volatile long version;
+    private volatile FacetCache facets;
+    private volatile boolean compacting;
+
+    private static final class FacetCache {
+        final long version;
+        final PaperFacetIndex index;
+
+        FacetCache(long version, PaperFacetIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Opens (or creates) the log and replays it
+     * @param logFile log path; a sibling ".compact" file is used while compacting
+     * @param fsync force every write to disk before it is acknowledged
+     * @param compactRatio compact once this share of the log is garbage
+     * @param compactMinBytes ... and the log is at least this large
+     */
+    public EmbeddedPaperStore(Path logFile, boolean fsync, double compactRatio, long compactMinBytes) throws IOException {
+        this.logFile = logFile;
+        this.fsync = fsync;
+        this.compactRatio = compactRatio;
+        this.compactMinBytes = compactMinBytes;
+        open();
+        Metrics.gauge("qpms_store_rows", "Rows in the embedded catalog store", byId::size);
+        Metrics.gauge("qpms_store_log_bytes", "Size of the embedded store's log", () -> logBytes);
+        Metrics.gauge("qpms_store_garbage_bytes", "Log bytes held by deleted rows until compaction", () -> garbageBytes);
+    }
+
+    /** The store for this process, opened on first use from CATALOG_STORE_FILE. */
+    public static EmbeddedPaperStore getInstance() {
+        EmbeddedPaperStore s = instance;
+        if (s == null) {
+            synchronized (EmbeddedPaperStore.class) {
+                if (instance == null) {
+                    Path file = Paths.get(AppConfig.get("CATALOG_STORE_FILE",
+                            PdfRepository.getInstance().getDirectory().resolveSibling("papers.log").toString()));
+                    try {
+                        instance = new EmbeddedPaperStore(file,
+                                AppConfig.getBoolean("CATALOG_STORE_FSYNC", true),
+                                Double.parseDouble(AppConfig.get("CATALOG_STORE_COMPACT_RATIO", "0.5")),
+                                AppConfig.getLong("CATALOG_STORE_COMPACT_MIN_BYTES", 1024 * 1024));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Cannot open catalog store " + file + ": " + e.getMessage(), e);
+                    }
+                }
+                s = instance;
+            }
+        }
+        return s;
+    }
+
+    // --- reads: in-memory only ---
+
+    @Override
+    public QuestionPaper findById(int id) {
+        return byId.get(id);
+    }
+
+    @Override
+    public List<QuestionPaper> searchPaper(String subject, int year, int semester) {
+        NavigableSet<Integer> ids = bySearchKey.get(searchKey(subject, year, semester));
+        if (ids == null) return new ArrayList<>();
+        List<QuestionPaper> list = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            QuestionPaper p = byId.get(id);
+            if (p != null) list.add(p);
+        }
+        return list;
+    }
+
+    @Override
+    public List<QuestionPaper> viewAllPapers() {
+        return new ArrayList<>(byId.values());
+    }
+
+    @Override
+    public List<QuestionPaper> queryAllPapers() {
+        return viewAllPapers();
+    }
+
+    @Override
+    public List<QuestionPaper> findPage(int afterId, int limit) {
+        List<QuestionPaper> page = new ArrayList<>(Math.min(limit, 1024));
+        for (QuestionPaper p : byId.tailMap(afterId, false).values()) {
+            if (page.size() >= limit) break;
+            page.add(p);
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAllPapers(PaperConsumer consumer) throws IOException {
+        for (QuestionPaper p : byId.values()) consumer.accept(p);
+    }
+
+    // Rebuilt on the first faceted search after a write
+    @Override
+    public PaperFacetIndex facetIndex() {
+        long v = version;
+        FacetCache f = facets;
+        if (f != null && f.version == v) return f.index;
+        PaperFacetIndex index = new PaperFacetIndex(viewAllPapers());
+        facets = new FacetCache(v, index);
+        return index;
+    }
+
+    // --- writes: log first, then indexes ---
+
+    @Override
+    public int addPaper(QuestionPaper paper) {
+        try {
+            return addPapers(Collections.singletonList(paper))[0];
+        } catch (SQLException e) {
+            System.err.println("[EmbeddedPaperStore] Insert failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public int[] addPapers(List<QuestionPaper> papers) throws SQLException {
+        int[] ids = new int[papers.size()];
+        if (papers.isEmpty()) return ids;
+        for (QuestionPaper p : papers) validate(p);
+        writeLock.lock();
+        try {
+            List<QuestionPaper> rows = new ArrayList<>(papers.size());
+            int id = nextId;
+            for (int i = 0; i < papers.size(); i++) {
+                QuestionPaper p = papers.get(i);
+                ids[i] = id;
+                rows.add(new QuestionPaper(id++, p.getSubject(), p.getYear(), p.getSemester(), p.getFilePath(), p.getStatus()));
+            }
+            int[] sizes = new int[rows.size()];
+            append(encodePut(rows, sizes));
+            nextId = id;
+            for (int i = 0; i < rows.size(); i++) index(rows.get(i), sizes[i]);
+            version++;
+        } catch (IOException e) {
+            throw new SQLException("Catalog store write failed: " + e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+        return ids;
+    }
+
+    @Override
+    public void deletePaper(int id) {
+        boolean compact;
+        writeLock.lock();
+        try {
+            if (!byId.containsKey(id)) throw new RuntimeException("No record found with ID " + id);
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(8);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeByte(DELETE);
+            out.writeInt(id);
+            byte[] payload = buf.toByteArray();
+            append(payload);
+            Integer size = unindex(id);
+            garbageBytes += (size == null ? 0 : size) + payload.length + RECORD_OVERHEAD;
+            version++;
+            compact = !compacting && logBytes >= compactMinBytes && garbageBytes >= logBytes * compactRatio;
+            if (compact) compacting = true;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete paper", e);
+        } finally {
+            writeLock.unlock();
+        }
+        System.out.println("🗑️ Record deleted successfully!");
+        if (compact) {
+            Thread t = new Thread(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("[EmbeddedPaperStore] Compaction failed: " + e.getMessage());
+                } finally {
+                    compacting = false;
+                }
+            }, "catalog-compact");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live rows and swaps it in atomically. Writes wait while this
+     * runs; reads do not. A crash part-way leaves the old log in place (the partial file is removed
+     * on the next start).
+     */
+    public void compact() throws IOException {
+        writeLock.lock();
+        try {
+            if (lockChannel == null) throw new IOException("Catalog store is closed");
+            long start = System.currentTimeMillis();
+            long before = logBytes;
+            Path tmp = compactFile();
+            long written;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                written = writeFully(out, header(nextId));
+                List<QuestionPaper> chunk = new ArrayList<>(COMPACT_BATCH);
+                for (QuestionPaper p : byId.values()) {
+                    chunk.add(p);
+                    if (chunk.size() == COMPACT_BATCH) {
+                        written += writeChunk(out, chunk);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) written += writeChunk(out, chunk);
+                out.force(true);
+            }
+            // The old channel stays open (and in use) until the new log is in place and opened
+            FileChannel old = log;
+            boolean moved = false;
+            try {
+                try {
+                    Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                moved = true;
+                syncDirectory(logFile.toAbsolutePath().getParent());
+                logBytes = written;
+                garbageBytes = 0;
+                FileChannel fresh = FileChannel.open(logFile, StandardOpenOption.WRITE);
+                fresh.position(written);
+                log = fresh;
+            } finally {
+                if (!moved) {
+                    Files.deleteIfExists(tmp);
+                } else if (log == old) {
+                    // The compacted log is in place but could not be opened: the old channel points at
+                    // the replaced file, so drop it and let the next write reopen (see append)
+                    log = null;
+                }
+                if (log != old) closeQuietly(old);
+            }
+            System.out.println("[EmbeddedPaperStore] Compacted " + logFile + " from " + before + " to " + written
+                    + " bytes in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Closes the log and releases the process lock; later writes fail. */
+    public void close() {
+        writeLock.lock();
+        try {
+            closeQuietly(log);
+            unlock();
+        } finally {
+            log = null;
+            writeLock.unlock();
+        }
+    }
+
+    /** Closes the store if this process opened it (does not open one); used on shutdown. */
+    public static void shutdown() {
+        EmbeddedPaperStore s;
+        synchronized (EmbeddedPaperStore.class) {
+            s = instance;
+            instance = null;
+        }
+        if (s != null) s.close();
+    }
+
+    // --- recovery ---
+
+    private void open() throws IOException {
+        long start = System.currentTimeMillis();
+        Path parent = logFile.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        lock();
+        try {
+            load(parent);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(log);
+            log = null;
+            unlock();
+            throw e;
+        }
+        System.out.println("[EmbeddedPaperStore] Loaded " + byId.size() + " papers from " + logFile + " ("
+                + logBytes + " bytes, " + garbageBytes + " garbage) in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Replays the log (creating it if needed) and opens it for appending; caller holds the process lock
+    private void load(Path parent) throws IOException {
+        // A compaction that did not finish; the log itself is still complete
+        Files.deleteIfExists(compactFile());
+        if (!Files.exists(logFile) || Files.size(logFile) == 0) {
+            try (FileChannel out = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, header(1));
+                out.force(true);
+            }
+            syncDirectory(parent);
+        }
+        long good = replay();
+        log = FileChannel.open(logFile, StandardOpenOption.WRITE);
+        long size = log.size();
+        if (size > good) {
+            System.err.println("[EmbeddedPaperStore] Discarding " + (size - good) + " bytes of an incomplete write at offset "
+                    + good + " in " + logFile);
+            log.truncate(good);
+            log.force(true);
+        }
+        log.position(good);
+        logBytes = good;
+    }
+
+    // Fails fast when another process (or another store in this JVM) has the log open
+    private void lock() throws IOException {
+        Path path = logFile.toAbsolutePath().normalize();
+        path = path.resolveSibling(path.getFileName() + ".lock");
+        if (!HELD_LOCKS.add(path)) {
+            throw new IOException(logFile + " is already open in this process");
+        }
+        FileLock lock = null;
+        FileChannel ch = null;
+        try {
+            ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = ch.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } finally {
+            if (lock == null) {
+                closeQuietly(ch);
+                HELD_LOCKS.remove(path);
+            }
+        }
+        if (lock == null) {
+            throw new IOException(logFile + " is in use by another process (" + path
+                    + " is locked); stop it or set CATALOG_STORE_FILE to another file");
+        }
+        lockChannel = ch;
+        lockFile = path;
+    }
+
+    private void unlock() {
+        closeQuietly(lockChannel);
+        lockChannel = null;
+        if (lockFile != null) HELD_LOCKS.remove(lockFile);
+        lockFile = null;
+    }
+
+    // Applies every intact record; returns the offset just past the last one
+    private long replay() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException(logFile + " is not a catalog store log (or has an unsupported version)");
+            }
+            nextId = (int) Math.max(1, in.readLong());
+            long offset = HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) return offset;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    return offset;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) return offset;
+                apply(payload, length + RECORD_OVERHEAD);
+                offset += length + RECORD_OVERHEAD;
+            }
+        }
+    }
+
+    private void apply(byte[] payload, int recordBytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type == PUT) {
+            int count = in.readInt();
+            // Spread the record's framing over its rows so garbage accounting adds up
+            int share = (RECORD_OVERHEAD + 5) / Math.max(1, count) + 1;
+            for (int i = 0; i < count; i++) {
+                int before = in.available();
+                QuestionPaper p = new QuestionPaper(in.readInt(), in.readUTF(), in.readInt(), in.readInt(), in.readUTF(), in.readUTF());
+                Integer replaced = unindex(p.getId());
+                if (replaced != null) garbageBytes += replaced;
+                index(p, before - in.available() + share);
+                nextId = Math.max(nextId, p.getId() + 1);
+            }
+        } else if (type == DELETE) {
+            Integer size = unindex(in.readInt());
+            garbageBytes += (size == null ? 0 : size) + recordBytes;
+        } else {
+            throw new IOException("Unknown record type " + type + " in " + logFile);
+        }
+    }
+
+    // --- encoding ---
+
+    // Field order matches the QuestionPaper(id, subject, year, semester, filePath, status) constructor
+    private static byte[] encodePut(List<QuestionPaper> rows, int[] sizes) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(rows.size() * 64 + 8);
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeByte(PUT);
+        out.writeInt(rows.size());
+        int share = (RECORD_OVERHEAD + 5) / rows.size() + 1;
+        for (int i = 0; i < rows.size(); i++) {
+            QuestionPaper p = rows.get(i);
+            int before = out.size();
+            out.writeInt(p.getId());
+            out.writeUTF(p.getSubject());
+            out.writeInt(p.getYear());
+            out.writeInt(p.getSemester());
+            out.writeUTF(p.getFilePath());
+            out.writeUTF(p.getStatus());
+            sizes[i] = out.size() - before + share;
+        }
+        return buf.toByteArray();
+    }
+
+    private static ByteBuffer header(int nextId) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putLong(nextId).flip();
+        return header;
+    }
+
+    // Caller holds writeLock
+    private void append(byte[] payload) throws IOException {
+        if (lockChannel == null) throw new IOException("Catalog store is closed");
+        if (log == null) {
+            // A compaction swapped the file in but could not open it; try again
+            FileChannel reopened = FileChannel.open(logFile, StandardOpenOption.WRITE);
+            reopened.position(logBytes);
+            log = reopened;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(payload.length + RECORD_OVERHEAD);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long at = log.position();
+        try {
+            writeFully(log, record);
+            if (fsync) log.force(false);
+        } catch (IOException e) {
+            // Leave no partial record behind for the next write to follow
+            log.truncate(at);
+            log.position(at);
+            throw e;
+        }
+        logBytes = at + payload.length + RECORD_OVERHEAD;
+    }
+
+    private static long writeChunk(FileChannel out, List<QuestionPaper> rows) throws IOException {
+        byte[] payload = encodePut(rows, new int[rows.size()]);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(payload.length + RECORD_OVERHEAD);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return writeFully(out, record);
+    }
+
+    private static long writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+        long n = buf.remaining();
+        while (buf.hasRemaining()) out.write(buf);
+        return n;
+    }
+
+    // --- indexes ---
+
+    private void index(QuestionPaper p, int size) {
+        byId.put(p.getId(), p);
+        rowBytes.put(p.getId(), size);
+        bySearchKey.computeIfAbsent(searchKey(p.getSubject(), p.getYear(), p.getSemester()),
+                k -> new ConcurrentSkipListSet<>()).add(p.getId());
+    }
+
+    // Returns the removed row's log size, or null if there was no such row
+    private Integer unindex(int id) {
+        QuestionPaper p = byId.remove(id);
+        if (p == null) return null;
+        String key = searchKey(p.getSubject(), p.getYear(), p.getSemester());
+        NavigableSet<Integer> ids = bySearchKey.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) bySearchKey.remove(key, ids);
+        }
+        return rowBytes.remove(id);
+    }
+
+    // Same rules as the MySQL column collation: case-insensitive, trailing spaces ignored
+    private static String searchKey(String subject, int year, int semester) {
+        return (subject == null ? "" : subject.trim().toLowerCase(Locale.ROOT)) + '\u0000' + year + '\u0000' + semester;
+    }
+
+    private static void validate(QuestionPaper p) throws SQLException {
+        if (p.getSubject() == null || p.getFilePath() == null || p.getStatus() == null) {
+            throw new SQLException("subject, filePath and status are required");
+        }
+        if (p.getSubject().length() > MAX_SUBJECT) throw new SQLException("subject is longer than " + MAX_SUBJECT + " characters");
+        if (p.getFilePath().length() > MAX_FILE_PATH) throw new SQLException("filePath is longer than " + MAX_FILE_PATH + " characters");
+        if (p.getStatus().length() > MAX_STATUS) throw new SQLException("status is longer than " + MAX_STATUS + " characters");
+    }
+
+    private static void closeQuietly(FileChannel ch) {
+        if (ch == null) return;
+        try {
+            ch.close();
+        } catch (IOException e) {
+            System.err.println("[EmbeddedPaperStore] Close failed: " + e.getMessage());
+        }
+    }
+
+    private Path compactFile() {
+        return logFile.resolveSibling(logFile.getFileName() + ".compact");
+    }
+
+    private static void syncDirectory(Path dir) {
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Directories cannot be opened for sync on Windows; the rename is still durable there
+        }
+    }
+}
@@ -0,0 +1,255 @@
+// Sends files over an HttpExchange with caching validators and HTTP Range support
+// Used for PDFs (so browser viewers can fetch page 1 early) and frontend assets.
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class FileSender {
+
+    // Strong ETags (SHA-256 of the content), recomputed only when size or mtime change
+    private static final Map<Path, FileTag> etags = new ConcurrentHashMap<>();
+
+    // Body bytes written (only PDFs are sent from disk), counted as they go so aborted downloads count what was actually sent
+    private static final Metrics.Counter BYTES_SERVED = Metrics.counter("qpms_pdf_bytes_served_total",
+            "PDF body bytes sent, ranges included");
+
+    private static final class FileTag {
+        final long size;
+        final long lastModified;
+        final String etag;
+
+        FileTag(long size, long lastModified, String etag) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Sends a file with validators (ETag, Last-Modified) and a Cache-Control policy.
+     * Conditional requests get 304 Not Modified; a single-range Range header (and If-Range)
+     * gets 206 Partial Content. HEAD requests get the headers only.
+     * @param exchange current exchange (method already checked to be GET or HEAD)
+     * @param file file to send
+     * @param contentType value for Content-Type
+     * @param cacheControl value for Cache-Control (null to omit)
+     */
+    public static void sendFile(HttpExchange exchange, Path file, String contentType, String cacheControl) throws IOException {
+        sendFile(exchange, file, Files.size(file), Files.getLastModifiedTime(file).toMillis(), contentType, cacheControl);
+    }
+
+    /**
+     * Same as {@link #sendFile(HttpExchange, Path, String, String)} with size and modification time
+     * already known (e.g. from PdfRepository), saving the per-request stat calls.
+     */
+    public static void sendFile(HttpExchange exchange, Path file, long length, long lastModified,
+                                String contentType, String cacheControl) throws IOException {
+        String etag = etagFor(file, length, lastModified);
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified", formatHttpDate(lastModified));
+        if (cacheControl != null) exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+
+        if (notModified(exchange, etag, lastModified)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && ifRangeMatches(exchange.getRequestHeaders().getFirst("If-Range"), etag, lastModified)) {
+            long[] r = parseRange(range, length);
+            if (r == null) {
+                // Syntactically valid but outside the file
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(count));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, count == 0 ? -1 : count);
+        if (count == 0) {
+            exchange.close();
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             OutputStream os = exchange.getResponseBody()) {
+            transfer(channel, start, count, os);
+        }
+    }
+
+    // FileChannel.transferTo lets the JDK pick the cheapest copy path. HttpExchange only exposes an
+    // OutputStream, so true sendfile() is not available; this still avoids a user-space read loop.
+    private static void transfer(FileChannel channel, long position, long count, OutputStream os) throws IOException {
+        WritableByteChannel target = Channels.newChannel(os);
+        while (count > 0) {
+            long sent = channel.transferTo(position, count, target);
+            if (sent <= 0) break; // file shrank while sending
+            BYTES_SERVED.add(sent);
+            position += sent;
+            count -= sent;
+        }
+    }
+
+    /**
+     * Parses a Range header for a single byte range.
+     * @return {start, end} for a satisfiable range, an empty array when the header should be
+     *         ignored (unsupported unit, multiple ranges, malformed), or null when unsatisfiable
+     */
+    static long[] parseRange(String header, long length) {
+        String h = header.trim();
+        if (!h.startsWith("bytes=")) return new long[0];
+        String spec = h.substring("bytes=".length()).trim();
+        // Multiple ranges would need multipart/byteranges; sending the whole file is allowed instead
+        if (spec.contains(",")) return new long[0];
+        int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // bytes=-N : the last N bytes
+                if (last.isEmpty()) return new long[0];
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) return null;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                long requestedEnd = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (requestedEnd < start) return new long[0]; // invalid spec: ignore the header
+                end = Math.min(requestedEnd, length - 1);
+            }
+            if (start >= length || start > end) return null;
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * Evaluates If-None-Match, falling back to If-Modified-Since when no entity tags were sent
+     * @return true if the client's copy is current and a 304 should be sent
+     */
+    static boolean notModified(HttpExchange exchange, String etag, long lastModified) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            // Weak comparison is what RFC 9110 requires for If-None-Match
+            String bare = stripWeak(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String c = candidate.trim();
+                if (c.equals("*") || stripWeak(c).equals(bare)) return true;
+            }
+            return false;
+        }
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            Long since = parseHttpDate(ifModifiedSince.trim());
+            return since != null && lastModified / 1000 <= since / 1000;
+        }
+        return false;
+    }
+
+    // If-Range: only honour the Range header if the client's copy matches (strong ETag or exact date)
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) return true;
+        String value = ifRange.trim();
+        if (value.startsWith("W/")) return false;
+        if (value.startsWith("\"")) return value.equals(etag);
+        Long since = parseHttpDate(value);
+        return since != null && lastModified / 1000 == since / 1000;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String etagFor(Path file, long size, long lastModified) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        FileTag tag = etags.get(key);
+        if (tag != null && tag.size == size && tag.lastModified == lastModified) return tag.etag;
+        String etag = "\"" + sha256Hex(file) + "\"";
+        etags.put(key, new FileTag(size, lastModified, etag));
+        return etag;
+    }
+
+    static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) digest.update(buffer, 0, n);
+        }
+        return toHex(digest.digest());
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+
+    // IMF-fixdate (always two-digit day), e.g. "Sun, 06 Nov 1994 08:49:37 GMT"
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    static String formatHttpDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+
+    static Long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
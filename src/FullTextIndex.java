@@ -0,0 +1,654 @@
+// Full-text search over the contents of the PDF folder
+// A positional inverted index ranked with BM25. Extracted text is persisted next to the PDF folder
+// so a restart only re-extracts files whose size or mtime changed; PdfRepository change events
+// keep the index current as papers are added or deleted.
+//
+// The index file is a log: a header, then one CRC-framed record per added or removed file, so an
+// update appends a single record instead of rewriting the corpus. When superseded records make up
+// most of the file it is rewritten (compacted) through a temp file.
+//   header: int magic, int version
+//   record: int payloadLength, int crc32(payload), payload
+//   payload: byte op, UTF name, and for OP_ADD: long size, long lastModified, int textLength, text (UTF-8)
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+public class FullTextIndex {
+
+    /** One ranked search result. */
+    public static final class Hit {
+        private final String fileName;
+        private final double score;
+        private final List<String> snippets;
+
+        Hit(String fileName, double score, List<String> snippets) {
+            this.fileName = fileName;
+            this.score = score;
+            this.snippets = snippets;
+        }
+
+        public String getFileName() { return fileName; }
+        public double getScore() { return score; }
+        public List<String> getSnippets() { return snippets; }
+    }
+
+    /** Ranked hits plus the number of matching documents. */
+    public static final class Result {
+        private final List<Hit> hits;
+        private final int total;
+
+        Result(List<Hit> hits, int total) {
+            this.hits = hits;
+            this.total = total;
+        }
+
+        public List<Hit> getHits() { return hits; }
+        public int getTotal() { return total; }
+    }
+
+    // An indexed file: its text plus the character offset of every token (for snippets)
+    private static final class Doc {
+        final int id;
+        final String name;
+        final long size;
+        final long lastModified;
+        final String text;
+        final int[] offsets;
+        final int[] ends;
+
+        Doc(int id, String name, long size, long lastModified, String text) {
+            this.id = id;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.text = text;
+            List<int[]> spans = new ArrayList<>();
+            tokenize(text, (term, start, end) -> spans.add(new int[] { start, end }));
+            this.offsets = new int[spans.size()];
+            this.ends = new int[spans.size()];
+            for (int i = 0; i < spans.size(); i++) {
+                offsets[i] = spans.get(i)[0];
+                ends[i] = spans.get(i)[1];
+            }
+        }
+
+        int length() { return offsets.length; }
+    }
+
+    private interface TokenSink {
+        void accept(String term, int start, int end);
+    }
+
+    private static final int FILE_MAGIC = 0x51504654; // "QPFT"
+    private static final int FILE_VERSION = 2; // 1 was a single snapshot, rewritten as a log on load
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int RECORD_OVERHEAD = 8; // length + crc
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int SNIPPET_RADIUS = 12; // tokens either side of a match
+    private static final int MAX_SNIPPETS = 2;
+
+    private static volatile FullTextIndex instance;
+
+    private final PdfRepository repository;
+    private final Path indexFile;
+    private final int threads;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Doc> byName = new HashMap<>();
+    private final Map<Integer, Doc> byId = new HashMap<>();
+    // term -> doc id -> token positions (ascending)
+    private final Map<String, Map<Integer, int[]>> postings = new HashMap<>();
+    private long totalTokens;
+    private int nextId = 1;
+    private volatile boolean indexing;
+    // Index file state, guarded by persistLock: record bytes per live file, and the file's length
+    private final Object persistLock = new Object();
+    private final Map<String, Integer> persistedBytes = new HashMap<>();
+    private long liveBytes;
+    private long logBytes;
+    private boolean rewriteNeeded; // a failed append may have left a torn record
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "fulltext-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Shared index for the project's PDF folder. The first call loads the persisted index and
+     * starts a background sync; searches are answered from whatever is indexed so far.
+     */
+    public static FullTextIndex getInstance() {
+        FullTextIndex i = instance;
+        if (i == null) {
+            synchronized (FullTextIndex.class) {
+                if (instance == null) {
+                    PdfRepository repo = PdfRepository.getInstance();
+                    Path file = Paths.get(AppConfig.get("FULLTEXT_INDEX_FILE",
+                            repo.getDirectory().resolveSibling("fulltext.idx").toString()));
+                    instance = new FullTextIndex(repo, file, AppConfig.getInt("FULLTEXT_THREADS",
+                            Runtime.getRuntime().availableProcessors()));
+                    instance.start();
+                }
+                i = instance;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @param repository PDF folder to index
+     * @param indexFile where extracted text is persisted between runs
+     * @param threads parallelism for PDF text extraction
+     */
+    public FullTextIndex(PdfRepository repository, Path indexFile, int threads) {
+        this.repository = repository;
+        this.indexFile = indexFile;
+        this.threads = Math.max(1, threads);
+    }
+
+    private void start() {
+        load();
+        indexing = true;
+        updater.execute(this::syncAll);
+        repository.addListener(name -> {
+            if (isPdf(name)) updater.execute(() -> syncOne(name));
+        });
+    }
+
+    /** True while the startup sync is still extracting files. */
+    public boolean isIndexing() {
+        return indexing;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byName.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void shutdown() {
+        updater.shutdown();
+        try {
+            updater.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------- search ----------------
+
+    /**
+     * Ranks files against a query. Words are OR-ed and scored with BM25; "quoted phrases" only
+     * match where the words appear next to each other.
+     * @param query user query
+     * @param limit maximum number of hits to return
+     */
+    public Result search(String query, int limit) {
+        List<List<String>> clauses = parseQuery(query);
+        if (clauses.isEmpty()) return new Result(Collections.emptyList(), 0);
+        lock.readLock().lock();
+        try {
+            int n = byName.size();
+            double avgLength = n == 0 ? 0 : (double) totalTokens / n;
+            Map<Integer, Double> scores = new HashMap<>();
+            // Matched positions per doc, for snippets
+            Map<Integer, List<int[]>> matches = new HashMap<>();
+            for (List<String> clause : clauses) {
+                Map<Integer, List<Integer>> occurrences = clause.size() == 1
+                        ? termOccurrences(clause.get(0)) : phraseOccurrences(clause);
+                if (occurrences.isEmpty()) continue;
+                double idf = Math.log(1 + (n - occurrences.size() + 0.5) / (occurrences.size() + 0.5));
+                for (Map.Entry<Integer, List<Integer>> e : occurrences.entrySet()) {
+                    Doc doc = byId.get(e.getKey());
+                    int tf = e.getValue().size();
+                    double norm = K1 * (1 - B + B * doc.length() / Math.max(avgLength, 1));
+                    scores.merge(doc.id, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                    List<int[]> spans = matches.computeIfAbsent(doc.id, k -> new ArrayList<>());
+                    for (int pos : e.getValue()) spans.add(new int[] { pos, pos + clause.size() - 1 });
+                }
+            }
+            List<Hit> hits = scores.entrySet().stream()
+                    .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
+                    .limit(Math.max(0, limit))
+                    .map(e -> {
+                        Doc doc = byId.get(e.getKey());
+                        return new Hit(doc.name, Math.round(e.getValue() * 1000) / 1000.0, snippets(doc, matches.get(doc.id)));
+                    })
+                    .collect(Collectors.toList());
+            return new Result(hits, scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Integer, List<Integer>> termOccurrences(String term) {
+        Map<Integer, int[]> docs = postings.get(term);
+        if (docs == null) return Collections.emptyMap();
+        Map<Integer, List<Integer>> out = new HashMap<>();
+        for (Map.Entry<Integer, int[]> e : docs.entrySet()) {
+            List<Integer> positions = new ArrayList<>(e.getValue().length);
+            for (int p : e.getValue()) positions.add(p);
+            out.put(e.getKey(), positions);
+        }
+        return out;
+    }
+
+    // Start positions of the phrase in each doc containing all its terms
+    private Map<Integer, List<Integer>> phraseOccurrences(List<String> phrase) {
+        List<Map<Integer, int[]>> lists = new ArrayList<>();
+        for (String term : phrase) {
+            Map<Integer, int[]> docs = postings.get(term);
+            if (docs == null) return Collections.emptyMap();
+            lists.add(docs);
+        }
+        // Walk the rarest term's docs
+        Map<Integer, int[]> rarest = Collections.min(lists, Comparator.comparingInt(Map::size));
+        Map<Integer, List<Integer>> out = new HashMap<>();
+        for (int docId : rarest.keySet()) {
+            int[][] positions = new int[phrase.size()][];
+            boolean all = true;
+            for (int i = 0; i < phrase.size() && all; i++) {
+                positions[i] = lists.get(i).get(docId);
+                all = positions[i] != null;
+            }
+            if (!all) continue;
+            List<Integer> starts = new ArrayList<>();
+            for (int start : positions[0]) {
+                boolean match = true;
+                for (int i = 1; i < phrase.size() && match; i++) {
+                    match = Arrays.binarySearch(positions[i], start + i) >= 0;
+                }
+                if (match) starts.add(start);
+            }
+            if (!starts.isEmpty()) out.put(docId, starts);
+        }
+        return out;
+    }
+
+    private static List<String> snippets(Doc doc, List<int[]> spans) {
+        List<String> out = new ArrayList<>();
+        if (spans == null) return out;
+        spans.sort(Comparator.comparingInt(s -> s[0]));
+        int lastEnd = -1;
+        for (int[] span : spans) {
+            if (out.size() >= MAX_SNIPPETS) break;
+            if (span[0] <= lastEnd) continue; // already inside the previous snippet
+            int from = Math.max(0, span[0] - SNIPPET_RADIUS);
+            int to = Math.min(doc.length() - 1, span[1] + SNIPPET_RADIUS);
+            String text = doc.text.substring(doc.offsets[from], doc.ends[to]).replaceAll("\\s+", " ").trim();
+            out.add((from > 0 ? "... " : "") + text + (to < doc.length() - 1 ? " ..." : ""));
+            lastEnd = to;
+        }
+        return out;
+    }
+
+    // Words become single-term clauses; "quoted text" becomes one phrase clause
+    static List<List<String>> parseQuery(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        if (query == null) return clauses;
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> terms = new ArrayList<>();
+            tokenize(parts[i], (term, start, end) -> terms.add(term));
+            if (i % 2 == 1 && terms.size() > 1) {
+                clauses.add(terms);
+            } else {
+                for (String t : terms) clauses.add(Collections.singletonList(t));
+            }
+        }
+        return clauses;
+    }
+
+    // Lower-cased runs of letters and digits
+    private static void tokenize(String text, TokenSink sink) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i > start) sink.accept(text.substring(start, i).toLowerCase(Locale.ROOT), start, i);
+        }
+    }
+
+    // ---------------- indexing ----------------
+
+    private static boolean isPdf(String name) {
+        return name.toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    // Bring the index in line with the folder: extract new/changed files in parallel, drop removed ones
+    private void syncAll() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, PdfRepository.PdfEntry> current = new HashMap<>();
+            for (PdfRepository.PdfEntry e : repository.list()) {
+                if (isPdf(e.getName())) current.put(e.getName(), e);
+            }
+            List<PdfRepository.PdfEntry> stale = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (PdfRepository.PdfEntry e : current.values()) {
+                    Doc d = byName.get(e.getName());
+                    if (d == null || d.size != e.getSize() || d.lastModified != e.getLastModified()) stale.add(e);
+                }
+                for (String name : byName.keySet()) {
+                    if (!current.containsKey(name)) removed.add(name);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (String name : removed) {
+                if (remove(name)) persistRemove(name);
+            }
+            if (!stale.isEmpty()) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    pool.submit(() -> stale.parallelStream().forEach(this::extractAndAdd)).get();
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            System.out.println("[FullTextIndex] " + size() + " files indexed (" + stale.size() + " extracted, "
+                    + removed.size() + " removed) in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            System.err.println("[FullTextIndex] Sync failed: " + e.getMessage());
+        } finally {
+            indexing = false;
+        }
+    }
+
+    private void syncOne(String name) {
+        PdfRepository.PdfEntry entry = repository.find(name);
+        if (entry == null) {
+            if (remove(name)) persistRemove(name);
+            return;
+        }
+        Doc existing;
+        lock.readLock().lock();
+        try {
+            existing = byName.get(name);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (existing != null && existing.size == entry.getSize() && existing.lastModified == entry.getLastModified()) return;
+        extractAndAdd(entry);
+    }
+
+    private void extractAndAdd(PdfRepository.PdfEntry entry) {
+        String text;
+        try {
+            text = PdfTextExtractor.extract(entry.getPath());
+        } catch (IOException | RuntimeException e) {
+            // Still record the file (with no text) so an unreadable PDF is not re-extracted on every start
+            System.err.println("[FullTextIndex] Could not extract " + entry.getName() + ", recorded as unextractable: " + e.getMessage());
+            text = "";
+        }
+        add(entry.getName(), entry.getSize(), entry.getLastModified(), text);
+        // Persisted right away, so a sync interrupted by a crash keeps what it already extracted
+        persistAdd(entry.getName(), entry.getSize(), entry.getLastModified(), text);
+    }
+
+    private void add(String name, long size, long lastModified, String text) {
+        lock.writeLock().lock();
+        try {
+            remove(name);
+            Doc doc = new Doc(nextId++, name, size, lastModified, text);
+            Map<String, List<Integer>> positions = new HashMap<>();
+            int[] pos = { 0 };
+            tokenize(text, (term, s, e) -> positions.computeIfAbsent(term, k -> new ArrayList<>()).add(pos[0]++));
+            for (Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+                int[] p = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+                postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(doc.id, p);
+            }
+            byName.put(name, doc);
+            byId.put(doc.id, doc);
+            totalTokens += doc.length();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean remove(String name) {
+        lock.writeLock().lock();
+        try {
+            Doc doc = byName.remove(name);
+            if (doc == null) return false;
+            byId.remove(doc.id);
+            totalTokens -= doc.length();
+            tokenize(doc.text, (term, s, e) -> {
+                Map<Integer, int[]> docs = postings.get(term);
+                if (docs != null && docs.remove(doc.id) != null && docs.isEmpty()) postings.remove(term);
+            });
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------- persistence ----------------
+
+    private void load() {
+        if (!Files.isRegularFile(indexFile)) return;
+        long good = 0;
+        long fileSize = 0;
+        boolean legacy = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            fileSize = Files.size(indexFile);
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != FILE_MAGIC || (version != 1 && version != FILE_VERSION)) {
+                System.err.println("[FullTextIndex] Ignoring " + indexFile + ": unknown format");
+                return;
+            }
+            if (version == 1) {
+                legacy = true;
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = in.readUTF();
+                    long size = in.readLong();
+                    long lastModified = in.readLong();
+                    byte[] text = new byte[in.readInt()];
+                    in.readFully(text);
+                    add(name, size, lastModified, new String(text, StandardCharsets.UTF_8));
+                }
+            } else {
+                good = 8;
+                CRC32 crc = new CRC32();
+                while (good + RECORD_OVERHEAD <= fileSize) {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 0 || good + RECORD_OVERHEAD + length > fileSize) break;
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) break;
+                    apply(payload, RECORD_OVERHEAD + length);
+                    good += RECORD_OVERHEAD + length;
+                }
+            }
+            System.out.println("[FullTextIndex] Loaded " + size() + " files from " + indexFile);
+        } catch (IOException e) {
+            // A corrupt file only costs a re-extraction
+            System.err.println("[FullTextIndex] Could not load " + indexFile + ": " + e.getMessage());
+            lock.writeLock().lock();
+            try {
+                byName.clear();
+                byId.clear();
+                postings.clear();
+                totalTokens = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            synchronized (persistLock) {
+                persistedBytes.clear();
+                liveBytes = 0;
+                rewriteNeeded = true;
+            }
+            return;
+        }
+        synchronized (persistLock) {
+            logBytes = good;
+            if (legacy) {
+                compact();
+            } else if (good < fileSize) {
+                // Record cut short by a crash: drop it so appends continue from the last good one
+                System.err.println("[FullTextIndex] Truncating torn tail of " + indexFile + " at " + good);
+                try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                    ch.truncate(good);
+                } catch (IOException e) {
+                    rewriteNeeded = true;
+                }
+            }
+        }
+    }
+
+    // Replays one record into the in-memory index
+    private void apply(byte[] payload, int recordBytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String name = in.readUTF();
+        if (op == OP_ADD) {
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            add(name, size, lastModified, new String(text, StandardCharsets.UTF_8));
+            track(name, recordBytes);
+        } else if (op == OP_REMOVE) {
+            remove(name);
+            track(name, 0);
+        } else {
+            throw new IOException("unknown record type " + op);
+        }
+    }
+
+    private void persistAdd(String name, long size, long lastModified, String text) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(text.length() + 64);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeByte(OP_ADD);
+            out.writeUTF(name);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            append(name, buf.toByteArray(), true);
+        } catch (IOException e) {
+            System.err.println("[FullTextIndex] Could not save " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    private void persistRemove(String name) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(name.length() + 8);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(name);
+            append(name, buf.toByteArray(), false);
+        } catch (IOException e) {
+            System.err.println("[FullTextIndex] Could not save " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    private void append(String name, byte[] payload, boolean live) {
+        synchronized (persistLock) {
+            if (rewriteNeeded || logBytes == 0) {
+                // No usable file yet: write the whole index, which already contains this change
+                compact();
+                return;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(indexFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)))) {
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            } catch (IOException e) {
+                System.err.println("[FullTextIndex] Could not save " + indexFile + ": " + e.getMessage());
+                rewriteNeeded = true;
+                return;
+            }
+            logBytes += RECORD_OVERHEAD + payload.length;
+            track(name, live ? RECORD_OVERHEAD + payload.length : 0);
+            if (logBytes > COMPACT_MIN_BYTES && logBytes > 2 * liveBytes) compact();
+        }
+    }
+
+    // Caller holds persistLock (or is load(), before the index is shared)
+    private void track(String name, int recordBytes) {
+        Integer old = recordBytes > 0 ? persistedBytes.put(name, recordBytes) : persistedBytes.remove(name);
+        if (old != null) liveBytes -= old;
+        liveBytes += recordBytes;
+    }
+
+    // Rewrites the file with one record per indexed file, through a temp file moved into place,
+    // so a crash never leaves a half-written index. Caller holds persistLock.
+    private void compact() {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Map<String, Integer> written = new HashMap<>();
+        long bytes = 8;
+        CRC32 crc = new CRC32();
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(buf);
+            for (Doc d : byName.values()) {
+                buf.reset();
+                record.writeByte(OP_ADD);
+                record.writeUTF(d.name);
+                record.writeLong(d.size);
+                record.writeLong(d.lastModified);
+                byte[] text = d.text.getBytes(StandardCharsets.UTF_8);
+                record.writeInt(text.length);
+                record.write(text);
+                crc.reset();
+                crc.update(buf.toByteArray());
+                out.writeInt(buf.size());
+                out.writeInt((int) crc.getValue());
+                buf.writeTo(out);
+                written.put(d.name, RECORD_OVERHEAD + buf.size());
+                bytes += RECORD_OVERHEAD + buf.size();
+            }
+        } catch (IOException e) {
+            System.err.println("[FullTextIndex] Could not save " + indexFile + ": " + e.getMessage());
+            rewriteNeeded = true;
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[FullTextIndex] Could not save " + indexFile + ": " + e.getMessage());
+            rewriteNeeded = true;
+            return;
+        }
+        persistedBytes.clear();
+        persistedBytes.putAll(written);
+        liveBytes = bytes - 8;
+        logBytes = bytes;
+        rewriteNeeded = false;
+    }
+}
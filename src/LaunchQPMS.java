@@ -25,8 +25,12 @@ public class LaunchQPMS {
             // Wait a moment for files to be available
             Thread.sleep(1000);
             
-            // 3. Setup database
-            setupDatabase();
+            // 3. Setup database (the embedded catalog store needs no MySQL server)
+            if ("embedded".equalsIgnoreCase(AppConfig.get("CATALOG_STORE", "mysql").trim())) {
+                System.out.println("\nUsing the embedded catalog store; skipping MySQL setup.");
+            } else {
+                setupDatabase();
+            }
             
             // 4. Start WebServer
             startWebServer();
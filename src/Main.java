@@ -17,7 +17,8 @@ public class Main {
             System.out.println("3. View All Question Papers");
             System.out.println("4. Delete Question Paper");
             System.out.println("5. Send Question Paper via Email");
-            System.out.println("6. Exit");
+            System.out.println("6. Import PDFs from folder");
+            System.out.println("7. Exit");
             System.out.print("Enter your choice: ");
             int choice = sc.nextInt();
 
@@ -27,9 +28,11 @@ public class Main {
                 case 3: service.viewAllPapers(); break;
                 case 4: service.deletePaper(); break;
                 case 5: service.sendPaperByEmail(); break;
-                case 6:
+                case 6: service.importPdfFolder(); break;
+                case 7:
                     System.out.println("Goodbye!");
                     sc.close();
+                    EmbeddedPaperStore.shutdown();
                     System.exit(0);
                 default:
                     System.out.println("Invalid choice! Try again.");
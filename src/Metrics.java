@@ -0,0 +1,231 @@
+// In-process metrics registry, exported at GET /metrics in the Prometheus text format
+// Counters are LongAdders and histograms are HDR-style log-linear bucket arrays updated with
+// atomic increments, so recording never takes a lock. Gauges are read from callbacks at scrape time.
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+public final class Metrics {
+
+    /** Monotonic count, e.g. bytes sent. */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Latency distribution in nanoseconds. Values are kept in log-linear buckets (32 per power of two,
+     * so any recorded value is within about 3% of its bucket's bounds) up to about 18 minutes.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int MAX_EXP = 40; // 2^40 ns ~ 18 min; longer values land in the last bucket
+        private static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+
+        public void record(long nanos) {
+            long v = Math.max(0, nanos);
+            counts.incrementAndGet(Math.min(index(v), BUCKETS - 1));
+            sum.add(v);
+        }
+
+        /** Records the time since a System.nanoTime() reading. */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+            return n;
+        }
+
+        /**
+         * Value at a quantile, e.g. 0.99 for p99, as the upper bound of its bucket (within about 3%)
+         * @return nanoseconds, or 0 if nothing was recorded
+         */
+        public long valueAt(double quantile) {
+            long[] c = snapshot();
+            long total = 0;
+            for (long n : c) total += n;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < c.length; i++) {
+                seen += c[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(c.length - 1);
+        }
+
+        long[] snapshot() {
+            long[] out = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) out[i] = counts.get(i);
+            return out;
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int shift = exp - SUB_BITS;
+            return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> shift) & (SUB - 1));
+        }
+
+        // Largest value that maps to bucket i
+        static long upperBound(int i) {
+            if (i < SUB) return i;
+            int exp = i / SUB + SUB_BITS - 1;
+            long width = 1L << (exp - SUB_BITS);
+            long lower = (1L << exp) + (long) (i % SUB) * width;
+            return lower + width - 1;
+        }
+    }
+
+    // Exported bucket bounds in seconds; the fine buckets are folded into these at scrape time
+    private static final double[] EXPORT_BOUNDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+            0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+
+    // One metric name with its series (label values -> metric)
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type; // counter, gauge, histogram
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Counter for one label combination, created on first use
+     * @param name metric name, ending in _total by convention
+     * @param labels alternating label names and values, e.g. "method", "GET"
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").series.computeIfAbsent(labelKey(labels), k -> new Counter());
+    }
+
+    /**
+     * Histogram for one label combination, created on first use; exported in seconds
+     * @param name metric name, ending in _seconds by convention
+     */
+    public static Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").series.computeIfAbsent(labelKey(labels), k -> new Histogram());
+    }
+
+    /** A value read when /metrics is scraped (pool sizes, queue depths). Re-registering replaces the callback. */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(labelKey(labels), value);
+    }
+
+    /** Like {@link #gauge} for a count that only goes up but is kept elsewhere (e.g. pool timeouts). */
+    public static void counterFunction(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "counter").series.put(labelKey(labels), value);
+    }
+
+    /** Everything registered, in the Prometheus text exposition format (version 0.0.4). */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        for (Family f : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(f.name).append(' ').append(f.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(f.name).append(' ').append(f.type).append('\n');
+            for (Map.Entry<String, Object> e : new TreeMap<>(f.series).entrySet()) {
+                String labels = e.getKey();
+                Object m = e.getValue();
+                if (m instanceof Counter) {
+                    sample(out, f.name, labels, null, ((Counter) m).get());
+                } else if (m instanceof DoubleSupplier) {
+                    double v;
+                    try {
+                        v = ((DoubleSupplier) m).getAsDouble();
+                    } catch (RuntimeException ex) {
+                        continue; // a broken gauge must not break the scrape
+                    }
+                    sample(out, f.name, labels, null, v);
+                } else if (m instanceof Histogram) {
+                    writeHistogram(out, f.name, labels, (Histogram) m);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram h) {
+        long[] counts = h.snapshot();
+        long cumulative = 0;
+        int i = 0;
+        for (double bound : EXPORT_BOUNDS) {
+            long boundNanos = (long) (bound * 1e9);
+            while (i < counts.length && Histogram.upperBound(i) <= boundNanos) cumulative += counts[i++];
+            sample(out, name + "_bucket", labels, "le=\"" + java.math.BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString() + "\"", cumulative);
+        }
+        while (i < counts.length) cumulative += counts[i++];
+        sample(out, name + "_bucket", labels, "le=\"+Inf\"", cumulative);
+        sample(out, name + "_sum", labels, null, h.sum.sum() / 1e9);
+        sample(out, name + "_count", labels, null, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String extra, double value) {
+        out.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            out.append('{').append(labels);
+            if (extra != null) out.append(labels.isEmpty() ? "" : ",").append(extra);
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return String.valueOf((long) v);
+        return Double.toString(v);
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!f.type.equals(type)) throw new IllegalArgumentException(name + " is already registered as a " + f.type);
+        return f;
+    }
+
+    // name="value",... in the given order; also the series key
+    private static String labelKey(String... labels) {
+        if (labels.length == 0) return "";
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("Labels must be name/value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+            sb.append(labels[i]).append("=\"")
+                    .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return sb.toString();
+    }
+}
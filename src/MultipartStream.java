@@ -0,0 +1,252 @@
+// Streaming reader for multipart/form-data request bodies
+// Parts are handed out one at a time as InputStreams that end at the next boundary, so a file
+// part can be copied straight to disk; only a fixed-size buffer is ever held in memory.
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class MultipartStream {
+
+    /** One part: its form field name, the client's file name (file parts only) and its body. */
+    public static final class Part {
+        private final String name;
+        private final String fileName;
+        private final String contentType;
+        private final InputStream body;
+
+        Part(String name, String fileName, String contentType, InputStream body) {
+            this.name = name;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public String getName() { return name; }
+        /** Null for plain form fields. */
+        public String getFileName() { return fileName; }
+        public String getContentType() { return contentType; }
+        /** Valid until the next call to {@link MultipartStream#next()}. */
+        public InputStream getBody() { return body; }
+
+        /** Reads a form field's value (UTF-8), refusing values longer than maxBytes. */
+        public String readString(int maxBytes) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int n;
+            while ((n = body.read(chunk)) != -1) {
+                if (out.size() + n > maxBytes) throw new IllegalArgumentException("Field " + name + " is too long");
+                out.write(chunk, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter; // CRLF--boundary
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+    private int searched; // no delimiter starts before this index (saves rescanning after short reads)
+    private boolean eof;
+    private boolean finished;
+    private PartBody current;
+
+    /**
+     * @param in request body
+     * @param boundary boundary parameter from the Content-Type header
+     */
+    public MultipartStream(InputStream in, String boundary) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("Invalid multipart boundary");
+        }
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buf = new byte[BUFFER_SIZE + delimiter.length];
+        // The first boundary has no CRLF in front of it; pretend it does so every boundary looks alike
+        buf[0] = '\r';
+        buf[1] = '\n';
+        limit = 2;
+    }
+
+    /**
+     * Boundary from a Content-Type header value
+     * @return null if the header is not multipart/form-data or has no boundary
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) return null;
+        return parameters(contentType).get("boundary");
+    }
+
+    /**
+     * Advances to the next part, skipping whatever is left of the current one
+     * @return the part, or null after the closing boundary
+     * @throws IllegalArgumentException if the body is not well-formed multipart
+     */
+    public Part next() throws IOException {
+        if (finished) return null;
+        if (current == null) {
+            // Skip the preamble up to the first boundary
+            current = new PartBody();
+        }
+        byte[] skip = new byte[4096];
+        while (current.read(skip, 0, skip.length) != -1) {
+            // drain
+        }
+        // After a boundary: "--" closes the body, otherwise CRLF and the part headers follow
+        if (!ensure(2)) throw new IllegalArgumentException("Multipart body ended without a closing boundary");
+        if (buf[pos] == '-' && buf[pos + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        String line = readLine(); // rest of the boundary line (transport padding)
+        if (!line.trim().isEmpty()) throw new IllegalArgumentException("Malformed multipart boundary line");
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        int headerBytes = 0;
+        while (true) {
+            line = readLine();
+            headerBytes += line.length() + 2;
+            if (headerBytes > MAX_HEADER_BYTES) throw new IllegalArgumentException("Multipart part headers are too large");
+            if (line.isEmpty()) break;
+            int colon = line.indexOf(':');
+            if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+        }
+        String disposition = headers.get("content-disposition");
+        if (disposition == null) throw new IllegalArgumentException("Multipart part has no Content-Disposition");
+        // Browsers send non-ASCII file names as raw UTF-8 bytes
+        Map<String, String> params = parameters(new String(disposition.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8));
+        current = new PartBody();
+        return new Part(params.get("name"), params.get("filename"), headers.get("content-type"), current);
+    }
+
+    // Data up to (not including) the next delimiter; -1 once it is reached
+    private final class PartBody extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) return -1;
+            if (len == 0) return 0;
+            while (true) {
+                int found = indexOfDelimiter();
+                if (found >= 0) {
+                    if (found == pos) {
+                        pos += delimiter.length;
+                        done = true;
+                        return -1;
+                    }
+                    int n = Math.min(len, found - pos);
+                    System.arraycopy(buf, pos, b, off, n);
+                    pos += n;
+                    return n;
+                }
+                // The last delimiter.length - 1 bytes may be the start of a delimiter: hold them back
+                int safe = limit - pos - (delimiter.length - 1);
+                if (safe > 0) {
+                    int n = Math.min(len, safe);
+                    System.arraycopy(buf, pos, b, off, n);
+                    pos += n;
+                    return n;
+                }
+                if (!fill()) throw new IllegalArgumentException("Multipart body ended inside a part");
+            }
+        }
+    }
+
+    private int indexOfDelimiter() {
+        byte first = delimiter[0];
+        int last = limit - delimiter.length;
+        outer:
+        for (int i = Math.max(pos, searched); i <= last; i++) {
+            if (buf[i] != first) continue;
+            for (int j = 1; j < delimiter.length; j++) {
+                if (buf[i + j] != delimiter[j]) continue outer;
+            }
+            return i;
+        }
+        searched = Math.max(searched, last + 1);
+        return -1;
+    }
+
+    // Reads more input after compacting the buffer; false at end of input
+    private boolean fill() throws IOException {
+        if (eof) return false;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            searched = Math.max(0, searched - pos);
+            pos = 0;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n == -1) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private boolean ensure(int bytes) throws IOException {
+        while (limit - pos < bytes) {
+            if (!fill()) return false;
+        }
+        return true;
+    }
+
+    // Header lines are ASCII/Latin-1 per RFC 7578; CRLF-terminated
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            if (!ensure(1)) throw new IllegalArgumentException("Multipart body ended inside part headers");
+            byte b = buf[pos++];
+            if (b == '\n') break;
+            if (b != '\r') line.append((char) (b & 0xff));
+            if (line.length() > MAX_HEADER_BYTES) throw new IllegalArgumentException("Multipart header line is too long");
+        }
+        return line.toString();
+    }
+
+    // `type; a=b; c="d"` -> {a=b, c=d}; names are lower-cased
+    private static Map<String, String> parameters(String header) {
+        Map<String, String> out = new LinkedHashMap<>();
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            int eq = header.indexOf('=', i);
+            if (eq < 0) break;
+            String key = header.substring(i + 1, eq).trim().toLowerCase(Locale.ROOT);
+            int j = eq + 1;
+            String value;
+            if (j < header.length() && header.charAt(j) == '"') {
+                StringBuilder v = new StringBuilder();
+                for (j++; j < header.length() && header.charAt(j) != '"'; j++) {
+                    char c = header.charAt(j);
+                    if (c == '\\' && j + 1 < header.length()) c = header.charAt(++j);
+                    v.append(c);
+                }
+                value = v.toString();
+                j = header.indexOf(';', j);
+            } else {
+                int semi = header.indexOf(';', j);
+                value = (semi < 0 ? header.substring(j) : header.substring(j, semi)).trim();
+                j = semi;
+            }
+            out.put(key, value);
+            i = j;
+        }
+        return out;
+    }
+}
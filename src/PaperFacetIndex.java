@@ -0,0 +1,251 @@
+// In-memory bitmap index over the catalog for faceted search
+// Each value of subject, year, semester and status maps to a BitSet of catalog positions, so a
+// query is a few bitset ORs/ANDs and facet counts are intersection cardinalities.
+
+import java.util.*;
+
+public class PaperFacetIndex {
+
+    /** Facet fields, in response order. */
+    public static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList("subject", "year", "semester", "status"));
+
+    /**
+     * Filters, sort order and paging. Values for one field are OR-ed, fields are AND-ed.
+     * Text fields match case-insensitively; numeric fields also take ranges ("2022..2025", "2022..", "..2023").
+     */
+    public static final class Query {
+        private final Map<String, List<String>> filters = new LinkedHashMap<>();
+        private String sort = "id";
+        private int offset = 0;
+        private int limit = Integer.MAX_VALUE;
+
+        /**
+         * @param field one of {@link #FIELDS}
+         * @param values comma-separated values or ranges
+         */
+        public Query filter(String field, String values) {
+            if (!FIELDS.contains(field)) throw new IllegalArgumentException("Unknown filter: " + field);
+            List<String> list = filters.computeIfAbsent(field, k -> new ArrayList<>());
+            for (String v : values.split(",")) {
+                if (!v.trim().isEmpty()) list.add(v.trim());
+            }
+            return this;
+        }
+
+        /** Comma-separated fields, "-" prefix for descending, e.g. "-year,subject". Default: id. */
+        public Query sort(String sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        public Query page(int offset, int limit) {
+            if (offset < 0 || limit < 1) throw new IllegalArgumentException("offset must be >= 0 and limit >= 1");
+            this.offset = offset;
+            this.limit = limit;
+            return this;
+        }
+    }
+
+    /** One page of matches, the total match count and per-facet counts. */
+    public static final class Result {
+        private final List<QuestionPaper> items;
+        private final int total;
+        private final Map<String, Map<String, Integer>> facets;
+
+        Result(List<QuestionPaper> items, int total, Map<String, Map<String, Integer>> facets) {
+            this.items = items;
+            this.total = total;
+            this.facets = facets;
+        }
+
+        public List<QuestionPaper> getItems() { return items; }
+        public int getTotal() { return total; }
+        public Map<String, Map<String, Integer>> getFacets() { return facets; }
+    }
+
+    // Value -> positions for one field. Numeric fields keep values ordered for range scans.
+    private static final class Facet {
+        final boolean numeric;
+        final NavigableMap<Integer, BitSet> numbers = new TreeMap<>();
+        final Map<String, BitSet> texts = new HashMap<>();
+        final Map<String, String> labels = new HashMap<>(); // lower-case key -> first spelling seen
+
+        Facet(boolean numeric) {
+            this.numeric = numeric;
+        }
+
+        void add(Object value, int position) {
+            if (numeric) {
+                numbers.computeIfAbsent((Integer) value, k -> new BitSet()).set(position);
+            } else {
+                String label = value == null ? "" : value.toString().trim();
+                String key = label.toLowerCase(Locale.ROOT);
+                texts.computeIfAbsent(key, k -> new BitSet()).set(position);
+                labels.putIfAbsent(key, label);
+            }
+        }
+
+        // Union of the bitsets selected by the filter values
+        BitSet select(String field, List<String> values) {
+            BitSet out = new BitSet();
+            for (String v : values) {
+                if (!numeric) {
+                    BitSet b = texts.get(v.toLowerCase(Locale.ROOT));
+                    if (b != null) out.or(b);
+                    continue;
+                }
+                int dots = v.indexOf("..");
+                try {
+                    if (dots < 0) {
+                        BitSet b = numbers.get(Integer.parseInt(v));
+                        if (b != null) out.or(b);
+                    } else {
+                        String lo = v.substring(0, dots).trim();
+                        String hi = v.substring(dots + 2).trim();
+                        int from = lo.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(lo);
+                        int to = hi.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(hi);
+                        if (from > to) continue;
+                        for (BitSet b : numbers.subMap(from, true, to, true).values()) out.or(b);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(field + " must be a number or range like 2022..2025: " + v);
+                }
+            }
+            return out;
+        }
+
+        // Non-zero counts within `base`: numbers ascending, text by count (then name)
+        Map<String, Integer> counts(BitSet base, boolean unfiltered) {
+            Map<String, Integer> out = new LinkedHashMap<>();
+            if (numeric) {
+                for (Map.Entry<Integer, BitSet> e : numbers.entrySet()) {
+                    int c = count(base, e.getValue(), unfiltered);
+                    if (c > 0) out.put(String.valueOf(e.getKey()), c);
+                }
+                return out;
+            }
+            List<Map.Entry<String, Integer>> list = new ArrayList<>();
+            for (Map.Entry<String, BitSet> e : texts.entrySet()) {
+                int c = count(base, e.getValue(), unfiltered);
+                if (c > 0) list.add(new AbstractMap.SimpleEntry<>(labels.get(e.getKey()), c));
+            }
+            list.sort((a, b) -> a.getValue().equals(b.getValue())
+                    ? a.getKey().compareToIgnoreCase(b.getKey()) : b.getValue() - a.getValue());
+            for (Map.Entry<String, Integer> e : list) out.put(e.getKey(), e.getValue());
+            return out;
+        }
+
+        private static int count(BitSet base, BitSet values, boolean unfiltered) {
+            if (unfiltered) return values.cardinality();
+            BitSet b = (BitSet) values.clone();
+            b.and(base);
+            return b.cardinality();
+        }
+    }
+
+    private final QuestionPaper[] papers; // ordered by id; the index is a position in this array
+    private final Map<String, Facet> facets = new LinkedHashMap<>();
+    private final BitSet all;
+
+    /**
+     * @param catalog all papers, ordered by id
+     */
+    public PaperFacetIndex(List<QuestionPaper> catalog) {
+        this.papers = catalog.toArray(new QuestionPaper[0]);
+        facets.put("subject", new Facet(false));
+        facets.put("year", new Facet(true));
+        facets.put("semester", new Facet(true));
+        facets.put("status", new Facet(false));
+        for (int i = 0; i < papers.length; i++) {
+            QuestionPaper p = papers[i];
+            facets.get("subject").add(p.getSubject(), i);
+            facets.get("year").add(p.getYear(), i);
+            facets.get("semester").add(p.getSemester(), i);
+            facets.get("status").add(p.getStatus(), i);
+        }
+        this.all = new BitSet(papers.length);
+        all.set(0, papers.length);
+    }
+
+    public int size() {
+        return papers.length;
+    }
+
+    /**
+     * Runs a query. Facet counts are disjunctive: each field's counts apply every filter except
+     * that field's own, so the response shows what selecting another value would return.
+     * @throws IllegalArgumentException for unknown sort fields or unparseable numbers
+     */
+    public Result search(Query query) {
+        Map<String, BitSet> masks = new HashMap<>();
+        for (Map.Entry<String, List<String>> e : query.filters.entrySet()) {
+            if (!e.getValue().isEmpty()) masks.put(e.getKey(), facets.get(e.getKey()).select(e.getKey(), e.getValue()));
+        }
+        Comparator<QuestionPaper> order = comparator(query.sort);
+
+        BitSet matches = intersect(masks, null);
+        int total = matches.cardinality();
+
+        List<QuestionPaper> items = new ArrayList<>(Math.min(total, Math.min(query.limit, 1024)));
+        if (order == null) {
+            // Id order is position order: walk the bits, no sort needed
+            int skipped = 0;
+            for (int i = matches.nextSetBit(0); i >= 0 && items.size() < query.limit; i = matches.nextSetBit(i + 1)) {
+                if (skipped++ < query.offset) continue;
+                items.add(papers[i]);
+            }
+        } else {
+            List<QuestionPaper> sorted = new ArrayList<>(total);
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) sorted.add(papers[i]);
+            sorted.sort(order);
+            int from = (int) Math.min(query.offset, (long) sorted.size());
+            int to = (int) Math.min((long) from + query.limit, sorted.size());
+            items.addAll(sorted.subList(from, to));
+        }
+
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, Facet> f : facets.entrySet()) {
+            BitSet base = intersect(masks, f.getKey());
+            boolean unfiltered = masks.isEmpty() || (masks.size() == 1 && masks.containsKey(f.getKey()));
+            counts.put(f.getKey(), f.getValue().counts(base, unfiltered));
+        }
+        return new Result(items, total, counts);
+    }
+
+    // AND of all masks except `skip`
+    private BitSet intersect(Map<String, BitSet> masks, String skip) {
+        BitSet out = (BitSet) all.clone();
+        for (Map.Entry<String, BitSet> e : masks.entrySet()) {
+            if (!e.getKey().equals(skip)) out.and(e.getValue());
+        }
+        return out;
+    }
+
+    // null means plain id order
+    private static Comparator<QuestionPaper> comparator(String sort) {
+        if (sort == null || sort.trim().isEmpty() || sort.trim().equals("id")) return null;
+        Comparator<QuestionPaper> out = null;
+        for (String part : sort.split(",")) {
+            String f = part.trim();
+            boolean desc = f.startsWith("-");
+            if (desc) f = f.substring(1);
+            Comparator<QuestionPaper> c;
+            switch (f) {
+                case "id": c = Comparator.comparingInt(QuestionPaper::getId); break;
+                case "year": c = Comparator.comparingInt(QuestionPaper::getYear); break;
+                case "semester": c = Comparator.comparingInt(QuestionPaper::getSemester); break;
+                case "subject": c = Comparator.comparing(p -> nullToEmpty(p.getSubject()), String.CASE_INSENSITIVE_ORDER); break;
+                case "status": c = Comparator.comparing(p -> nullToEmpty(p.getStatus()), String.CASE_INSENSITIVE_ORDER); break;
+                default: throw new IllegalArgumentException("Unknown sort field: " + f);
+            }
+            if (desc) c = c.reversed();
+            out = out == null ? c : out.thenComparing(c);
+        }
+        // Stable tie-break so pages do not overlap
+        return out.thenComparingInt(QuestionPaper::getId);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
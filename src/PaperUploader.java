@@ -0,0 +1,262 @@
+// Handles POST /papers/upload: a PDF and its details in one multipart request
+// The file part is copied straight from the request body to a hidden temp file in PDF/ while its
+// SHA-256 and size are computed, then fsync-ed, moved into the content-addressed BlobStore (or
+// dropped if the same content is already stored) and registered in the catalog.
+// Memory per upload is two fixed buffers, whatever the file size.
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+public class PaperUploader {
+
+    /** The registered paper plus what was learned while streaming the file. */
+    public static final class Result {
+        private final QuestionPaper paper;
+        private final long size;
+        private final String sha256;
+        private final boolean duplicate;
+        private final long elapsedMillis;
+
+        Result(QuestionPaper paper, long size, String sha256, boolean duplicate, long elapsedMillis) {
+            this.paper = paper;
+            this.size = size;
+            this.sha256 = sha256;
+            this.duplicate = duplicate;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public QuestionPaper getPaper() { return paper; }
+        public long getSize() { return size; }
+        public String getSha256() { return sha256; }
+        /** True if the same PDF was already stored; the new row shares it. */
+        public boolean isDuplicate() { return duplicate; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    /** A rejected upload and the HTTP status that says why. */
+    public static final class UploadException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        UploadException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() { return status; }
+    }
+
+    private static final int COPY_BUFFER = 64 * 1024;
+    private static final int MAX_FIELD_BYTES = 1024;
+    // The PDF header must start within the first 1024 bytes (PDF 1.7, 7.5.2)
+    private static final int HEADER_WINDOW = 1024;
+    // Column sizes from setup-database.sql; file_path also holds the 64-char hash and a slash
+    private static final int MAX_SUBJECT = 100;
+    private static final int MAX_FILE_NAME = 255 - 65;
+
+    private final QuestionPaperService service;
+    private final PdfRepository repository;
+    private final long maxBytes;
+    private final Function<String, QuestionPaper> nameParser;
+
+    /**
+     * @param service where the paper row is inserted
+     * @param repository PDF folder the upload is written to before it moves into the blob store
+     * @param maxBytes largest accepted file
+     * @param nameParser fills in subject/year/semester missing from the form (e.g. PdfAutoImporter::parse); may return null
+     */
+    public PaperUploader(QuestionPaperService service, PdfRepository repository, long maxBytes,
+                         Function<String, QuestionPaper> nameParser) {
+        this.service = service;
+        this.repository = repository;
+        this.maxBytes = maxBytes;
+        this.nameParser = nameParser;
+    }
+
+    /**
+     * Parses the request's Content-Length header
+     * @param header header value, or null when the body is chunked
+     * @return declared length, or -1 if unknown
+     * @throws UploadException 400 if the value is not a non-negative whole number
+     */
+    public static long contentLength(String header) throws UploadException {
+        if (header == null) return -1;
+        try {
+            long length = Long.parseLong(header.trim());
+            if (length >= 0) return length;
+        } catch (NumberFormatException e) {
+            // answered below
+        }
+        throw new UploadException(400, "Content-Length must be a whole number of bytes: '" + header + "'");
+    }
+
+    /**
+     * Stores the uploaded PDF and registers it with status AVAILABLE
+     * @param contentType request Content-Type (multipart/form-data with a boundary)
+     * @param contentLength declared body length, or -1 if unknown (chunked)
+     * @param body request body; fields: file (required), subject, year, semester, fileName (all optional
+     *             when the file name follows the import patterns)
+     * @throws UploadException 400/413/415 for bad requests, 503 if the row could not be inserted
+     */
+    public Result upload(String contentType, long contentLength, InputStream body) throws IOException, UploadException {
+        long start = System.currentTimeMillis();
+        String boundary = MultipartStream.boundaryOf(contentType);
+        if (boundary == null) throw new UploadException(415, "Expected multipart/form-data with a boundary");
+        if (contentLength > maxBytes + 64 * 1024) throw new UploadException(413, "Upload is larger than " + maxBytes + " bytes");
+
+        Map<String, String> fields = new HashMap<>();
+        Path tmp = null;
+        String clientName = null;
+        long size = 0;
+        String sha256 = null;
+        try {
+            MultipartStream multipart = new MultipartStream(body, boundary);
+            MultipartStream.Part part;
+            while ((part = multipart.next()) != null) {
+                if (part.getFileName() == null) {
+                    if (part.getName() != null) fields.put(part.getName(), part.readString(MAX_FIELD_BYTES).trim());
+                    continue;
+                }
+                if (!"file".equals(part.getName())) continue;
+                if (tmp != null) throw new UploadException(400, "Only one file per upload");
+                clientName = part.getFileName();
+                tmp = repository.getDirectory().resolve(".upload-" + UUID.randomUUID() + ".part");
+                MessageDigest digest = sha256();
+                size = copy(part.getBody(), tmp, digest);
+                sha256 = FileSender.toHex(digest.digest());
+            }
+        } catch (IllegalArgumentException malformed) {
+            deleteQuietly(tmp);
+            throw new UploadException(400, malformed.getMessage());
+        } catch (UploadException | IOException | RuntimeException e) {
+            deleteQuietly(tmp);
+            throw e;
+        }
+
+        try {
+            if (tmp == null) throw new UploadException(400, "file is required");
+            if (size == 0) throw new UploadException(400, "file is empty");
+            if (!hasPdfHeader(tmp)) throw new UploadException(415, "file is not a PDF");
+
+            String name = fileName(fields.getOrDefault("fileName", ""), clientName);
+            QuestionPaper paper = describe(fields, name, BlobStore.reference(sha256, name));
+
+            BlobStore blobs = service.blobStore();
+            BlobStore.Ingest blob = blobs.ingest(tmp, sha256);
+            tmp = null;
+            try {
+                int id;
+                try {
+                    id = service.addPapers(Collections.singletonList(paper))[0];
+                } catch (SQLException e) {
+                    // No row: a newly stored blob has no references and is reclaimed by GC
+                    throw new UploadException(503, "Could not register paper: " + e.getMessage());
+                }
+                QuestionPaper saved = new QuestionPaper(id, paper.getSubject(), paper.getYear(), paper.getSemester(),
+                        paper.getFilePath(), paper.getStatus());
+                return new Result(saved, size, sha256, blob.isDuplicate(), System.currentTimeMillis() - start);
+            } finally {
+                blobs.unpin(blob.getHash());
+            }
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    // Request body -> temp file, hashing on the way; forced to disk before returning
+    private long copy(InputStream in, Path tmp, MessageDigest digest) throws IOException, UploadException {
+        long total = 0;
+        byte[] chunk = new byte[COPY_BUFFER];
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                total += n;
+                if (total > maxBytes) throw new UploadException(413, "Upload is larger than " + maxBytes + " bytes");
+                digest.update(chunk, 0, n);
+                ByteBuffer buf = ByteBuffer.wrap(chunk, 0, n);
+                while (buf.hasRemaining()) out.write(buf);
+            }
+            out.force(true);
+        }
+        return total;
+    }
+
+    private static boolean hasPdfHeader(Path file) throws IOException {
+        byte[] head = new byte[HEADER_WINDOW];
+        int len = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while (len < head.length && (n = in.read(head, len, head.length - len)) != -1) len += n;
+        }
+        return new String(head, 0, len, StandardCharsets.ISO_8859_1).contains("%PDF-");
+    }
+
+    // The form's fileName wins over the client's, then the same rules as the PDF folder
+    private static String fileName(String requested, String clientName) throws UploadException {
+        String name = PdfRepository.cleanName(!requested.isEmpty() ? requested : clientName == null ? "" : clientName);
+        if (name.isEmpty()) throw new UploadException(400, "fileName is required");
+        if (!name.toLowerCase(Locale.ROOT).endsWith(".pdf")) throw new UploadException(400, "fileName must end with .pdf");
+        if (name.startsWith(".") || name.length() > MAX_FILE_NAME || !name.matches("[^\\p{Cntrl}<>:\"|?*]+")) {
+            throw new UploadException(400, "fileName is not allowed: " + name);
+        }
+        return name;
+    }
+
+    // Form fields first; whatever is missing comes from the file name
+    private QuestionPaper describe(Map<String, String> fields, String name, String filePath) throws UploadException {
+        QuestionPaper parsed = nameParser == null ? null : nameParser.apply(name);
+        String subject = fields.getOrDefault("subject", "");
+        if (subject.isEmpty() && parsed != null) subject = parsed.getSubject();
+        if (subject.isEmpty()) throw new UploadException(400, "subject is required (it could not be read from the file name)");
+        if (subject.length() > MAX_SUBJECT) throw new UploadException(400, "subject is longer than " + MAX_SUBJECT + " characters");
+        int year = number(fields, "year", parsed == null ? null : parsed.getYear());
+        int semester = number(fields, "semester", parsed == null ? null : parsed.getSemester());
+        return new QuestionPaper(subject, year, semester, filePath, "AVAILABLE");
+    }
+
+    private static int number(Map<String, String> fields, String field, Integer fallback) throws UploadException {
+        String v = fields.getOrDefault(field, "");
+        if (v.isEmpty()) {
+            if (fallback == null) throw new UploadException(400, field + " is required (it could not be read from the file name)");
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new UploadException(400, field + " must be an integer");
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        if (p == null) return;
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            System.err.println("[PaperUploader] Could not delete " + p + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,346 @@
+// Registers PDFs dropped into the PDF folder without typing their details in
+// File names like maths32024May.pdf already carry subject, semester and year, so the folder is
+// listed, each file is stat-ed and its name parsed on a fork-join pool, and unregistered files are
+// inserted in batches. A checkpoint (an mtime watermark) makes later runs look only at new files.
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PdfAutoImporter {
+
+    /**
+     * Default file name patterns, tried in order. Each needs the named groups subject, semester and
+     * year; anything else in the name (e.g. the exam session in maths32024May.pdf) is ignored.
+     */
+    public static final String DEFAULT_PATTERNS =
+            // maths32024May.pdf, dbms 5 2023.pdf, data-structures_4_2025_dec.pdf
+            "(?i)^(?<subject>[a-z][a-z .&_-]*?)[ ._-]*(?<semester>[1-8])[ ._-]*(?<year>(?:19|20)\\d{2})(?:[ ._-]*[a-z]+)?\\.pdf$"
+            // dbms_2023_sem5.pdf, os-2024-s3.pdf
+            + ";;(?i)^(?<subject>[a-z][a-z .&_-]*?)[ ._-]+(?<year>(?:19|20)\\d{2})[ ._-]+s(?:em)?[ ._-]*(?<semester>[1-8])(?:[ ._-]*[a-z]+)?\\.pdf$";
+
+    // Files on filesystems with coarse mtimes (FAT: 2 s) may carry a time just before the run started
+    private static final long MTIME_GRACE_MS = 2000;
+    // Names per fork-join leaf: enough to amortise task overhead on a 100k-file folder
+    private static final int LEAF_SIZE = 256;
+    private static final int MAX_LISTED = 100;
+
+    /** Outcome of one run. */
+    public static final class Report {
+        private boolean incremental;
+        private int scanned;
+        private int changed;
+        private int alreadyRegistered;
+        private int imported;
+        private int failed;
+        private final List<String> unparsed = new ArrayList<>();
+        private int unparsedCount;
+        private final List<String> errors = new ArrayList<>();
+        private boolean databaseUnavailable;
+        private long elapsedMillis;
+
+        /** False when every file was considered (first run, full=true or changed patterns). */
+        public boolean isIncremental() { return incremental; }
+        /** PDFs in the folder. */
+        public int getScanned() { return scanned; }
+        /** PDFs new or modified since the last checkpoint. */
+        public int getChanged() { return changed; }
+        public int getAlreadyRegistered() { return alreadyRegistered; }
+        public int getImported() { return imported; }
+        public int getFailed() { return failed; }
+        /** Names (up to 100) that matched no pattern; see unparsedCount for the total. */
+        public List<String> getUnparsed() { return unparsed; }
+        public int getUnparsedCount() { return unparsedCount; }
+        public List<String> getErrors() { return errors; }
+        public boolean isDatabaseUnavailable() { return databaseUnavailable; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    // One changed PDF after the parallel pass: a parsed paper, or null if no pattern matched
+    private static final class Candidate {
+        final String name;
+        final QuestionPaper paper;
+
+        Candidate(String name, QuestionPaper paper) {
+            this.name = name;
+            this.paper = paper;
+        }
+    }
+
+    private final QuestionPaperService service;
+    private final Path directory;
+    private final Path checkpointFile;
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final String patternSource;
+    private final int batchSize;
+    private final int threads;
+    private final ReentrantLock running = new ReentrantLock();
+
+    /**
+     * Importer for the project's PDF folder, configured from AUTO_IMPORT_* settings
+     */
+    public static PdfAutoImporter fromConfig(QuestionPaperService service) {
+        Path dir = PdfRepository.getInstance().getDirectory();
+        return new PdfAutoImporter(service, dir,
+                Paths.get(AppConfig.get("AUTO_IMPORT_CHECKPOINT_FILE", dir.resolveSibling("autoimport.checkpoint").toString())),
+                AppConfig.get("AUTO_IMPORT_PATTERNS", DEFAULT_PATTERNS),
+                AppConfig.getInt("AUTO_IMPORT_BATCH_SIZE", AppConfig.getInt("BULK_BATCH_SIZE", 1000)),
+                AppConfig.getInt("AUTO_IMPORT_THREADS", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param service where new papers are inserted
+     * @param directory folder to scan (not recursive, like PdfRepository)
+     * @param checkpointFile where the mtime watermark is kept between runs
+     * @param patterns regexes separated by ";;", each with named groups subject, semester and year
+     * @param batchSize papers per insert batch
+     * @param threads parallelism for stat-ing and parsing
+     * @throws IllegalArgumentException if a pattern does not compile or lacks a required group
+     */
+    public PdfAutoImporter(QuestionPaperService service, Path directory, Path checkpointFile,
+                           String patterns, int batchSize, int threads) {
+        this.service = service;
+        this.directory = directory;
+        this.checkpointFile = checkpointFile;
+        this.patternSource = patterns;
+        for (String p : patterns.split(";;")) {
+            if (p.trim().isEmpty()) continue;
+            for (String group : new String[] {"subject", "semester", "year"}) {
+                if (!p.contains("(?<" + group + ">")) {
+                    throw new IllegalArgumentException("Import pattern has no (?<" + group + ">...) group: " + p);
+                }
+            }
+            this.patterns.add(Pattern.compile(p.trim()));
+        }
+        if (this.patterns.isEmpty()) throw new IllegalArgumentException("No import patterns configured");
+        this.batchSize = Math.max(1, batchSize);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Scans the folder and registers every PDF whose name parses and which is not in the catalog yet
+     * @param full ignore the checkpoint and consider every file (e.g. after restoring files with old mtimes)
+     * @throws IllegalStateException if another run is in progress
+     */
+    public Report run(boolean full) throws IOException {
+        if (!running.tryLock()) throw new IllegalStateException("An import is already running");
+        try {
+            return doRun(full);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private Report doRun(boolean full) throws IOException {
+        long start = System.currentTimeMillis();
+        Report report = new Report();
+        Properties checkpoint = loadCheckpoint();
+        long watermark = 0;
+        // Files skipped under old patterns may match new ones, so a pattern change forces a full pass
+        if (!full && patternSource.equals(checkpoint.getProperty("patterns"))) {
+            try {
+                watermark = Long.parseLong(checkpoint.getProperty("watermark", "0"));
+            } catch (NumberFormatException e) {
+                watermark = 0;
+            }
+        }
+        report.incremental = watermark > 0;
+
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory)) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                // Blobs are uploads, already registered under their hash
+                if (name.toLowerCase(Locale.ROOT).endsWith(".pdf") && !BlobStore.isBlobName(name)) names.add(name);
+            }
+        }
+        report.scanned = names.size();
+
+        List<Candidate> changed;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            changed = pool.invoke(new ScanTask(names.toArray(new String[0]), 0, names.size(), watermark));
+        } finally {
+            pool.shutdown();
+        }
+        report.changed = changed.size();
+
+        List<QuestionPaper> toInsert = new ArrayList<>();
+        if (!changed.isEmpty()) {
+            Set<String> registered;
+            try {
+                registered = registeredNames();
+            } catch (SQLException e) {
+                report.databaseUnavailable = true;
+                report.errors.add("Could not read the catalog: " + e.getMessage());
+                report.elapsedMillis = System.currentTimeMillis() - start;
+                return report;
+            }
+            changed.sort((a, b) -> a.name.compareToIgnoreCase(b.name));
+            for (Candidate c : changed) {
+                if (registered.contains(c.name.toLowerCase(Locale.ROOT))) {
+                    report.alreadyRegistered++;
+                } else if (c.paper == null) {
+                    if (report.unparsed.size() < MAX_LISTED) report.unparsed.add(c.name);
+                    report.unparsedCount++;
+                } else {
+                    toInsert.add(c.paper);
+                }
+            }
+        }
+
+        for (int from = 0; from < toInsert.size(); from += batchSize) {
+            List<QuestionPaper> batch = toInsert.subList(from, Math.min(from + batchSize, toInsert.size()));
+            try {
+                report.imported += service.addPapers(batch).length;
+            } catch (SQLException e) {
+                report.failed += batch.size();
+                if (report.errors.size() < MAX_LISTED) {
+                    report.errors.add("Batch starting at " + batch.get(0).getFilePath() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // Only move the watermark once everything up to it is registered, or failed files would be skipped
+        if (report.failed == 0) {
+            checkpoint.setProperty("watermark", String.valueOf(start - MTIME_GRACE_MS));
+            checkpoint.setProperty("patterns", patternSource);
+            checkpoint.setProperty("lastRun", String.valueOf(start));
+            saveCheckpoint(checkpoint);
+        }
+        report.elapsedMillis = System.currentTimeMillis() - start;
+        System.out.println("[PdfAutoImporter] " + report.scanned + " PDFs, " + report.changed + " changed, "
+                + report.imported + " imported, " + report.alreadyRegistered + " already registered, "
+                + report.unparsedCount + " unparsed, " + report.failed + " failed in " + report.elapsedMillis + " ms");
+        return report;
+    }
+
+    // Stats and parses a slice of the listing; splits until slices are small enough
+    private final class ScanTask extends RecursiveTask<List<Candidate>> {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] names;
+        private final int from;
+        private final int to;
+        private final long watermark;
+
+        ScanTask(String[] names, int from, int to, long watermark) {
+            this.names = names;
+            this.from = from;
+            this.to = to;
+            this.watermark = watermark;
+        }
+
+        @Override
+        protected List<Candidate> compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(names, from, mid, watermark);
+                left.fork();
+                List<Candidate> right = new ScanTask(names, mid, to, watermark).compute();
+                List<Candidate> out = left.join();
+                out.addAll(right);
+                return out;
+            }
+            List<Candidate> out = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Path file = directory.resolve(names[i]);
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile() || attrs.lastModifiedTime().toMillis() < watermark) continue;
+                } catch (IOException e) {
+                    continue; // removed since the listing
+                }
+                out.add(new Candidate(names[i], parse(names[i])));
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Paper details from a file name, or null if no pattern matches
+     * @param fileName e.g. maths32024May.pdf
+     */
+    public QuestionPaper parse(String fileName) {
+        for (Pattern pattern : patterns) {
+            Matcher m = pattern.matcher(fileName);
+            if (!m.matches()) continue;
+            String subject = subjectLabel(m.group("subject"));
+            if (subject.isEmpty()) continue;
+            return new QuestionPaper(subject, Integer.parseInt(m.group("year")),
+                    Integer.parseInt(m.group("semester")), fileName, "AVAILABLE");
+        }
+        return null;
+    }
+
+    // "data-structures" -> "Data Structures"; names already in mixed case are kept as typed
+    private static String subjectLabel(String raw) {
+        String s = raw.replaceAll("[._-]+", " ").trim().replaceAll("\\s+", " ");
+        if (!s.equals(s.toLowerCase(Locale.ROOT))) return s;
+        StringBuilder out = new StringBuilder(s.length());
+        boolean wordStart = true;
+        for (char c : s.toCharArray()) {
+            out.append(wordStart ? Character.toUpperCase(c) : c);
+            wordStart = c == ' ';
+        }
+        return out.toString();
+    }
+
+    // File names already in the catalog, lower-cased; rows may hold paths like PDF\maths.pdf
+    private Set<String> registeredNames() throws SQLException {
+        Set<String> names = new HashSet<>();
+        for (QuestionPaper p : service.queryAllPapers()) {
+            if (p.getFilePath() != null) names.add(PdfRepository.storedName(p.getFilePath()).toLowerCase(Locale.ROOT));
+        }
+        return names;
+    }
+
+    private Properties loadCheckpoint() {
+        Properties props = new Properties();
+        if (!Files.exists(checkpointFile)) return props;
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            props.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            // Losing the checkpoint only costs one full pass
+            System.err.println("[PdfAutoImporter] Could not read " + checkpointFile + ": " + e.getMessage());
+            props.clear();
+        }
+        return props;
+    }
+
+    // Written to a temp file and moved into place, so a crash never leaves a half-written checkpoint
+    private void saveCheckpoint(Properties props) {
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "PDF auto-import checkpoint");
+            }
+            try {
+                Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("[PdfAutoImporter] Could not save " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+}
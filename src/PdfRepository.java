@@ -0,0 +1,225 @@
+// Index of the PDF/ folder shared by the web server and EmailService
+// The folder is scanned once at startup and kept current by a WatchService, so resolving a
+// paper's file is a single hash lookup instead of probing candidate paths on disk.
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class PdfRepository {
+
+    /** A file in the PDF folder. */
+    public static final class PdfEntry {
+        private final String name;
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        PdfEntry(String name, Path path, long size, long lastModified) {
+            this.name = name;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() { return name; }
+        public Path getPath() { return path; }
+        public long getSize() { return size; }
+        public long getLastModified() { return lastModified; }
+    }
+
+    private static final String PDF_BASE_DIR = "PDF";
+    private static volatile PdfRepository instance;
+
+    private final Path directory;
+    private final Map<String, PdfEntry> index = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Shared repository for the project's PDF folder, created (and indexed) on first use
+     */
+    public static PdfRepository getInstance() {
+        PdfRepository r = instance;
+        if (r == null) {
+            synchronized (PdfRepository.class) {
+                if (instance == null) {
+                    try {
+                        instance = new PdfRepository(locatePdfDir(), true);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Could not index PDF folder", e);
+                    }
+                }
+                r = instance;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param directory folder holding the PDFs
+     * @param watch keep the index current with a WatchService
+     */
+    public PdfRepository(Path directory, boolean watch) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        Files.createDirectories(this.directory);
+        rescan();
+        System.out.println("[PdfRepository] Indexed " + index.size() + " files in " + this.directory);
+        if (watch) watchForChanges();
+    }
+
+    // Project root vs running from src/
+    private static Path locatePdfDir() {
+        String userDir = System.getProperty("user.dir");
+        String[] candidates = new String[] {
+            PDF_BASE_DIR,
+            ".." + File.separator + PDF_BASE_DIR,
+            userDir + File.separator + PDF_BASE_DIR
+        };
+        for (String c : candidates) {
+            Path p = Paths.get(c);
+            if (Files.isDirectory(p)) return p;
+        }
+        return Paths.get(PDF_BASE_DIR);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Looks up a file by name. Any directory part is ignored, which also prevents path traversal;
+     * blob references ("<sha256>/name.pdf", see BlobStore) resolve to the blob.
+     * @param fileName file name or stored path such as "maths32024May.pdf" or "PDF\\maths32024May.pdf"
+     * @return the entry, or null if the folder has no such file
+     */
+    public PdfEntry find(String fileName) {
+        if (fileName == null) return null;
+        String name = storedName(fileName);
+        return name.isEmpty() ? null : index.get(name);
+    }
+
+    /** Where a file with this name lives (or would live) in the PDF folder. */
+    public Path pathFor(String fileName) {
+        return directory.resolve(cleanName(fileName));
+    }
+
+    public Collection<PdfEntry> list() {
+        return new ArrayList<>(index.values());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Registers a callback for files that were added, changed or removed. It runs on the thread
+     * that noticed the change (usually the watcher), so it should hand real work off.
+     * @param listener receives the file name
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    private void fireChanged(String name) {
+        for (Consumer<String> l : listeners) {
+            try {
+                l.accept(name);
+            } catch (RuntimeException e) {
+                System.err.println("[PdfRepository] Listener failed for " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Re-reads one file's metadata now, without waiting for the watcher. Call after writing or deleting a file.
+     * @param fileName file name in the PDF folder
+     */
+    public void refresh(String fileName) {
+        String name = cleanName(fileName);
+        // Hidden files, e.g. uploads still being written, are not served
+        if (name.startsWith(".")) return;
+        Path path = directory.resolve(name);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attrs.isRegularFile()) {
+                PdfEntry entry = new PdfEntry(name, path, attrs.size(), attrs.lastModifiedTime().toMillis());
+                PdfEntry old = index.put(name, entry);
+                if (old == null || old.size != entry.size || old.lastModified != entry.lastModified) fireChanged(name);
+                return;
+            }
+        } catch (IOException e) {
+            // Gone
+        }
+        if (index.remove(name) != null) fireChanged(name);
+    }
+
+    /** Name of the file in this folder that a catalog file_path refers to. */
+    static String storedName(String filePath) {
+        String hash = BlobStore.hashOf(filePath);
+        return hash != null ? BlobStore.blobName(hash) : cleanName(filePath);
+    }
+
+    static String cleanName(String fileName) {
+        String n = fileName.replace("\\", "/");
+        int slash = n.lastIndexOf('/');
+        return (slash == -1 ? n : n.substring(slash + 1)).trim();
+    }
+
+    private void rescan() throws IOException {
+        Set<String> seen = new HashSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(p -> {
+                String name = p.getFileName().toString();
+                seen.add(name);
+                refresh(name);
+            });
+        }
+        for (String name : new ArrayList<>(index.keySet())) {
+            if (!seen.contains(name) && index.remove(name) != null) fireChanged(name);
+        }
+    }
+
+    private void watchForChanges() throws IOException {
+        WatchService watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        Thread t = new Thread(() -> {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watcher.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        try {
+                            rescan();
+                        } catch (IOException e) {
+                            System.err.println("[PdfRepository] Rescan failed: " + e.getMessage());
+                        }
+                    } else {
+                        refresh(((Path) event.context()).toString());
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("[PdfRepository] PDF folder is no longer accessible; index will not update");
+                    return;
+                }
+            }
+        }, "pdf-repository-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+}
@@ -0,0 +1,616 @@
+// Minimal PDF text extraction for the full-text index
+// Handles what our question papers use: FlateDecode content streams, object streams and
+// ToUnicode CMaps. No external library is needed; scanned (image-only) PDFs yield no text.
+// Inflated data is capped per stream and per document, so a small file that decompresses to
+// gigabytes is rejected with an IOException instead of exhausting the heap.
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class PdfTextExtractor {
+
+    private static final Pattern OBJ_HEADER = Pattern.compile("(\\d+)\\s+(\\d+)\\s+obj\\b");
+    private static final Pattern REF = Pattern.compile("(\\d+)\\s+\\d+\\s+R");
+    private static final Pattern LENGTH = Pattern.compile("/Length\\s+(\\d+)(\\s+\\d+\\s+R)?");
+    private static final Pattern FONT_ENTRY = Pattern.compile("/([^\\s/<>\\[\\]()]+)\\s+(\\d+)\\s+\\d+\\s+R");
+    private static final Pattern IMAGE = Pattern.compile("/Subtype\\s*/Image\\b");
+
+    private static final long MAX_STREAM_BYTES = AppConfig.getLong("FULLTEXT_MAX_STREAM_BYTES", 16L << 20);
+    private static final long MAX_DOCUMENT_BYTES = AppConfig.getLong("FULLTEXT_MAX_DOCUMENT_BYTES", 64L << 20);
+    // Forms can invoke other forms many times over, so rendering is bounded separately from decoding
+    private static final long MAX_OPERATORS = AppConfig.getLong("FULLTEXT_MAX_OPERATORS", 20_000_000L);
+    private static final long MAX_TEXT_CHARS = AppConfig.getLong("FULLTEXT_MAX_TEXT_CHARS", 16L << 20);
+
+    /** A parsed indirect object: its dictionary text and decoded stream (if any). */
+    private static final class PdfObject {
+        final String dict;
+        final byte[] stream;
+
+        PdfObject(String dict, byte[] stream) {
+            this.dict = dict;
+            this.stream = stream;
+        }
+    }
+
+    /** Code -> text mapping from a ToUnicode CMap. */
+    private static final class CMap {
+        final Map<Integer, String> map = new HashMap<>();
+        int codeBytes = 1;
+        boolean unreadable;
+    }
+
+    private final byte[] data;
+    private final String text; // ISO-8859-1 view of the file: one char per byte
+    private final Map<Integer, PdfObject> objects = new HashMap<>();
+    private final Map<Integer, CMap> cmaps = new HashMap<>();
+    private long inflated; // bytes decoded so far, against MAX_DOCUMENT_BYTES
+    private long operators; // content-stream operators rendered so far, against MAX_OPERATORS
+    private final Set<Integer> formStack = new HashSet<>(); // forms being rendered, outermost first
+    // Parsed per resource dictionary, since a form drawn many times brings the same one each time
+    private final Map<String, Map<String, CMap>> fontsByResources = new HashMap<>();
+    private final Map<String, Map<String, Integer>> formsByResources = new HashMap<>();
+    private final Map<Integer, String> formContent = new HashMap<>();
+    private final Map<Integer, String> formResources = new HashMap<>();
+
+    private PdfTextExtractor(byte[] data) {
+        this.data = data;
+        this.text = new String(data, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Extracts the text of every page, in page-object order
+     * @param pdf PDF file
+     * @return extracted text (empty if the PDF has no text layer)
+     * @throws IOException if the file cannot be read or the document exceeds a decoding or rendering limit
+     */
+    public static String extract(Path pdf) throws IOException {
+        PdfTextExtractor extractor = new PdfTextExtractor(Files.readAllBytes(pdf));
+        extractor.parseObjects();
+        return extractor.pagesText();
+    }
+
+    // ---------------- object parsing ----------------
+
+    private void parseObjects() throws IOException {
+        Matcher m = OBJ_HEADER.matcher(text);
+        int from = 0;
+        while (m.find(from)) {
+            int num = Integer.parseInt(m.group(1));
+            int bodyStart = m.end();
+            int streamKw = indexOfKeyword(text, "stream", bodyStart);
+            int endObj = text.indexOf("endobj", bodyStart);
+            if (endObj < 0) break;
+            if (streamKw >= 0 && streamKw < endObj) {
+                String dict = text.substring(bodyStart, streamKw);
+                int dataStart = streamKw + "stream".length();
+                if (dataStart < data.length && data[dataStart] == '\r') dataStart++;
+                if (dataStart < data.length && data[dataStart] == '\n') dataStart++;
+                int dataEnd = streamEnd(dict, dataStart);
+                byte[] raw = java.util.Arrays.copyOfRange(data, dataStart, Math.max(dataStart, dataEnd));
+                objects.put(num, new PdfObject(dict, decode(dict, raw)));
+                endObj = text.indexOf("endobj", Math.max(dataEnd, bodyStart));
+                if (endObj < 0) break;
+            } else {
+                objects.put(num, new PdfObject(text.substring(bodyStart, endObj), null));
+            }
+            from = endObj + "endobj".length();
+        }
+        // Objects packed inside object streams (PDF 1.5+)
+        for (PdfObject o : new ArrayList<>(objects.values())) {
+            if (o.stream != null && o.dict.contains("/ObjStm")) unpackObjectStream(o);
+        }
+    }
+
+    private int streamEnd(String dict, int dataStart) {
+        Matcher lm = LENGTH.matcher(dict);
+        if (lm.find() && lm.group(2) == null) {
+            int end = dataStart + Integer.parseInt(lm.group(1));
+            if (end <= data.length) return end;
+        }
+        // Indirect or missing /Length: fall back to the endstream keyword
+        int end = text.indexOf("endstream", dataStart);
+        return end < 0 ? data.length : end;
+    }
+
+    private void unpackObjectStream(PdfObject objStm) {
+        int n = intEntry(objStm.dict, "/N");
+        int first = intEntry(objStm.dict, "/First");
+        if (n <= 0 || first < 0) return;
+        String s = new String(objStm.stream, StandardCharsets.ISO_8859_1);
+        String[] header = s.substring(0, Math.min(first, s.length())).trim().split("\\s+");
+        for (int i = 0; i + 1 < header.length && i / 2 < n; i += 2) {
+            try {
+                int num = Integer.parseInt(header[i]);
+                int start = first + Integer.parseInt(header[i + 1]);
+                int end = i + 3 < header.length ? first + Integer.parseInt(header[i + 3]) : s.length();
+                if (start < s.length() && !objects.containsKey(num)) {
+                    objects.put(num, new PdfObject(s.substring(start, Math.min(end, s.length())), null));
+                }
+            } catch (NumberFormatException e) {
+                return;
+            }
+        }
+    }
+
+    private byte[] decode(String dict, byte[] raw) throws IOException {
+        // Images carry no text, whatever their filter
+        if (IMAGE.matcher(dict).find()) return null;
+        if (!dict.contains("/Filter")) return raw;
+        // Only Flate is relevant for text; images (DCT, JBIG2, ...) are skipped
+        if (!dict.contains("/FlateDecode") || dict.contains("/DCTDecode")) return null;
+        Inflater inflater = new Inflater();
+        inflater.setInput(raw);
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min((long) raw.length * 3, MAX_STREAM_BYTES));
+        byte[] buf = new byte[16 * 1024];
+        try {
+            while (!inflater.finished()) {
+                int k = inflater.inflate(buf);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                inflated += k;
+                if (out.size() + k > MAX_STREAM_BYTES || inflated > MAX_DOCUMENT_BYTES) {
+                    throw new IOException("inflates past " + (out.size() + k > MAX_STREAM_BYTES
+                            ? MAX_STREAM_BYTES + " bytes in one stream" : MAX_DOCUMENT_BYTES + " bytes in total"));
+                }
+                out.write(buf, 0, k);
+            }
+        } catch (DataFormatException e) {
+            // Keep whatever decoded before the corruption
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    // ---------------- pages, fonts, cmaps ----------------
+
+    private String pagesText() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        List<Integer> nums = new ArrayList<>(objects.keySet());
+        java.util.Collections.sort(nums);
+        for (int num : nums) {
+            PdfObject o = objects.get(num);
+            if (!isPage(o.dict)) continue;
+            String resources = resolveDictEntry(o.dict, "/Resources");
+            // A page's content streams form one stream: graphics state (e.g. the font) carries across
+            ByteArrayOutputStream page = new ByteArrayOutputStream();
+            for (int contentRef : contentRefs(o.dict)) {
+                PdfObject content = objects.get(contentRef);
+                if (content != null && content.stream != null) {
+                    page.write(content.stream, 0, content.stream.length);
+                    page.write('\n');
+                }
+            }
+            render(new String(page.toByteArray(), StandardCharsets.ISO_8859_1), resources, sb, 0);
+            sb.append('\n');
+            annotationText(o.dict, sb);
+            checkTextLength(sb);
+        }
+        return sb.toString();
+    }
+
+    // Comments and typewriter text: /Contents of each annotation in the page's /Annots
+    private void annotationText(String pageDict, StringBuilder out) {
+        int i = pageDict.indexOf("/Annots");
+        if (i < 0) return;
+        String rest = pageDict.substring(i + "/Annots".length()).trim();
+        String refs;
+        if (rest.startsWith("[")) {
+            refs = rest.substring(0, Math.max(rest.indexOf(']'), 0));
+        } else {
+            Matcher m = REF.matcher(rest);
+            PdfObject array = m.lookingAt() ? objects.get(Integer.parseInt(m.group(1))) : null;
+            if (array == null) return;
+            refs = array.dict;
+        }
+        Matcher m = REF.matcher(refs);
+        while (m.find()) {
+            PdfObject annot = objects.get(Integer.parseInt(m.group(1)));
+            if (annot == null) continue;
+            int c = annot.dict.indexOf("/Contents");
+            if (c < 0) continue;
+            String value = annot.dict.substring(c + "/Contents".length()).trim();
+            String raw;
+            if (value.startsWith("(")) {
+                StringBuilder lit = new StringBuilder();
+                readLiteral(value, 0, lit);
+                raw = lit.toString();
+            } else if (value.startsWith("<") && value.indexOf('>') > 0) {
+                raw = hexBytes(value.substring(1, value.indexOf('>')));
+            } else {
+                continue;
+            }
+            out.append(textString(raw)).append('\n');
+        }
+    }
+
+    // PDF text strings are UTF-16BE with a BOM, or PDFDocEncoding (close enough to Latin-1)
+    private static String textString(String raw) {
+        if (raw.length() >= 2 && raw.charAt(0) == 0xFE && raw.charAt(1) == 0xFF) {
+            return new String(raw.substring(2).getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_16BE);
+        }
+        return raw;
+    }
+
+    private static boolean isPage(String dict) {
+        return dict.matches("(?s).*/Type\\s*/Page(?![a-zA-Z]).*");
+    }
+
+    private List<Integer> contentRefs(String pageDict) {
+        List<Integer> refs = new ArrayList<>();
+        int i = pageDict.indexOf("/Contents");
+        if (i < 0) return refs;
+        String rest = pageDict.substring(i + "/Contents".length()).trim();
+        if (rest.startsWith("[")) {
+            Matcher m = REF.matcher(rest.substring(0, Math.max(rest.indexOf(']'), 0)));
+            while (m.find()) refs.add(Integer.parseInt(m.group(1)));
+        } else {
+            Matcher m = REF.matcher(rest);
+            if (m.lookingAt()) {
+                int ref = Integer.parseInt(m.group(1));
+                PdfObject target = objects.get(ref);
+                // /Contents may point at an array object
+                if (target != null && target.stream == null && target.dict.trim().startsWith("[")) {
+                    Matcher am = REF.matcher(target.dict);
+                    while (am.find()) refs.add(Integer.parseInt(am.group(1)));
+                } else {
+                    refs.add(ref);
+                }
+            }
+        }
+        return refs;
+    }
+
+    private Map<String, CMap> fonts(String resources) {
+        Map<String, CMap> fonts = new HashMap<>();
+        if (resources == null) return fonts;
+        String fontDict = resolveDictEntry(resources, "/Font");
+        if (fontDict == null) return fonts;
+        Matcher m = FONT_ENTRY.matcher(fontDict);
+        while (m.find()) {
+            PdfObject font = objects.get(Integer.parseInt(m.group(2)));
+            if (font == null) continue;
+            Matcher tu = Pattern.compile("/ToUnicode\\s+(\\d+)\\s+\\d+\\s+R").matcher(font.dict);
+            CMap cmap = tu.find() ? cmap(Integer.parseInt(tu.group(1))) : null;
+            if (cmap == null && font.dict.contains("/Type0")) {
+                cmap = new CMap(); // two-byte codes without a mapping: unreadable, but parse widths right
+                cmap.codeBytes = 2;
+            } else if (cmap == null && font.dict.contains("/Type3")) {
+                // Bitmap glyphs from scanners/OCR-less conversions; the codes carry no text
+                cmap = new CMap();
+                cmap.unreadable = true;
+            }
+            fonts.put(m.group(1), cmap);
+        }
+        return fonts;
+    }
+
+    // Form XObjects by resource name
+    private Map<String, Integer> forms(String resources) {
+        Map<String, Integer> forms = new HashMap<>();
+        if (resources == null) return forms;
+        String xobjects = resolveDictEntry(resources, "/XObject");
+        if (xobjects == null) return forms;
+        Matcher m = FONT_ENTRY.matcher(xobjects);
+        while (m.find()) {
+            int ref = Integer.parseInt(m.group(2));
+            PdfObject o = objects.get(ref);
+            if (o != null && o.stream != null && o.dict.contains("/Form")) forms.put(m.group(1), ref);
+        }
+        return forms;
+    }
+
+    // Value of a dictionary entry that is either inline (<< ... >>) or an indirect reference
+    private String resolveDictEntry(String dict, String key) {
+        int i = dict.indexOf(key);
+        if (i < 0) return null;
+        String rest = dict.substring(i + key.length()).trim();
+        if (rest.startsWith("<<")) return balancedDict(rest);
+        Matcher m = REF.matcher(rest);
+        if (m.lookingAt()) {
+            PdfObject o = objects.get(Integer.parseInt(m.group(1)));
+            return o == null ? null : o.dict;
+        }
+        return null;
+    }
+
+    private static String balancedDict(String s) {
+        int depth = 0;
+        for (int i = 0; i + 1 < s.length(); i++) {
+            if (s.charAt(i) == '<' && s.charAt(i + 1) == '<') { depth++; i++; }
+            else if (s.charAt(i) == '>' && s.charAt(i + 1) == '>') { depth--; i++; if (depth == 0) return s.substring(0, i + 1); }
+        }
+        return s;
+    }
+
+    private CMap cmap(int objNum) {
+        if (cmaps.containsKey(objNum)) return cmaps.get(objNum);
+        PdfObject o = objects.get(objNum);
+        CMap cmap = null;
+        if (o != null && o.stream != null) cmap = parseCMap(new String(o.stream, StandardCharsets.ISO_8859_1));
+        cmaps.put(objNum, cmap);
+        return cmap;
+    }
+
+    private static final Pattern HEX = Pattern.compile("<([0-9A-Fa-f]*)>");
+
+    static CMap parseCMap(String s) {
+        CMap cmap = new CMap();
+        Matcher range = Pattern.compile("begincodespacerange\\s*<([0-9A-Fa-f]+)>").matcher(s);
+        if (range.find()) cmap.codeBytes = Math.max(1, range.group(1).length() / 2);
+        int pos = 0;
+        while ((pos = s.indexOf("beginbfchar", pos)) >= 0) {
+            int end = s.indexOf("endbfchar", pos);
+            if (end < 0) break;
+            Matcher m = HEX.matcher(s.substring(pos, end));
+            while (m.find()) {
+                String src = m.group(1);
+                if (!m.find()) break;
+                cmap.map.put(parseHex(src), utf16(m.group(1)));
+            }
+            pos = end;
+        }
+        pos = 0;
+        while ((pos = s.indexOf("beginbfrange", pos)) >= 0) {
+            int end = s.indexOf("endbfrange", pos);
+            if (end < 0) break;
+            String body = s.substring(pos + "beginbfrange".length(), end);
+            Matcher m = Pattern.compile("<([0-9A-Fa-f]+)>\\s*<([0-9A-Fa-f]+)>\\s*(<[0-9A-Fa-f]*>|\\[[^\\]]*\\])").matcher(body);
+            while (m.find()) {
+                int lo = parseHex(m.group(1));
+                int hi = parseHex(m.group(2));
+                String dst = m.group(3);
+                if (hi - lo > 65535) continue;
+                if (dst.startsWith("[")) {
+                    Matcher dm = HEX.matcher(dst);
+                    for (int code = lo; code <= hi && dm.find(); code++) cmap.map.put(code, utf16(dm.group(1)));
+                } else {
+                    String base = utf16(dst.substring(1, dst.length() - 1));
+                    if (base.isEmpty()) continue;
+                    char last = base.charAt(base.length() - 1);
+                    for (int code = lo; code <= hi; code++) {
+                        cmap.map.put(code, base.substring(0, base.length() - 1) + (char) (last + (code - lo)));
+                    }
+                }
+            }
+            pos = end;
+        }
+        return cmap;
+    }
+
+    private static int parseHex(String hex) {
+        return hex.isEmpty() ? 0 : (int) Long.parseLong(hex.length() > 8 ? hex.substring(hex.length() - 8) : hex, 16);
+    }
+
+    private static String utf16(String hex) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 3 < hex.length(); i += 4) sb.append((char) Integer.parseInt(hex.substring(i, i + 4), 16));
+        return sb.toString();
+    }
+
+    // ---------------- content streams ----------------
+
+    private static final int MAX_FORM_DEPTH = 8;
+
+    private void render(String s, String resources, StringBuilder out, int depth) throws IOException {
+        Map<String, CMap> fonts = fontsByResources.computeIfAbsent(resources, this::fonts);
+        Map<String, Integer> forms = null;
+        List<Object> operands = new ArrayList<>();
+        CMap font = null;
+        int i = 0;
+        int n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            if (isWhite(c)) { i++; continue; }
+            if (c == '%') { while (i < n && s.charAt(i) != '\n' && s.charAt(i) != '\r') i++; continue; }
+            if (c == '(') {
+                StringBuilder lit = new StringBuilder();
+                i = readLiteral(s, i, lit);
+                operands.add(lit.toString());
+            } else if (c == '<' && i + 1 < n && s.charAt(i + 1) != '<') {
+                int end = s.indexOf('>', i);
+                if (end < 0) break;
+                operands.add(hexBytes(s.substring(i + 1, end)));
+                i = end + 1;
+            } else if (c == '[') {
+                // Text arrays for TJ: strings plus kerning numbers
+                List<Object> array = new ArrayList<>();
+                i++;
+                while (i < n && s.charAt(i) != ']') {
+                    char a = s.charAt(i);
+                    if (isWhite(a)) { i++; continue; }
+                    if (a == '(') {
+                        StringBuilder lit = new StringBuilder();
+                        i = readLiteral(s, i, lit);
+                        array.add(lit.toString());
+                    } else if (a == '<') {
+                        int end = s.indexOf('>', i);
+                        if (end < 0) { i = n; break; }
+                        array.add(hexBytes(s.substring(i + 1, end)));
+                        i = end + 1;
+                    } else {
+                        int start = i;
+                        while (i < n && !isWhite(s.charAt(i)) && "[]()<>".indexOf(s.charAt(i)) < 0) i++;
+                        try {
+                            array.add(Double.parseDouble(s.substring(start, i)));
+                        } catch (NumberFormatException e) {
+                            if (i == start) i++;
+                        }
+                    }
+                }
+                i++;
+                operands.add(array);
+            } else if (c == '/' ) {
+                int start = ++i;
+                while (i < n && !isWhite(s.charAt(i)) && "/[]()<>{}%".indexOf(s.charAt(i)) < 0) i++;
+                operands.add(new StringBuilder("/").append(s, start, i).toString());
+            } else if (c == '<' || c == '>' || c == ']' || c == '{' || c == '}') {
+                i++; // dictionaries in marked content etc.
+            } else {
+                int start = i;
+                while (i < n && !isWhite(s.charAt(i)) && "/[]()<>{}%".indexOf(s.charAt(i)) < 0) i++;
+                String token = s.substring(start, i);
+                if (token.isEmpty()) { i++; continue; }
+                char t0 = token.charAt(0);
+                if (Character.isDigit(t0) || t0 == '-' || t0 == '+' || t0 == '.') {
+                    operands.add(token);
+                    continue;
+                }
+                if (++operators > MAX_OPERATORS) {
+                    throw new IOException("renders more than " + MAX_OPERATORS + " content operators");
+                }
+                checkTextLength(out);
+                switch (token) {
+                    case "Tf":
+                        for (Object o : operands) {
+                            if (o instanceof String && ((String) o).startsWith("/")) font = fonts.get(((String) o).substring(1));
+                        }
+                        break;
+                    case "Tj": case "'": case "\"":
+                        if (token.length() == 1) out.append('\n');
+                        if (!operands.isEmpty()) appendShown(operands.get(operands.size() - 1), font, out);
+                        break;
+                    case "TJ":
+                        if (!operands.isEmpty() && operands.get(operands.size() - 1) instanceof List) {
+                            for (Object part : (List<?>) operands.get(operands.size() - 1)) {
+                                // Large negative adjustments are word gaps
+                                if (part instanceof Double) { if ((Double) part < -200) out.append(' '); }
+                                else appendShown(part, font, out);
+                            }
+                        }
+                        break;
+                    case "Td": case "TD": case "Tm": case "T*":
+                        out.append(' ');
+                        break;
+                    case "ET":
+                        out.append('\n');
+                        break;
+                    case "Do":
+                        // Text inside a Form XObject (stamps, flattened form fields, imported pages)
+                        if (depth >= MAX_FORM_DEPTH || operands.isEmpty()) break;
+                        if (forms == null) forms = formsByResources.computeIfAbsent(resources, this::forms);
+                        Object name = operands.get(operands.size() - 1);
+                        Integer ref = name instanceof String ? forms.get(((String) name).substring(1)) : null;
+                        PdfObject form = ref != null ? objects.get(ref) : null;
+                        // A form that (directly or not) invokes itself is drawn once, not until the depth limit
+                        if (form == null || form.stream == null || !formStack.add(ref)) break;
+                        try {
+                            String own = formResources.computeIfAbsent(ref, k -> resolveDictEntry(form.dict, "/Resources"));
+                            String content = formContent.computeIfAbsent(ref, k -> new String(form.stream, StandardCharsets.ISO_8859_1));
+                            render(content, own != null ? own : resources, out, depth + 1);
+                        } finally {
+                            formStack.remove(ref);
+                        }
+                        break;
+                    case "BI":
+                        // Skip inline image data
+                        int ei = s.indexOf("EI", i);
+                        i = ei < 0 ? n : ei + 2;
+                        break;
+                    default:
+                        break;
+                }
+                operands.clear();
+            }
+        }
+    }
+
+    private static void checkTextLength(StringBuilder out) throws IOException {
+        if (out.length() > MAX_TEXT_CHARS) throw new IOException("yields more than " + MAX_TEXT_CHARS + " characters of text");
+    }
+
+    private static void appendShown(Object operand, CMap font, StringBuilder out) {
+        if (!(operand instanceof String) || ((String) operand).startsWith("/")) return;
+        String raw = (String) operand; // bytes as ISO-8859-1 chars
+        if (font != null && font.unreadable) return;
+        if (font == null) {
+            out.append(raw);
+            return;
+        }
+        int step = font.codeBytes;
+        for (int i = 0; i + step <= raw.length(); i += step) {
+            int code = 0;
+            for (int k = 0; k < step; k++) code = (code << 8) | (raw.charAt(i + k) & 0xFF);
+            String mapped = font.map.get(code);
+            if (mapped != null) out.append(mapped);
+            else if (step == 1) out.append((char) code);
+        }
+    }
+
+    private static int readLiteral(String s, int i, StringBuilder out) {
+        int depth = 0;
+        int n = s.length();
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < n) {
+                char e = s.charAt(++i);
+                switch (e) {
+                    case 'n': out.append('\n'); break;
+                    case 'r': out.append('\r'); break;
+                    case 't': out.append('\t'); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case '\r': case '\n': break;
+                    default:
+                        if (e >= '0' && e <= '7') {
+                            int v = e - '0';
+                            for (int k = 0; k < 2 && i + 1 < n && s.charAt(i + 1) >= '0' && s.charAt(i + 1) <= '7'; k++) {
+                                v = v * 8 + (s.charAt(++i) - '0');
+                            }
+                            out.append((char) (v & 0xFF));
+                        } else {
+                            out.append(e);
+                        }
+                }
+            } else if (c == '(') {
+                if (depth++ > 0) out.append(c);
+            } else if (c == ')') {
+                if (--depth == 0) return i + 1;
+                out.append(c);
+            } else {
+                out.append(c);
+            }
+        }
+        return n;
+    }
+
+    private static String hexBytes(String hex) {
+        StringBuilder clean = new StringBuilder();
+        for (int i = 0; i < hex.length(); i++) if (Character.digit(hex.charAt(i), 16) >= 0) clean.append(hex.charAt(i));
+        if (clean.length() % 2 == 1) clean.append('0');
+        StringBuilder sb = new StringBuilder(clean.length() / 2);
+        for (int i = 0; i < clean.length(); i += 2) sb.append((char) Integer.parseInt(clean.substring(i, i + 2), 16));
+        return sb.toString();
+    }
+
+    private static boolean isWhite(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+    }
+
+    private static int indexOfKeyword(String s, String keyword, int from) {
+        int i = from;
+        while ((i = s.indexOf(keyword, i)) >= 0) {
+            // "stream" but not "endstream"
+            if (i == 0 || s.charAt(i - 1) != 'd') return i;
+            i += keyword.length();
+        }
+        return -1;
+    }
+
+    private static int intEntry(String dict, String key) {
+        Matcher m = Pattern.compile(Pattern.quote(key) + "\\s+(\\d+)").matcher(dict);
+        return m.find() ? Integer.parseInt(m.group(1)) : -1;
+    }
+}
@@ -1,15 +1,82 @@
-// Manages saving and retrieving question paper data from files or storage
+// Manages saving and retrieving question paper data in MySQL (CATALOG_STORE=mysql, the default)
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class QuestionPaperDAO {
+public class QuestionPaperDAO implements QuestionPaperRepository {
 
-    public void addPaper(QuestionPaper paper) {
+    // JDBC time and failures per method, exported at /metrics; resolved once so calls never build label strings
+    private enum Op {
+        ADD_PAPER("addPaper"), ADD_PAPERS("addPapers"), SEARCH("searchPaper"), FIND_BY_ID("findById"),
+        ALL_PAPERS("queryAllPapers"), FIND_PAGE("findPage"), STREAM_ALL("streamAllPapers"), DELETE("deletePaper");
+
+        final Metrics.Histogram time;
+        final Metrics.Counter errors;
+
+        Op(String method) {
+            time = Metrics.histogram("qpms_dao_duration_seconds", "Time spent in QuestionPaperDAO calls, including borrowing a connection", "method", method);
+            errors = Metrics.counter("qpms_dao_errors_total", "QuestionPaperDAO calls that failed with an SQLException", "method", method);
+        }
+    }
+
+    // Faceted-search index when CachingQuestionPaperDAO is off: rebuilt after a write through this
+    // DAO, or after CATALOG_CACHE_TTL_MS (if set) for writes made by other processes
+    private static final class FacetSnapshot {
+        final PaperFacetIndex index;
+        final long version;
+        final long builtAt;
+
+        FacetSnapshot(PaperFacetIndex index, long version, long builtAt) {
+            this.index = index;
+            this.version = version;
+            this.builtAt = builtAt;
+        }
+    }
+
+    private final long facetTtlMs = AppConfig.getLong("CATALOG_CACHE_TTL_MS", 0);
+    private final AtomicLong writes = new AtomicLong();
+    private volatile FacetSnapshot facets;
+
+    // Borrows a pooled connection; closing it (try-with-resources) hands it back to the pool
+    private static Connection borrowConnection() throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        if (conn == null) throw new SQLException("No database connection available");
+        return conn;
+    }
+
+    // Same for reads: a replica when one is configured and the caller has no recent write of its own
+    private static Connection borrowReadConnection() throws SQLException {
+        Connection conn = DatabaseConnection.getReadConnection();
+        if (conn == null) throw new SQLException("No database connection available");
+        return conn;
+    }
+
+    // Builds a QuestionPaper from the current ResultSet row (package-private for bench/CatalogBench)
+    static QuestionPaper mapRow(ResultSet rs) throws SQLException {
+        return new QuestionPaper(
+                rs.getInt("id"),
+                rs.getString("subject"),
+                rs.getInt("year"),
+                rs.getInt("semester"),
+                rs.getString("file_path"),
+                rs.getString("status")
+        );
+    }
+
+    /**
+     * Inserts a paper
+     * @param paper paper to insert (its id is ignored)
+     * @return generated id, or -1 if the insert failed
+     */
+    @Override
+    public int addPaper(QuestionPaper paper) {
+        long start = System.nanoTime();
         String query = "INSERT INTO question_paper (subject, year, semester, file_path, status) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(query)) {
+        try (Connection conn = borrowConnection();
+             PreparedStatement ps = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, paper.getSubject());
             ps.setInt(2, paper.getYear());
             ps.setInt(3, paper.getSemester());
@@ -17,72 +84,245 @@ public class QuestionPaperDAO {
             ps.setString(5, paper.getStatus());
             ps.executeUpdate();
             System.out.println("Paper added successfully!");
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                return keys.next() ? keys.getInt(1) : -1;
+            }
         } catch (SQLException e) {
+            Op.ADD_PAPER.errors.inc();
             e.printStackTrace();
+        } finally {
+            DatabaseConnection.recordWrite();
+            writes.incrementAndGet();
+            Op.ADD_PAPER.time.recordSince(start);
         }
+        return -1;
     }
 
+    /**
+     * Inserts papers with one JDBC batch in a single transaction: either every row is stored or none
+     * @param papers papers to insert (ids are ignored)
+     * @return generated ids, in the same order as papers
+     * @throws SQLException if any row fails; the transaction is rolled back
+     */
+    @Override
+    public int[] addPapers(List<QuestionPaper> papers) throws SQLException {
+        int[] ids = new int[papers.size()];
+        if (papers.isEmpty()) return ids;
+        long start = System.nanoTime();
+        String query = "INSERT INTO question_paper (subject, year, semester, file_path, status) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = borrowConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                for (QuestionPaper paper : papers) {
+                    ps.setString(1, paper.getSubject());
+                    ps.setInt(2, paper.getYear());
+                    ps.setInt(3, paper.getSemester());
+                    ps.setString(4, paper.getFilePath());
+                    ps.setString(5, paper.getStatus());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < ids.length && keys.next(); i++) ids[i] = keys.getInt(1);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            Op.ADD_PAPERS.errors.inc();
+            throw e;
+        } finally {
+            DatabaseConnection.recordWrite();
+            writes.incrementAndGet();
+            Op.ADD_PAPERS.time.recordSince(start);
+        }
+        return ids;
+    }
+
+    @Override
     public List<QuestionPaper> searchPaper(String subject, int year, int semester) {
+        try {
+            return querySearch(subject, year, semester);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    // Same as searchPaper but reports failures, so callers (e.g. the cache) can tell "no rows" from "no database"
+    protected List<QuestionPaper> querySearch(String subject, int year, int semester) throws SQLException {
+        long start = System.nanoTime();
         List<QuestionPaper> list = new ArrayList<>();
         String query = "SELECT * FROM question_paper WHERE subject=? AND year=? AND semester=?";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = borrowReadConnection();
              PreparedStatement ps = conn.prepareStatement(query)) {
             ps.setString(1, subject);
             ps.setInt(2, year);
             ps.setInt(3, semester);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                list.add(new QuestionPaper(
-                        rs.getInt("id"),
-                        rs.getString("subject"),
-                        rs.getInt("year"),
-                        rs.getInt("semester"),
-                        rs.getString("file_path"),
-                        rs.getString("status")
-                ));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Op.SEARCH.errors.inc();
+            throw e;
+        } finally {
+            Op.SEARCH.time.recordSince(start);
         }
         return list;
     }
 
+    /**
+     * Looks up a single paper by primary key
+     * @param id paper id
+     * @return the paper, or null if no row has that id
+     */
+    @Override
+    public QuestionPaper findById(int id) {
+        long start = System.nanoTime();
+        String query = "SELECT * FROM question_paper WHERE id=?";
+        try (Connection conn = borrowReadConnection();
+             PreparedStatement ps = conn.prepareStatement(query)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return mapRow(rs);
+            }
+        } catch (SQLException e) {
+            Op.FIND_BY_ID.errors.inc();
+            e.printStackTrace();
+        } finally {
+            Op.FIND_BY_ID.time.recordSince(start);
+        }
+        return null;
+    }
+
+    @Override
     public List<QuestionPaper> viewAllPapers() {
+        try {
+            return queryAllPapers();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Bitmap index for faceted search, built from a full table read and reused until the next
+     * write (see FacetSnapshot); CachingQuestionPaperDAO keeps one per catalog snapshot instead.
+     */
+    @Override
+    public PaperFacetIndex facetIndex() {
+        FacetSnapshot f = facets;
+        if (isCurrent(f)) return f.index;
+        synchronized (this) {
+            f = facets;
+            if (isCurrent(f)) return f.index;
+            // Read first: a write landing during the query leaves the snapshot already stale
+            long version = writes.get();
+            long now = System.currentTimeMillis();
+            try {
+                PaperFacetIndex index = new PaperFacetIndex(queryAllPapers());
+                facets = new FacetSnapshot(index, version, now);
+                return index;
+            } catch (SQLException e) {
+                // Not kept, so the next search tries the database again
+                e.printStackTrace();
+                return new PaperFacetIndex(new ArrayList<>());
+            }
+        }
+    }
+
+    private boolean isCurrent(FacetSnapshot f) {
+        return f != null && f.version == writes.get()
+                && (facetTtlMs <= 0 || System.currentTimeMillis() - f.builtAt <= facetTtlMs);
+    }
+
+    @Override
+    public List<QuestionPaper> queryAllPapers() throws SQLException {
+        long start = System.nanoTime();
         List<QuestionPaper> list = new ArrayList<>();
-        String query = "SELECT * FROM question_paper";
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
+        String query = "SELECT * FROM question_paper ORDER BY id";
+        try (Connection conn = borrowReadConnection();
+             PreparedStatement ps = conn.prepareStatement(query);
+             ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
-                list.add(new QuestionPaper(
-                        rs.getInt("id"),
-                        rs.getString("subject"),
-                        rs.getInt("year"),
-                        rs.getInt("semester"),
-                        rs.getString("file_path"),
-                        rs.getString("status")
-                ));
+                list.add(mapRow(rs));
             }
         } catch (SQLException e) {
+            Op.ALL_PAPERS.errors.inc();
+            throw e;
+        } finally {
+            Op.ALL_PAPERS.time.recordSince(start);
+        }
+        return list;
+    }
+
+    /**
+     * Keyset pagination: papers with id greater than afterId, in id order
+     * @param afterId last id the client has seen (0 for the first page)
+     * @param limit maximum number of rows
+     * @return up to limit papers
+     */
+    @Override
+    public List<QuestionPaper> findPage(int afterId, int limit) {
+        long start = System.nanoTime();
+        List<QuestionPaper> list = new ArrayList<>();
+        String query = "SELECT * FROM question_paper WHERE id > ? ORDER BY id LIMIT ?";
+        try (Connection conn = borrowReadConnection();
+             PreparedStatement ps = conn.prepareStatement(query)) {
+            ps.setInt(1, afterId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+            }
+        } catch (SQLException e) {
+            Op.FIND_PAGE.errors.inc();
             e.printStackTrace();
+        } finally {
+            Op.FIND_PAGE.time.recordSince(start);
         }
         return list;
     }
 
-    public void deletePaper(int id) throws RuntimeException {
-        String selectQuery = "SELECT file_path FROM question_paper WHERE id=?";
-        String deleteQuery = "DELETE FROM question_paper WHERE id=?";
-        String filePath = null;
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            // First, get the file path
-            try (PreparedStatement ps = conn.prepareStatement(selectQuery)) {
-                ps.setInt(1, id);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    filePath = rs.getString("file_path");
+    /**
+     * Streams every paper in id order without materialising the table.
+     * Rows are fetched one at a time from MySQL, so memory stays constant; the connection is
+     * held until the consumer has seen the last row.
+     * @param consumer called once per row
+     */
+    @Override
+    public void streamAllPapers(PaperConsumer consumer) throws SQLException, IOException {
+        long start = System.nanoTime();
+        String query = "SELECT * FROM question_paper ORDER BY id";
+        try (Connection conn = borrowReadConnection();
+             PreparedStatement ps = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J streams rows instead of buffering the whole result when fetch size is MIN_VALUE
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(mapRow(rs));
                 }
             }
-            // Then delete the record
+        } catch (SQLException e) {
+            Op.STREAM_ALL.errors.inc();
+            throw e;
+        } finally {
+            Op.STREAM_ALL.time.recordSince(start);
+        }
+    }
+
+    @Override
+    public void deletePaper(int id) throws RuntimeException {
+        long start = System.nanoTime();
+        String deleteQuery = "DELETE FROM question_paper WHERE id=?";
+        try (Connection conn = borrowConnection()) {
             try (PreparedStatement ps = conn.prepareStatement(deleteQuery)) {
                 ps.setInt(1, id);
                 int rows = ps.executeUpdate();
@@ -90,22 +330,16 @@ public class QuestionPaperDAO {
                     throw new RuntimeException("No record found with ID " + id);
                 }
                 System.out.println("🗑️ Record deleted successfully!");
-                // Delete the associated PDF file if it exists
-                if (filePath != null) {
-                    java.io.File file = new java.io.File("PDF", filePath);
-                    if (file.exists()) {
-                        boolean deleted = file.delete();
-                        if (deleted) {
-                            System.out.println("Associated PDF file deleted: " + filePath);
-                        } else {
-                            System.out.println("Failed to delete PDF file: " + filePath);
-                        }
-                    }
-                }
+                // The PDF itself is released by QuestionPaperService once no other row refers to it
             }
         } catch (SQLException e) {
+            Op.DELETE.errors.inc();
             System.err.println("Database error during delete: " + e.getMessage());
             throw new RuntimeException("Failed to delete paper", e);
+        } finally {
+            DatabaseConnection.recordWrite();
+            writes.incrementAndGet();
+            Op.DELETE.time.recordSince(start);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+// Storage for the question_paper catalog
+// QuestionPaperDAO (MySQL, optionally behind CachingQuestionPaperDAO) and EmbeddedPaperStore
+// (an in-process log file) implement it; QuestionPaperService picks one from CATALOG_STORE.
+// SQLException means "the store could not be read or written" for both, so callers can keep
+// answering 503 the same way whichever store is configured.
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+public interface QuestionPaperRepository {
+
+    /** Receives papers one at a time while the catalog is being read. */
+    interface PaperConsumer {
+        void accept(QuestionPaper paper) throws IOException;
+    }
+
+    /**
+     * Inserts a paper
+     * @param paper paper to insert (its id is ignored)
+     * @return generated id, or -1 if the insert failed
+     */
+    int addPaper(QuestionPaper paper);
+
+    /**
+     * Inserts papers atomically: either every row is stored or none
+     * @param papers papers to insert (ids are ignored)
+     * @return generated ids, in the same order as papers
+     */
+    int[] addPapers(List<QuestionPaper> papers) throws SQLException;
+
+    /** Papers matching all three values; the subject is compared case-insensitively. Empty on failure. */
+    List<QuestionPaper> searchPaper(String subject, int year, int semester);
+
+    /** The paper with this id, or null if there is none (or the store is unavailable). */
+    QuestionPaper findById(int id);
+
+    /** Every paper in id order; empty on failure. */
+    List<QuestionPaper> viewAllPapers();
+
+    /** Same as viewAllPapers but reports failures instead of returning an empty list. */
+    List<QuestionPaper> queryAllPapers() throws SQLException;
+
+    /**
+     * Keyset pagination: papers with id greater than afterId, in id order
+     * @param afterId last id the client has seen (0 for the first page)
+     * @param limit maximum number of rows
+     */
+    List<QuestionPaper> findPage(int afterId, int limit);
+
+    /** Hands every paper to consumer in id order without materialising the catalog where the store allows it. */
+    void streamAllPapers(PaperConsumer consumer) throws SQLException, IOException;
+
+    /** Bitmap index over the current catalog for faceted search. */
+    PaperFacetIndex facetIndex();
+
+    /**
+     * Deletes a paper row (the PDF is released by QuestionPaperService)
+     * @throws RuntimeException if there is no such row or the store failed
+     */
+    void deletePaper(int id);
+}
@@ -1,17 +1,73 @@
 // Handles user actions like adding, viewing, deleting, and opening question papers
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.File;
 import java.awt.Desktop;
 
 public class QuestionPaperService {
-    private final QuestionPaperDAO dao = new QuestionPaperDAO();
+    private final QuestionPaperRepository dao = openRepository();
+    // Bumped after every add/delete made through this service; keys WebServer's response cache
+    private final AtomicLong catalogVersion = new AtomicLong();
+    // Built from the catalog on first use, then kept current by addPaper/deletePaper
+    private volatile SubjectSuggester suggester;
+    // Reference counts for stored PDFs; created on first use
+    private volatile BlobStore blobs;
     private final String baseFolder = "PDF";
     private final Scanner sc = new Scanner(System.in);
 
+    /** Catalog cache counters (hits, misses, ...); empty when the cache is disabled. */
+    public Map<String, Long> catalogStats() {
+        return dao instanceof CachingQuestionPaperDAO ? ((CachingQuestionPaperDAO) dao).getStats() : Collections.emptyMap();
+    }
+
+    // CATALOG_STORE=mysql (default) or embedded; the catalog cache only applies to MySQL
+    private static QuestionPaperRepository openRepository() {
+        String store = AppConfig.get("CATALOG_STORE", "mysql").trim().toLowerCase(Locale.ROOT);
+        if ("embedded".equals(store)) return EmbeddedPaperStore.getInstance();
+        if (!"mysql".equals(store)) {
+            System.err.println("[QuestionPaperService] Unknown CATALOG_STORE '" + store + "', using mysql");
+        }
+        return AppConfig.getBoolean("CATALOG_CACHE_ENABLED", true)
+                ? new CachingQuestionPaperDAO()
+                : new QuestionPaperDAO();
+    }
+
+    /** Changes whenever papers are added or deleted through this service. */
+    public long catalogVersion() {
+        return catalogVersion.get();
+    }
+
     // Method for web interface to add paper
     public void addPaper(QuestionPaper paper) {
-        dao.addPaper(paper);
+        try {
+            if (dao.addPaper(paper) > 0) {
+                subjectAdded(paper.getSubject());
+                blobStore().added(paper.getFilePath());
+            }
+        } finally {
+            catalogVersion.incrementAndGet();
+        }
+    }
+
+    // Method for web interface to insert many papers in one transaction (see QuestionPaperDAO.addPapers)
+    public int[] addPapers(List<QuestionPaper> papers) throws java.sql.SQLException {
+        int[] ids;
+        try {
+            ids = dao.addPapers(papers);
+        } finally {
+            // Also on failure: the store may have kept part of it (e.g. a dropped connection after commit)
+            catalogVersion.incrementAndGet();
+        }
+        BlobStore b = blobStore();
+        for (QuestionPaper p : papers) b.added(p.getFilePath());
+        SubjectSuggester s = suggester;
+        if (s != null) {
+            List<String> subjects = new ArrayList<>(papers.size());
+            for (QuestionPaper p : papers) subjects.add(p.getSubject());
+            s.addAll(subjects);
+        }
+        return ids;
     }
 
     // Method for web interface to get all papers
@@ -19,18 +75,40 @@ public class QuestionPaperService {
         return dao.viewAllPapers();
     }
 
+    // Current catalog straight from the database; unlike getAllPapers() a failure is reported, not hidden
+    public List<QuestionPaper> queryAllPapers() throws java.sql.SQLException {
+        return dao.queryAllPapers();
+    }
+
+    // Method for web interface to page through papers (keyset pagination on id)
+    public List<QuestionPaper> getPapersPage(int afterId, int limit) {
+        return dao.findPage(afterId, limit);
+    }
+
+    // Method for web interface to stream all papers without building a list
+    public void streamAllPapers(QuestionPaperRepository.PaperConsumer consumer) throws java.sql.SQLException, java.io.IOException {
+        dao.streamAllPapers(consumer);
+    }
+
     // Method for web interface to search papers
     public List<QuestionPaper> search(String subject, int year, int semester) {
         return dao.searchPaper(subject, year, semester);
     }
 
+    // Method for web interface to filter by any combination of fields, with facet counts
+    public PaperFacetIndex.Result facetedSearch(PaperFacetIndex.Query query) {
+        return dao.facetIndex().search(query);
+    }
+
+    // Method for web interface to suggest subjects while the user types
+    public List<SubjectSuggester.Suggestion> suggestSubjects(String prefix, int limit) {
+        SubjectSuggester s = suggester();
+        return s == null ? Collections.emptyList() : s.suggest(prefix, limit);
+    }
+
     // Find a paper by its ID (returns null if not found)
     public QuestionPaper getPaperById(int id) {
-        List<QuestionPaper> all = dao.viewAllPapers();
-        for (QuestionPaper p : all) {
-            if (p.getId() == id) return p;
-        }
-        return null;
+        return dao.findById(id);
     }
 
     public void addPaper() {
@@ -40,13 +118,29 @@ public class QuestionPaperService {
         int year = sc.nextInt();
         System.out.print("Enter Semester: ");
         int sem = sc.nextInt();
-        System.out.print("Enter File Name (e.g. dbms2025.pdf): "); //Automate this part
+        System.out.print("Enter File Name (e.g. dbms2025.pdf): "); // or use "Import PDFs from folder" (PdfAutoImporter)
         String file = sc.next();
         System.out.print("Enter Status (AVAILABLE/NOT AVAILABLE): ");  //link this part when saved automatically updates status
         String status = sc.next();
 
         QuestionPaper paper = new QuestionPaper(subject, year, sem, file, status);
-        dao.addPaper(paper);
+        addPaper(paper);
+    }
+
+    // Registers new PDFs in the PDF folder from their file names (see PdfAutoImporter)
+    public void importPdfFolder() {
+        System.out.print("Rescan every file, ignoring the last import checkpoint? (y/n): ");
+        boolean full = sc.next().trim().toLowerCase().startsWith("y");
+        try {
+            PdfAutoImporter.Report report = PdfAutoImporter.fromConfig(this).run(full);
+            System.out.println("Imported " + report.getImported() + " of " + report.getChanged() + " new/changed PDFs ("
+                    + report.getAlreadyRegistered() + " already registered, " + report.getUnparsedCount() + " unrecognised names, "
+                    + report.getFailed() + " failed).");
+            for (String name : report.getUnparsed()) System.out.println("  Unrecognised: " + name);
+            for (String error : report.getErrors()) System.out.println("  Error: " + error);
+        } catch (Exception e) {
+            System.out.println("Import failed: " + e.getMessage());
+        }
     }
 
     public void searchPaper() {
@@ -63,7 +157,7 @@ public class QuestionPaperService {
         } else {
             for (QuestionPaper q : papers) {
                 System.out.println(q);
-                File f = new File(baseFolder, q.getFilePath());
+                File f = new File(baseFolder, PdfRepository.storedName(q.getFilePath()));
                 if (f.exists()) {
                     try {
                         Desktop.getDesktop().open(f);
@@ -84,7 +178,7 @@ public class QuestionPaperService {
     public void deletePaper() {
         System.out.print("Enter ID of paper to delete: ");
         int id = sc.nextInt();
-        dao.deletePaper(id);
+        deletePaperById(id);
     }
 
     /**
@@ -93,7 +187,58 @@ public class QuestionPaperService {
      * @throws RuntimeException if delete fails
      */
     public void deletePaperById(int id) throws RuntimeException {
-        dao.deletePaper(id);
+        QuestionPaper existing = dao.findById(id);
+        try {
+            dao.deletePaper(id);
+        } finally {
+            catalogVersion.incrementAndGet();
+        }
+        if (existing != null) {
+            SubjectSuggester s = suggester;
+            if (s != null) s.remove(existing.getSubject());
+            // Shared files stay until no row uses them (blobs are reclaimed by BlobStore GC)
+            blobStore().released(existing.getFilePath());
+        }
+    }
+
+    // Content-addressed storage for uploads, and reference counts for every stored PDF
+    public BlobStore blobStore() {
+        BlobStore b = blobs;
+        if (b != null) return b;
+        synchronized (this) {
+            if (blobs == null) {
+                blobs = new BlobStore(PdfRepository.getInstance(), this::queryAllPapers,
+                        AppConfig.getLong("BLOB_GC_GRACE_MS", 10 * 60 * 1000L));
+            }
+            return blobs;
+        }
+    }
+
+    private void subjectAdded(String subject) {
+        SubjectSuggester s = suggester;
+        // Not built yet: the initial load will see the new row
+        if (s != null) s.add(subject);
+    }
+
+    // Null while the database is unreachable, so a later call retries the load
+    private SubjectSuggester suggester() {
+        SubjectSuggester s = suggester;
+        if (s != null) return s;
+        synchronized (this) {
+            if (suggester == null) {
+                SubjectSuggester built = new SubjectSuggester(AppConfig.getInt("SUGGEST_TOP_K", 10));
+                try {
+                    List<String> subjects = new ArrayList<>();
+                    for (QuestionPaper p : dao.queryAllPapers()) subjects.add(p.getSubject());
+                    built.addAll(subjects);
+                } catch (java.sql.SQLException e) {
+                    System.err.println("[QuestionPaperService] Could not load subjects: " + e.getMessage());
+                    return null;
+                }
+                suggester = built;
+            }
+            return suggester;
+        }
     }
 
     public void sendPaperByEmail() {
@@ -110,14 +255,7 @@ public class QuestionPaperService {
         int id = sc.nextInt();
         
         // Find the paper by ID
-        List<QuestionPaper> allPapers = dao.viewAllPapers();
-        QuestionPaper selectedPaper = null;
-        for (QuestionPaper paper : allPapers) {
-            if (paper.getId() == id) {
-                selectedPaper = paper;
-                break;
-            }
-        }
+        QuestionPaper selectedPaper = getPaperById(id);
         
         if (selectedPaper == null) {
             System.out.println("❌ Paper with ID " + id + " not found.");
@@ -0,0 +1,273 @@
+// Finished JSON responses for the hot catalog reads (GET /papers, pages, /papers/search)
+// Entries hold the UTF-8 bytes exactly as sent, a gzip variant (made on first use) and a strong
+// ETag, keyed by route + the query values that shape the response. Each entry remembers the
+// catalog version it was built from; QuestionPaperService bumps the version on every add/delete,
+// which makes all older entries misses at once. A hit is a header write plus one array copy, and a
+// client revalidating with If-None-Match gets 304 with no body.
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+import java.util.zip.GZIPOutputStream;
+
+public final class ResponseCache {
+
+    // Below this gzip saves less than the header costs
+    private static final int MIN_GZIP_BYTES = 1024;
+
+    /** One cached response body. */
+    public static final class Entry {
+        final String key;
+        final byte[] body;
+        final String etag;
+        final long version;
+        final long createdAt;
+        private byte[] gzipBody;
+        private boolean gzipDone;
+        // What this entry adds to the cache's byte total; changed only under the cache's lock
+        private int accounted;
+
+        Entry(String key, byte[] body, long version) {
+            this.key = key;
+            this.body = body;
+            this.etag = "\"" + sha256Hex(body) + "\"";
+            this.version = version;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Makes the gzip variant the first time it is asked for (kept null when it does not pay off)
+         * @return bytes it added, to the one thread that made it; 0 to every other caller
+         */
+        synchronized int compress() throws IOException {
+            if (gzipDone) return 0;
+            gzipDone = true;
+            if (body.length < MIN_GZIP_BYTES) return 0;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(body);
+            }
+            if (out.size() >= body.length) return 0;
+            gzipBody = out.toByteArray();
+            return gzipBody.length;
+        }
+
+        synchronized byte[] gzipBody() {
+            return gzipBody;
+        }
+    }
+
+    private final LongSupplier version;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long ttlMs;
+    private final String cacheControl;
+    // Access-ordered for LRU eviction by total size
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long newestVersion = Long.MIN_VALUE;
+
+    private final Metrics.Counter hits = Metrics.counter("qpms_response_cache_hits_total", "API responses served from the response cache");
+    private final Metrics.Counter misses = Metrics.counter("qpms_response_cache_misses_total", "API responses that had to be built");
+    private final Metrics.Counter notModified = Metrics.counter("qpms_response_cache_not_modified_total", "Cached API responses answered with 304");
+
+    /**
+     * @param version current catalog version; entries built from an older one are not served
+     * @param maxBytes total size of cached bodies (identity + gzip); least recently used go first
+     * @param ttlMs also drop entries older than this (0 = only on a version change); for writes
+     *              this process does not see, e.g. another process using the same database
+     * @param cacheControl Cache-Control sent with cached responses (null = none)
+     */
+    public ResponseCache(LongSupplier version, long maxBytes, long ttlMs, String cacheControl) {
+        this.version = version;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+        this.ttlMs = ttlMs;
+        this.cacheControl = cacheControl;
+        Metrics.gauge("qpms_response_cache_bytes", "Bytes held by the response cache", this::size);
+    }
+
+    /** Catalog version to pass to {@link #put}; read it before building the response. */
+    public long version() {
+        return version.getAsLong();
+    }
+
+    /** Largest body worth caching; bigger responses should be streamed instead. */
+    public long maxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /** The current entry for key, or null (absent, built from an older catalog, or expired). */
+    public Entry get(String key) {
+        if (maxBytes <= 0) return null;
+        long current = version.getAsLong();
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null && (e.version != current || (ttlMs > 0 && System.currentTimeMillis() - e.createdAt > ttlMs))) {
+                remove(key, e);
+                e = null;
+            }
+            if (e == null) {
+                misses.inc();
+                return null;
+            }
+            hits.inc();
+            return e;
+        }
+    }
+
+    /**
+     * Stores a response built from the given catalog version
+     * @param key null to only make an entry for {@link #send} (ETag and gzip) without keeping it
+     * @return the entry to send (also when it was too large, or too late, to keep)
+     */
+    public Entry put(String key, long builtFrom, byte[] body) {
+        Entry e = new Entry(key, body, builtFrom);
+        if (key == null || maxBytes <= 0 || body.length > maxEntryBytes) return e;
+        synchronized (this) {
+            if (builtFrom > newestVersion) {
+                // Everything cached so far is from an older catalog
+                entries.clear();
+                bytes = 0;
+                newestVersion = builtFrom;
+            }
+            // A write landed while this was being built; serve it once but do not keep it
+            if (builtFrom < newestVersion || builtFrom != version.getAsLong()) return e;
+            Entry old = entries.put(key, e);
+            if (old != null) bytes -= old.accounted;
+            e.accounted = body.length;
+            bytes += e.accounted;
+            evict();
+        }
+        return e;
+    }
+
+    /** Sends an entry: 304 when the client's ETag matches, otherwise gzip or identity bytes. */
+    public void send(HttpExchange exchange, Entry e) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (cacheControl != null) exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+
+        byte[] gzipBody = StaticAssetCache.acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"))
+                ? gzipBodyOf(e) : null;
+        // Different bytes need a different strong ETag
+        String etag = gzipBody != null ? e.etag.substring(0, e.etag.length() - 1) + "-gz\"" : e.etag;
+        exchange.getResponseHeaders().set("ETag", etag);
+        // No Last-Modified is sent, so If-Modified-Since alone never matches
+        if (FileSender.notModified(exchange, etag, Long.MAX_VALUE)) {
+            notModified.inc();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = gzipBody != null ? gzipBody : e.body;
+        if (gzipBody != null) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * Wraps a response stream so the bytes written through it are also collected, up to
+     * {@link #maxEntryBytes()}; for responses that are streamed on a miss (GET /papers).
+     */
+    public Capture capture(OutputStream out) {
+        return new Capture(out, maxBytes <= 0 ? -1 : maxEntryBytes);
+    }
+
+    /** Copy of a streamed response; gives up (and frees its buffer) once the response gets too large. */
+    public static final class Capture extends OutputStream {
+        private final OutputStream out;
+        private final long limit;
+        private ByteArrayOutputStream copy;
+
+        Capture(OutputStream out, long limit) {
+            this.out = out;
+            this.limit = limit;
+            this.copy = limit > 0 ? new ByteArrayOutputStream(8192) : null;
+        }
+
+        /** Everything written, or null if it went over the limit. */
+        public byte[] bytes() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                if (copy.size() + 1 > limit) copy = null;
+                else copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                if (copy.size() + (long) len > limit) copy = null;
+                else copy.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private synchronized long size() {
+        return bytes;
+    }
+
+    // gzip variant; its size is added to the total once, by the thread that compressed it
+    private byte[] gzipBodyOf(Entry e) throws IOException {
+        int grown = e.compress();
+        if (grown > 0) {
+            synchronized (this) {
+                if (entries.get(e.key) == e) {
+                    e.accounted += grown;
+                    bytes += grown;
+                    evict();
+                }
+            }
+        }
+        return e.gzipBody();
+    }
+
+    // Caller holds the lock
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().accounted;
+            it.remove();
+        }
+    }
+
+    private void remove(String key, Entry e) {
+        entries.remove(key);
+        bytes -= e.accounted;
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return FileSender.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+// Path router for the JSON API (/papers, /email-jobs, /metrics)
+// Route templates are split into a segment trie once at startup, e.g.
+//   router.add("DELETE", "/papers/{id:int}", handler)
+// and a request walks the trie with index arithmetic on the raw path: no regular expressions, no
+// String.split. Literal segments win over a parameter at the same position (no backtracking).
+// Parameters are typed ({name:int}, {name:long}, {name} for text); a value of the wrong type does
+// not match, so /papers/abc is a 404 rather than a NumberFormatException.
+// A path that exists with another method gets 405 and an Allow header; OPTIONS is answered for
+// every route (204 with Allow and CORS preflight headers) without a handler of its own.
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+public final class Router {
+
+    /** A route's code; a BadRequestException becomes a 400, any other exception a 500, through the router's Responder. */
+    public interface Handler {
+        void handle(HttpExchange exchange, Params params) throws Exception;
+    }
+
+    /** Writes an error response (400, 404, 405, 500) in the API's format. */
+    public interface Responder {
+        void error(HttpExchange exchange, int status, String message) throws IOException;
+    }
+
+    /**
+     * Wraps every response the router produces, e.g. for timing
+     * @param route matched template without types (/papers/{id}), or "other" when nothing matched
+     */
+    public interface Decorator {
+        HttpHandler wrap(String route, HttpHandler handler);
+    }
+
+    /** A malformed value in the request (a query number, a percent-escape); answered with 400 and the message. */
+    public static final class BadRequestException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    // Exchange attributes are not used to carry the match: before JDK 19 they are shared by every
+    // exchange of the same HttpContext, so the label and params are captured per request instead
+    private static final class Route {
+        final Handler handler;
+        final ExecutorService executor;
+
+        Route(Handler handler, ExecutorService executor) {
+            this.handler = handler;
+            this.executor = executor;
+        }
+    }
+
+    private static final char TEXT = 's';
+    private static final char INT = 'i';
+    private static final char LONG = 'l';
+
+    // One path segment; children are scanned linearly (a handful per node) with regionMatches
+    private static final class Node {
+        String[] literals = new String[0];
+        Node[] literalChildren = new Node[0];
+        Node param;
+        String paramName;
+        char paramType;
+        // Set on nodes that end a template
+        String label;
+        String[] paramNames;
+        final Map<String, Route> routes = new LinkedHashMap<>();
+        HttpHandler methodNotAllowed;
+        HttpHandler options;
+
+        Node literal(String path, int start, int end) {
+            int len = end - start;
+            for (int i = 0; i < literals.length; i++) {
+                String s = literals[i];
+                if (s.length() == len && path.regionMatches(start, s, 0, len)) return literalChildren[i];
+            }
+            return null;
+        }
+    }
+
+    private final Node root = new Node();
+    private final Responder responder;
+    private final Decorator decorate;
+    private final HttpHandler notFound;
+    private int maxParams;
+
+    /**
+     * @param responder writes 404/405/500 bodies
+     * @param decorate wraps every route handler and the router's own 404/405/OPTIONS answers (e.g. timing)
+     */
+    public Router(Responder responder, Decorator decorate) {
+        this.responder = responder;
+        this.decorate = decorate;
+        this.notFound = decorate.wrap("other", exchange -> responder.error(exchange, 404, "Not found"));
+    }
+
+    public Router add(String method, String template, Handler handler) {
+        return add(method, template, null, handler);
+    }
+
+    /**
+     * Registers a route
+     * @param method HTTP method, e.g. "GET"
+     * @param template path such as /papers/{id:int}/email; a trailing slash in requests is ignored
+     * @param executor run the handler on this executor instead of the server thread (null = inline)
+     */
+    public Router add(String method, String template, ExecutorService executor, Handler handler) {
+        if (!template.startsWith("/")) throw new IllegalArgumentException("Route must start with /: " + template);
+        Node node = root;
+        List<String> names = new ArrayList<>();
+        StringBuilder label = new StringBuilder();
+        for (String segment : template.substring(1).split("/")) {
+            if (segment.isEmpty()) continue;
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String spec = segment.substring(1, segment.length() - 1);
+                int colon = spec.indexOf(':');
+                String name = colon < 0 ? spec : spec.substring(0, colon);
+                char type = typeOf(colon < 0 ? "" : spec.substring(colon + 1), template);
+                if (node.param == null) {
+                    node.param = new Node();
+                    node.paramName = name;
+                    node.paramType = type;
+                } else if (!node.paramName.equals(name) || node.paramType != type) {
+                    throw new IllegalArgumentException("Route " + template + " conflicts with {" + node.paramName
+                            + "} at the same position");
+                }
+                names.add(name);
+                node = node.param;
+                label.append("/{").append(name).append('}');
+            } else {
+                Node child = node.literal(segment, 0, segment.length());
+                if (child == null) {
+                    child = new Node();
+                    node.literals = Arrays.copyOf(node.literals, node.literals.length + 1);
+                    node.literalChildren = Arrays.copyOf(node.literalChildren, node.literalChildren.length + 1);
+                    node.literals[node.literals.length - 1] = segment;
+                    node.literalChildren[node.literalChildren.length - 1] = child;
+                }
+                node = child;
+                label.append('/').append(segment);
+            }
+        }
+        String m = method.toUpperCase(Locale.ROOT);
+        if (node.routes.containsKey(m)) throw new IllegalArgumentException("Duplicate route " + m + " " + template);
+        node.routes.put(m, new Route(handler, executor));
+        node.label = label.length() == 0 ? "/" : label.toString();
+        node.paramNames = names.toArray(new String[0]);
+        maxParams = Math.max(maxParams, names.size());
+        // Allow lists every method on this path plus OPTIONS
+        String allow = String.join(", ", node.routes.keySet()) + ", OPTIONS";
+        node.methodNotAllowed = decorate.wrap(node.label, exchange -> {
+            exchange.getResponseHeaders().set("Allow", allow);
+            responder.error(exchange, 405, "Method not allowed");
+        });
+        node.options = decorate.wrap(node.label, exchange -> {
+            exchange.getResponseHeaders().set("Allow", allow);
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", allow);
+            exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
+            exchange.getResponseHeaders().set("Access-Control-Max-Age", "600");
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        return this;
+    }
+
+    /** The dispatcher; register it for every context prefix the routes live under. */
+    public HttpHandler handler() {
+        return exchange -> {
+            String path = exchange.getRequestURI().getRawPath();
+            Params params = new Params(exchange.getRequestURI().getRawQuery(), path, maxParams);
+            Node node = match(path, params);
+            if (node == null) {
+                notFound.handle(exchange);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            Route route = node.routes.get(method);
+            if (route == null) route = node.routes.get(method.toUpperCase(Locale.ROOT));
+            if (route == null) {
+                ("OPTIONS".equalsIgnoreCase(method) ? node.options : node.methodNotAllowed).handle(exchange);
+                return;
+            }
+            params.names = node.paramNames;
+            HttpHandler h = decorate.wrap(node.label, invoker(route.handler, params));
+            if (route.executor != null) h = ServerExecutors.on(route.executor, h);
+            h.handle(exchange);
+        };
+    }
+
+    /** Matched template label for a path, or null; for tests and benchmarks. */
+    String routeOf(String path) {
+        Node node = match(path, new Params(null, path, maxParams));
+        return node == null ? null : node.label;
+    }
+
+    // Walks the trie segment by segment; returns the end node only if some route ends there
+    private Node match(String path, Params params) {
+        int len = path.length();
+        if (len == 0 || path.charAt(0) != '/') return null;
+        if (len > 1 && path.charAt(len - 1) == '/') len--;
+        Node node = root;
+        int pos = 1;
+        while (pos <= len && len > 1) {
+            int end = path.indexOf('/', pos);
+            if (end < 0 || end > len) end = len;
+            Node next = node.literal(path, pos, end);
+            if (next == null && node.param != null && params.capture(path, pos, end, node.paramType)) next = node.param;
+            if (next == null) return null;
+            node = next;
+            pos = end + 1;
+        }
+        return node.label == null ? null : node;
+    }
+
+    private HttpHandler invoker(Handler handler, Params params) {
+        return exchange -> {
+            try {
+                handler.handle(exchange, params);
+            } catch (IOException e) {
+                throw e;
+            } catch (BadRequestException e) {
+                // The client's mistake: no stack trace
+                responder.error(exchange, 400, e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace();
+                responder.error(exchange, 500, e.getMessage());
+            }
+        };
+    }
+
+    private static String urlDecode(String s) {
+        try {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Malformed percent-encoding in '" + s + "'");
+        }
+    }
+
+    private static char typeOf(String type, String template) {
+        switch (type) {
+            case "":
+            case "str":
+                return TEXT;
+            case "int":
+                return INT;
+            case "long":
+                return LONG;
+            default:
+                throw new IllegalArgumentException("Unknown parameter type '" + type + "' in " + template);
+        }
+    }
+
+    /** Path parameters of the matched route, plus the query string. */
+    public static final class Params {
+        private final String rawQuery;
+        private final String path;
+        private final int[] starts;
+        private final int[] ends;
+        private final long[] numbers;
+        private int count;
+        private String[] names;
+        private Query query;
+
+        Params(String rawQuery, String path, int capacity) {
+            this.rawQuery = rawQuery;
+            this.path = path;
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+            this.numbers = new long[capacity];
+        }
+
+        public int getInt(String name) {
+            return (int) numbers[indexOf(name)];
+        }
+
+        public long getLong(String name) {
+            return numbers[indexOf(name)];
+        }
+
+        /** The parameter as text (percent-decoded), whatever its type. */
+        public String get(String name) {
+            int i = indexOf(name);
+            String segment = path.substring(starts[i], ends[i]);
+            // In a path "+" is a plus sign, not a space
+            return segment.indexOf('%') < 0 ? segment : urlDecode(segment.replace("+", "%2B"));
+        }
+
+        /** Query string parameters, parsed on first use. */
+        public Query query() {
+            Query q = query;
+            if (q == null) query = q = new Query(rawQuery);
+            return q;
+        }
+
+        // Records segment [start, end) if it has the parameter's type; numbers are parsed in place
+        boolean capture(String path, int start, int end, char type) {
+            if (end <= start || count == starts.length) return false;
+            long value = 0;
+            if (type != TEXT) {
+                long max = type == INT ? Integer.MAX_VALUE : Long.MAX_VALUE;
+                for (int i = start; i < end; i++) {
+                    char c = path.charAt(i);
+                    if (c < '0' || c > '9') return false;
+                    if (value > (max - (c - '0')) / 10) return false;
+                    value = value * 10 + (c - '0');
+                }
+            }
+            starts[count] = start;
+            ends[count] = end;
+            numbers[count] = value;
+            count++;
+            return true;
+        }
+
+        private int indexOf(String name) {
+            if (names != null) {
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equals(name)) return i;
+                }
+            }
+            throw new IllegalArgumentException("No path parameter " + name);
+        }
+    }
+
+    /**
+     * Query string view (?a=1&b=x%20y) read straight from the raw string: each lookup scans it in
+     * place and only the returned value is allocated (and decoded only if it has % or +). Later
+     * duplicates win; a key without "=" has the value "".
+     */
+    public static final class Query {
+        private final String raw;
+
+        public Query(String rawQuery) {
+            this.raw = rawQuery == null ? "" : rawQuery;
+        }
+
+        /** The decoded value, or null if the key is absent. */
+        public String get(String name) {
+            String found = null;
+            int len = raw.length();
+            int start = 0;
+            while (start < len) {
+                int amp = raw.indexOf('&', start);
+                if (amp < 0) amp = len;
+                if (amp > start) {
+                    int eq = raw.indexOf('=', start);
+                    if (eq < 0 || eq > amp) eq = amp;
+                    if (keyEquals(start, eq, name)) found = decode(raw, Math.min(eq + 1, amp), amp);
+                }
+                start = amp + 1;
+            }
+            return found;
+        }
+
+        public String get(String name, String defaultValue) {
+            String v = get(name);
+            return v == null ? defaultValue : v;
+        }
+
+        public boolean has(String name) {
+            return get(name) != null;
+        }
+
+        /** @throws BadRequestException if present but not a whole number */
+        public int getInt(String name, int defaultValue) {
+            String v = get(name);
+            if (v == null) return defaultValue;
+            try {
+                return Integer.parseInt(v.trim());
+            } catch (NumberFormatException e) {
+                throw new BadRequestException(name + " must be a whole number: '" + v + "'");
+            }
+        }
+
+        private boolean keyEquals(int start, int end, String name) {
+            if (needsDecoding(raw, start, end)) return decode(raw, start, end).equals(name);
+            return end - start == name.length() && raw.regionMatches(start, name, 0, name.length());
+        }
+
+        private static String decode(String s, int start, int end) {
+            if (start >= end) return "";
+            String part = s.substring(start, end);
+            return needsDecoding(s, start, end) ? urlDecode(part) : part;
+        }
+
+        private static boolean needsDecoding(String s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c == '%' || c == '+') return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+// Thread execution model for the HTTP servers
+// Virtual thread per request when the JDK supports it (21+), otherwise a bounded platform pool.
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServerExecutors {
+
+    // SERVER_EXECUTOR: auto (virtual if available), virtual, or platform
+    private static final String MODE = AppConfig.get("SERVER_EXECUTOR", "auto").toLowerCase(Locale.ROOT);
+    private static final int QUEUE_CAPACITY = AppConfig.getInt("SERVER_QUEUE_CAPACITY", 1000);
+
+    private static final List<ExecutorService> created = new ArrayList<>();
+
+    // System.nanoTime() at which on() queued the request running on this thread. Not an exchange
+    // attribute: before JDK 19 those are shared by every exchange of the same HttpContext.
+    private static final ThreadLocal<Long> QUEUED_AT = new ThreadLocal<>();
+
+    /**
+     * Creates the server's own executor; when its queue is full the dispatcher thread runs the
+     * request itself, which slows down accepting new connections instead of failing them
+     * @param name thread name prefix (e.g. "http")
+     * @param platformThreads pool size used when virtual threads are not in use
+     * @return executor; registered for {@link #shutdownAll()}
+     */
+    public static synchronized ExecutorService create(String name, int platformThreads) {
+        return create(name, platformThreads, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates the executor for a class of requests handed over by {@link #on}. When its queue is
+     * full the request is answered 503 with Retry-After, rather than run on the caller's thread
+     * (which would let slow /pdf or email work occupy the threads serving /papers).
+     * @param name thread name prefix (e.g. "pdf", "email")
+     * @param platformThreads pool size used when virtual threads are not in use
+     * @return executor; registered for {@link #shutdownAll()}
+     */
+    public static synchronized ExecutorService createIsolated(String name, int platformThreads) {
+        Metrics.Counter rejected = Metrics.counter("qpms_executor_rejected_total",
+                "Requests answered 503 because the executor queue was full", "executor", name);
+        return create(name, platformThreads, (task, pool) -> {
+            rejected.inc();
+            throw new RejectedExecutionException(name + " queue is full");
+        });
+    }
+
+    private static ExecutorService create(String name, int platformThreads, RejectedExecutionHandler whenFull) {
+        ExecutorService executor = null;
+        if (!"platform".equals(MODE)) {
+            executor = newVirtualThreadExecutor();
+            if (executor == null && "virtual".equals(MODE)) {
+                System.err.println("[ServerExecutors] Virtual threads need JDK 21+; using a platform pool for " + name);
+            }
+        }
+        if (executor == null) executor = newBoundedPool(name, Math.max(1, platformThreads), whenFull);
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            Metrics.gauge("qpms_executor_active_threads", "Threads running a request", pool::getActiveCount, "executor", name);
+            Metrics.gauge("qpms_executor_queue_size", "Requests waiting for a thread", () -> pool.getQueue().size(), "executor", name);
+        }
+        created.add(executor);
+        return executor;
+    }
+
+    /** True when request handlers run on virtual threads. */
+    public static boolean virtualThreadsAvailable() {
+        return !"platform".equals(MODE) && virtualFactoryMethod() != null;
+    }
+
+    /**
+     * Wraps a handler so it runs on the given executor instead of the server's default one.
+     * This is how /pdf and email sending get their own threads and cannot starve /papers.
+     * If the executor refuses the request (queue full, or shutting down) it is answered 503.
+     */
+    public static HttpHandler on(ExecutorService executor, HttpHandler handler) {
+        return exchange -> {
+            long queuedAt = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    QUEUED_AT.set(queuedAt);
+                    try {
+                        handler.handle(exchange);
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                        exchange.close();
+                    } finally {
+                        QUEUED_AT.remove();
+                    }
+                });
+            } catch (RejectedExecutionException busy) {
+                sendBusy(exchange);
+            }
+        };
+    }
+
+    // Same shape as WebServer's JSON errors
+    private static void sendBusy(HttpExchange exchange) throws IOException {
+        byte[] body = "{\"error\": \"Server busy, try again shortly\"}".getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json");
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Retry-After", "5");
+        exchange.sendResponseHeaders(503, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /** When the request on this thread was handed over by {@link #on}, or now if it was not; so latency includes queueing. */
+    public static long queuedAt() {
+        Long queuedAt = QUEUED_AT.get();
+        return queuedAt != null ? queuedAt : System.nanoTime();
+    }
+
+    /** Stops every executor created through this class (used on server shutdown). */
+    public static synchronized void shutdownAll() {
+        for (ExecutorService executor : created) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) executor.shutdownNow();
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        created.clear();
+    }
+
+    private static ExecutorService newBoundedPool(String name, int threads, RejectedExecutionHandler whenFull) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, QUEUE_CAPACITY)), factory, whenFull);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // Looked up reflectively so the code still compiles and runs on JDK 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        Method factory = virtualFactoryMethod();
+        if (factory == null) return null;
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Method virtualFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+// In-memory cache of the frontend/ tree
+// Files are loaded once at startup with their content type, ETag and a gzip variant, so a static
+// request is a map lookup plus one buffer write. In dev mode a WatchService reloads edited files.
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+public class StaticAssetCache {
+
+    /** One file, ready to send. */
+    static final class Asset {
+        final String contentType;
+        final byte[] body;
+        final byte[] gzipBody; // null when compression does not pay off
+        final String etag;
+        final String gzipEtag;
+        final long lastModified;
+
+        Asset(String contentType, byte[] body, byte[] gzipBody, String etag, long lastModified) {
+            this.contentType = contentType;
+            this.body = body;
+            this.gzipBody = gzipBody;
+            this.etag = "\"" + etag + "\"";
+            // Different bytes need a different strong ETag
+            this.gzipEtag = "\"" + etag + "-gz\"";
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final Path root;
+    private final String cacheControl;
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+
+    /**
+     * @param root frontend directory
+     * @param cacheControl Cache-Control value for every asset
+     */
+    public StaticAssetCache(Path root, String cacheControl) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.cacheControl = cacheControl;
+        loadAll();
+    }
+
+    /**
+     * Finds the frontend directory whether the server was started from the project root or src/
+     * @return the directory, or null if none of the candidates exist
+     */
+    public static Path locateFrontendDir() {
+        String[] candidates = new String[] {"frontend", "../frontend", System.getProperty("user.dir") + File.separator + "frontend"};
+        for (String c : candidates) {
+            Path p = Paths.get(c);
+            if (Files.isDirectory(p)) return p;
+        }
+        return null;
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    /**
+     * Handler for a context such as /frontend; the rest of the path is looked up in the cache
+     * @param prefix context path to strip from the request path
+     */
+    public HttpHandler handler(String prefix) {
+        return exchange -> {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            String path = exchange.getRequestURI().getPath().substring(prefix.length());
+            if (path.isEmpty() || path.equals("/")) path = "/index.html";
+            Asset asset = assets.get(path);
+            if (asset == null) {
+                byte[] notFound = "404 Not Found".getBytes();
+                System.out.println("[WebServer] Static file not found for path: " + path);
+                exchange.sendResponseHeaders(404, notFound.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(notFound);
+                }
+                return;
+            }
+            send(exchange, asset);
+        };
+    }
+
+    private void send(HttpExchange exchange, Asset asset) throws IOException {
+        boolean gzip = asset.gzipBody != null && acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        String etag = gzip ? asset.gzipEtag : asset.etag;
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified", FileSender.formatHttpDate(asset.lastModified));
+        if (cacheControl != null) exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        if (asset.gzipBody != null) exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+
+        if (FileSender.notModified(exchange, etag, asset.lastModified)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = gzip ? asset.gzipBody : asset.body;
+        exchange.getResponseHeaders().set("Content-Type", asset.contentType);
+        if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    // "gzip" listed without q=0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals("gzip") && !coding.equals("*")) continue;
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String t = tokens[i].trim();
+                if (t.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(t.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (q > 0) return true;
+        }
+        return false;
+    }
+
+    private void loadAll() throws IOException {
+        Map<String, Asset> loaded = new ConcurrentHashMap<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(f -> loadQuietly(f, loaded));
+        }
+        // Swap in without a window where existing files 404
+        assets.putAll(loaded);
+        assets.keySet().retainAll(loaded.keySet());
+        System.out.println("[StaticAssetCache] Loaded " + assets.size() + " files from " + root);
+    }
+
+    private void loadQuietly(Path file) {
+        loadQuietly(file, assets);
+    }
+
+    private void loadQuietly(Path file, Map<String, Asset> target) {
+        try {
+            target.put(key(file), load(file));
+        } catch (IOException e) {
+            System.err.println("[StaticAssetCache] Could not load " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Asset load(Path file) throws IOException {
+        byte[] body = Files.readAllBytes(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String contentType = contentType(file.getFileName().toString());
+        byte[] gzipBody = isCompressible(contentType) ? gzip(body) : null;
+        if (gzipBody != null && gzipBody.length >= body.length) gzipBody = null;
+        return new Asset(contentType, body, gzipBody, sha256Hex(body), lastModified);
+    }
+
+    // "/js/main.js" style key relative to the frontend root
+    private String key(Path file) {
+        return "/" + root.relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    static String contentType(String name) {
+        String n = name.toLowerCase(Locale.ROOT);
+        if (n.endsWith(".html") || n.endsWith(".htm")) return "text/html; charset=utf-8";
+        if (n.endsWith(".css")) return "text/css; charset=utf-8";
+        if (n.endsWith(".js")) return "text/javascript; charset=utf-8";
+        if (n.endsWith(".json")) return "application/json";
+        if (n.endsWith(".svg")) return "image/svg+xml";
+        if (n.endsWith(".png")) return "image/png";
+        if (n.endsWith(".jpg") || n.endsWith(".jpeg")) return "image/jpeg";
+        if (n.endsWith(".gif")) return "image/gif";
+        if (n.endsWith(".ico")) return "image/x-icon";
+        if (n.endsWith(".woff2")) return "font/woff2";
+        if (n.endsWith(".pdf")) return "application/pdf";
+        return "application/octet-stream";
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.startsWith("image/svg");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return FileSender.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Dev mode: reload files when they change on disk. Runs on a daemon thread.
+     */
+    public void watchForChanges() throws IOException {
+        WatchService watcher = root.getFileSystem().newWatchService();
+        Map<WatchKey, Path> dirs = new ConcurrentHashMap<>();
+        registerTree(watcher, root, dirs);
+        Thread t = new Thread(() -> {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watcher.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                Path dir = dirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                        reloadAll();
+                        continue;
+                    }
+                    Path changed = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        // Drop the file, or everything under a deleted directory
+                        String k = key(changed);
+                        assets.keySet().removeIf(a -> a.equals(k) || a.startsWith(k + "/"));
+                    } else if (Files.isDirectory(changed)) {
+                        try {
+                            registerTree(watcher, changed, dirs);
+                            try (Stream<Path> files = Files.walk(changed)) {
+                                files.filter(Files::isRegularFile).forEach(this::loadQuietly);
+                            }
+                        } catch (IOException e) {
+                            System.err.println("[StaticAssetCache] Could not watch " + changed + ": " + e.getMessage());
+                        }
+                    } else if (Files.isRegularFile(changed)) {
+                        loadQuietly(changed);
+                        System.out.println("[StaticAssetCache] Reloaded " + key(changed));
+                    }
+                }
+                if (!key.reset()) dirs.remove(key);
+            }
+        }, "static-asset-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void reloadAll() {
+        try {
+            loadAll();
+        } catch (IOException e) {
+            System.err.println("[StaticAssetCache] Reload failed: " + e.getMessage());
+        }
+    }
+
+    private static void registerTree(WatchService watcher, Path start, Map<WatchKey, Path> dirs) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                dirs.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
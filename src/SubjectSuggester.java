@@ -0,0 +1,171 @@
+// Subject typeahead for the search form
+// A case-insensitive trie over subjects (from the start of each word, so "math" also finds
+// "Engineering Mathematics"). Every node keeps its top-k subjects by paper count, so a lookup is
+// a walk down the prefix and nothing else. Writes are serialised; reads take no lock.
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SubjectSuggester {
+
+    /** A suggested subject and how many papers use it. */
+    public static final class Suggestion {
+        private final String key;
+        private final String subject;
+        private final int count;
+
+        Suggestion(String key, String subject, int count) {
+            this.key = key;
+            this.subject = subject;
+            this.count = count;
+        }
+
+        public String getSubject() { return subject; }
+        public int getCount() { return count; }
+    }
+
+    // One distinct subject (case-insensitive)
+    private static final class Entry {
+        final String key;
+        String label;
+        int count;
+
+        Entry(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new ConcurrentHashMap<>();
+        // Subjects whose indexed text ends exactly here ("Database" and the second word of
+        // "Data Database" share a node); null when there are none
+        List<Entry> ends;
+        volatile List<Suggestion> top = Collections.emptyList();
+    }
+
+    private final int topK;
+    private final Node root = new Node();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * @param topK suggestions kept per prefix (the most a lookup can return)
+     */
+    public SubjectSuggester(int topK) {
+        this.topK = Math.max(1, topK);
+    }
+
+    /** Counts one more paper with this subject. */
+    public synchronized void add(String subject) {
+        adjust(subject, 1);
+    }
+
+    /**
+     * Counts a batch of papers (e.g. the whole catalog at startup). Cheaper than repeated add():
+     * each node on the batch's paths is recomputed once, bottom-up, instead of after every subject.
+     */
+    public synchronized void addAll(Iterable<String> subjects) {
+        Map<String, Entry> changed = new HashMap<>();
+        for (String subject : subjects) {
+            String key = normalize(subject);
+            if (key.isEmpty()) continue;
+            Entry entry = entries.computeIfAbsent(key, k -> new Entry(k, subject.trim().replaceAll("\\s+", " ")));
+            entry.count++;
+            changed.put(key, entry);
+        }
+        if (!changed.isEmpty()) refresh(changed.values());
+    }
+
+    /** Counts one paper fewer with this subject. */
+    public synchronized void remove(String subject) {
+        adjust(subject, -1);
+    }
+
+    /** Number of distinct subjects. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Subjects matching a prefix of the subject or of any word in it, most papers first
+     * @param prefix what the user has typed so far (case-insensitive; empty = most used subjects)
+     * @param limit maximum results (capped at topK)
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        Node node = root;
+        String key = normalize(prefix);
+        for (int i = 0; i < key.length() && node != null; i++) node = node.children.get(key.charAt(i));
+        if (node == null) return Collections.emptyList();
+        List<Suggestion> top = node.top;
+        return top.size() <= limit ? top : top.subList(0, Math.max(0, limit));
+    }
+
+    private void adjust(String subject, int delta) {
+        String key = normalize(subject);
+        if (key.isEmpty()) return;
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (delta < 0) return;
+            entry = new Entry(key, subject.trim().replaceAll("\\s+", " "));
+            entries.put(key, entry);
+        }
+        entry.count = Math.max(0, entry.count + delta);
+        if (entry.count == 0) entries.remove(key);
+        refresh(Collections.singletonList(entry));
+    }
+
+    // Recomputes the top-k lists on the paths to these subjects (one path per word start); only
+    // those nodes can list them, so the rest of the trie is untouched
+    private void refresh(Collection<Entry> changed) {
+        Map<Node, Integer> dirty = new IdentityHashMap<>();
+        dirty.put(root, 0);
+        for (Entry entry : changed) {
+            String key = entry.key;
+            for (int start = 0; start < key.length(); start++) {
+                if (start > 0 && key.charAt(start - 1) != ' ') continue;
+                Node node = root;
+                for (int i = start; i < key.length(); i++) {
+                    node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+                    dirty.put(node, i - start + 1);
+                }
+                if (entry.count == 0) {
+                    if (node.ends != null && node.ends.remove(entry) && node.ends.isEmpty()) node.ends = null;
+                } else {
+                    if (node.ends == null) node.ends = new ArrayList<>(1);
+                    if (!node.ends.contains(entry)) node.ends.add(entry);
+                }
+            }
+        }
+        // Deepest first, so each parent merges already-updated child lists
+        List<Node> order = new ArrayList<>(dirty.keySet());
+        order.sort((a, b) -> dirty.get(b) - dirty.get(a));
+        for (Node n : order) recompute(n);
+    }
+
+    private void recompute(Node node) {
+        Map<String, Suggestion> candidates = new LinkedHashMap<>();
+        if (node.ends != null) {
+            for (Entry e : node.ends) candidates.put(e.key, new Suggestion(e.key, e.label, e.count));
+        }
+        for (Node child : node.children.values()) {
+            for (Suggestion s : child.top) candidates.putIfAbsent(s.key, s);
+        }
+        List<Suggestion> top = new ArrayList<>(candidates.values());
+        top.sort((a, b) -> a.count != b.count ? b.count - a.count : a.subject.compareToIgnoreCase(b.subject));
+        if (top.size() > topK) top = new ArrayList<>(top.subList(0, topK));
+        node.top = Collections.unmodifiableList(top);
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
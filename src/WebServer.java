@@ -3,12 +3,24 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.stream.Collectors;
@@ -17,21 +29,171 @@ public class WebServer {
     private static final int PORT = 8080;
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final QuestionPaperService service = new QuestionPaperService();
+    private static final EmailJobQueue emailJobs = new EmailJobQueue();
+    // Per-row writer for streamed responses; flushing after every row would turn each paper into its own chunk
+    private static final ObjectWriter paperWriter = objectMapper.writerFor(QuestionPaper.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private static final Set<String> METRIC_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS"));
+    // Frontend assets are not fingerprinted, so browsers revalidate them (cheap 304s) on every use
+    private static final String STATIC_CACHE_CONTROL = AppConfig.get("STATIC_CACHE_CONTROL", "no-cache");
+    private static final String PDF_CACHE_CONTROL = AppConfig.get("PDF_CACHE_CONTROL", "public, max-age=3600");
+    private static final int MAX_BULK_RECIPIENTS = AppConfig.getInt("EMAIL_BULK_MAX_RECIPIENTS", 500);
+    private static final int DEFAULT_PAGE_SIZE = AppConfig.getInt("PAPERS_PAGE_SIZE", 50);
+    private static final int MAX_PAGE_SIZE = AppConfig.getInt("PAPERS_MAX_PAGE_SIZE", 1000);
+    private static final int BULK_BATCH_SIZE = AppConfig.getInt("BULK_BATCH_SIZE", 1000);
+    private static final int MAX_FULLTEXT_RESULTS = AppConfig.getInt("FULLTEXT_MAX_RESULTS", 100);
+    private static final long MAX_UPLOAD_BYTES = AppConfig.getLong("UPLOAD_MAX_BYTES", 256L * 1024 * 1024);
+    // Catalog list, page and search responses, reused until the next add/delete
+    private static final ResponseCache responses = new ResponseCache(service::catalogVersion,
+            AppConfig.getLong("RESPONSE_CACHE_MAX_BYTES", 64L * 1024 * 1024),
+            AppConfig.getLong("RESPONSE_CACHE_TTL_MS", AppConfig.getLong("CATALOG_CACHE_TTL_MS", 0)),
+            AppConfig.get("API_CACHE_CONTROL", "no-cache"));
+    private static final String ALL_PAPERS_KEY = "/papers";
+    // One importer, so its run lock keeps concurrent imports of the same folder apart
+    private static volatile PdfAutoImporter autoImporter;
 
     public static void main(String[] args) throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), AppConfig.getInt("SERVER_BACKLOG", 0));
+
+        // Slow work gets its own threads so it cannot starve catalog requests
+        ExecutorService pdfExecutor = ServerExecutors.createIsolated("pdf", AppConfig.getInt("PDF_THREADS", 8));
+        ExecutorService emailExecutor = ServerExecutors.createIsolated("email", AppConfig.getInt("EMAIL_THREADS", 4));
         
-        // Serve static files from frontend directory
-        server.createContext("/frontend", staticFileHandler());
+        // Serve static files from frontend directory (held in memory, reloaded on change in dev mode)
+        server.createContext("/frontend", timed("/frontend/{asset}", staticAssets().handler("/frontend")));
         // Serve PDF files from project PDF directory
-        server.createContext("/pdf", pdfFileHandler());
+        server.createContext("/pdf", ServerExecutors.on(pdfExecutor, timed("/pdf/{file}", pdfFileHandler())));
+        
+        // JSON API: /papers (list, add, send email), /email-jobs (status of queued emails) and
+        // /metrics (counters, latency histograms and pool gauges for Prometheus) share one router
+        HttpHandler api = apiRouter(emailExecutor).handler();
+        server.createContext("/papers", api);
+        server.createContext("/email-jobs", api);
+        server.createContext("/metrics", api);
+        registerGauges();
         
-    // Handle /papers routing (list, add, send email)
-    server.createContext("/papers", routePapersHandler());
+        // Index the PDF folder up front instead of on the first download
+        PdfRepository.getInstance();
+        // Load the full-text index and extract any new PDFs in the background
+        FullTextIndex.getInstance();
+        // Reclaim stored PDFs that no paper refers to any more
+        service.blobStore().startGc(AppConfig.getLong("BLOB_GC_INTERVAL_MS", 60 * 60 * 1000L));
+        // Register PDFs copied into the folder while the server was down
+        if (AppConfig.getBoolean("AUTO_IMPORT_ON_STARTUP", false)) {
+            Thread importer = new Thread(() -> {
+                try {
+                    autoImporter().run(false);
+                } catch (Exception e) {
+                    System.err.println("[WebServer] PDF auto-import failed: " + e.getMessage());
+                }
+            }, "pdf-auto-import");
+            importer.setDaemon(true);
+            importer.start();
+        }
         
-        server.setExecutor(null);
+        server.setExecutor(ServerExecutors.create("http",
+                AppConfig.getInt("SERVER_THREADS", Math.max(8, Runtime.getRuntime().availableProcessors() * 2))));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            ServerExecutors.shutdownAll();
+            emailJobs.shutdown();
+            FullTextIndex.getInstance().shutdown();
+            service.blobStore().shutdown();
+            EmailService.shutdown();
+            // Release pooled DB connections and the embedded store's lock when the JVM stops
+            DatabaseConnection.shutdown();
+            EmbeddedPaperStore.shutdown();
+        }));
         server.start();
-        System.out.println("Server started on port " + PORT);
+        System.out.println("Server started on port " + PORT
+                + (ServerExecutors.virtualThreadsAvailable() ? " (virtual threads)" : " (thread pool)"));
+    }
+
+    private static PdfAutoImporter autoImporter() {
+        PdfAutoImporter i = autoImporter;
+        if (i == null) {
+            synchronized (WebServer.class) {
+                if (autoImporter == null) autoImporter = PdfAutoImporter.fromConfig(service);
+                i = autoImporter;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Records qpms_http_request_duration_seconds by method, route template and status. Requests
+     * handed to another executor are timed from when they were queued (see ServerExecutors.on).
+     * @param route template label, e.g. /papers/{id}; "other" for unknown paths so they cannot add series
+     */
+    private static HttpHandler timed(String route, HttpHandler handler) {
+        return exchange -> {
+            long start = ServerExecutors.queuedAt();
+            try {
+                handler.handle(exchange);
+            } finally {
+                int status = exchange.getResponseCode();
+                Metrics.histogram("qpms_http_request_duration_seconds", "HTTP request latency, queueing included",
+                        "method", METRIC_METHODS.contains(exchange.getRequestMethod()) ? exchange.getRequestMethod() : "OTHER",
+                        "route", route, "status", status < 0 ? "none" : String.valueOf(status)).recordSince(start);
+            }
+        };
+    }
+
+    /**
+     * Database reads made while handling the request are attributed to the caller's address, so a
+     * client that just added or deleted a paper reads from the primary (see DatabaseConnection).
+     */
+    private static HttpHandler asClient(HttpHandler handler) {
+        return exchange -> {
+            String client = exchange.getRemoteAddress().getAddress().getHostAddress();
+            DatabaseConnection.runIn(DatabaseConnection.forClient(client), () -> {
+                handler.handle(exchange);
+                return null;
+            });
+        };
+    }
+
+    // Values read on each scrape; pools and queues keep their own counts
+    private static void registerGauges() {
+        for (String stat : new String[] {"active", "idle", "total", "max", "waiting"}) {
+            Metrics.gauge("qpms_db_pool_connections", "Database pool connections by state", () -> poolStat(stat), "state", stat);
+        }
+        Metrics.counterFunction("qpms_db_pool_timeouts_total", "Borrows that timed out waiting for a connection", () -> poolStat("timeouts"));
+        Metrics.counterFunction("qpms_db_pool_borrows_total", "Connections borrowed from the pool", () -> poolStat("borrowed"));
+        Metrics.gauge("qpms_email_jobs_queued", "Email jobs waiting to be sent", emailJobs::getQueuedCount);
+        Metrics.counterFunction("qpms_catalog_cache_hits_total", "Catalog reads served from the cache", () -> service.catalogStats().getOrDefault("hits", 0L));
+        Metrics.counterFunction("qpms_catalog_cache_misses_total", "Catalog reads that went to the database", () -> service.catalogStats().getOrDefault("misses", 0L));
+        Metrics.gauge("qpms_pdf_files", "PDFs in the PDF folder", () -> PdfRepository.getInstance().size());
+        Metrics.gauge("qpms_fulltext_documents", "PDFs in the full-text index", () -> FullTextIndex.getInstance().size());
+        Metrics.gauge("qpms_jvm_heap_used_bytes", "JVM heap in use", () -> {
+            Runtime rt = Runtime.getRuntime();
+            return rt.totalMemory() - rt.freeMemory();
+        });
+    }
+
+    private static double poolStat(String name) {
+        return DatabaseConnection.getPoolStats().getOrDefault(name, 0L);
+    }
+
+    private static void metrics(HttpExchange exchange, Router.Params params) throws IOException {
+        byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static StaticAssetCache staticAssets() throws IOException {
+        Path frontendDir = StaticAssetCache.locateFrontendDir();
+        if (frontendDir == null) {
+            System.out.println("[WebServer] frontend directory not found (tried frontend, ../frontend, user.dir/frontend)");
+            frontendDir = Paths.get("frontend");
+            Files.createDirectories(frontendDir);
+        }
+        StaticAssetCache cache = new StaticAssetCache(frontendDir, STATIC_CACHE_CONTROL);
+        if (AppConfig.getBoolean("STATIC_DEV_MODE", false)) cache.watchForChanges();
+        return cache;
     }
 
     private static HttpHandler getAllPapersHandler() {
@@ -47,7 +209,9 @@ public class WebServer {
 
     private static HttpHandler pdfFileHandler() {
         return exchange -> {
-            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
                 exchange.sendResponseHeaders(405, -1);
                 return;
             }
@@ -60,26 +224,13 @@ public class WebServer {
                     return;
                 }
 
-                // Normalize and ensure we only serve by filename to prevent path traversal
+                // find() only serves files directly in the PDF folder, which prevents path traversal;
+                // blob references (/pdf/<sha256>/name.pdf) resolve to the stored blob
                 fileName = fileName.replace("\\", "/");
                 if (fileName.startsWith("/")) fileName = fileName.substring(1);
-                int slash = fileName.lastIndexOf('/');
-                if (slash != -1) fileName = fileName.substring(slash + 1);
-
-                // Candidate locations for PDF directory (project root vs running from src/)
-                String userDir = System.getProperty("user.dir");
-                File[] candidates = new File[] {
-                    new File(userDir + File.separator + "PDF" + File.separator + fileName),
-                    new File(userDir + File.separator + ".." + File.separator + "PDF" + File.separator + fileName),
-                    new File("PDF" + File.separator + fileName)
-                };
-
-                File pdfFile = null;
-                for (File f : candidates) {
-                    if (f.exists() && f.isFile()) { pdfFile = f; break; }
-                }
 
-                if (pdfFile == null) {
+                PdfRepository.PdfEntry pdf = PdfRepository.getInstance().find(fileName);
+                if (pdf == null) {
                     String notFound = "PDF not found";
                     exchange.sendResponseHeaders(404, notFound.length());
                     try (OutputStream os = exchange.getResponseBody()) {
@@ -88,19 +239,10 @@ public class WebServer {
                     return;
                 }
 
-                // Serve inline as application/pdf
-                exchange.getResponseHeaders().set("Content-Type", "application/pdf");
-                exchange.getResponseHeaders().set("Content-Disposition", "inline; filename=\"" + fileName + "\"");
+                // Serve inline as application/pdf; Range requests get 206 Partial Content
+                exchange.getResponseHeaders().set("Content-Disposition", "inline; filename=\"" + PdfRepository.cleanName(fileName) + "\"");
                 exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-                exchange.sendResponseHeaders(200, pdfFile.length());
-                try (FileInputStream fs = new FileInputStream(pdfFile);
-                     OutputStream os = exchange.getResponseBody()) {
-                    byte[] buffer = new byte[8192];
-                    int count;
-                    while ((count = fs.read(buffer)) != -1) {
-                        os.write(buffer, 0, count);
-                    }
-                }
+                FileSender.sendFile(exchange, pdf.getPath(), pdf.getSize(), pdf.getLastModified(), "application/pdf", PDF_CACHE_CONTROL);
             } catch (Exception ex) {
                 ex.printStackTrace();
                 String response = "Internal Server Error";
@@ -144,197 +286,433 @@ public class WebServer {
         };
     }
 
-    private static HttpHandler staticFileHandler() {
-        return exchange -> {
-            if ("GET".equals(exchange.getRequestMethod())) {
-                try {
-                    String path = exchange.getRequestURI().getPath().substring("/frontend".length());
-                    if (path.isEmpty() || path.equals("/")) path = "/index.html";
-
-                    // Try multiple candidate frontend locations so server works
-                    // whether started from project root or from src/
-                    String[] candidates = new String[] {"frontend", "../frontend", "./frontend"};
-                    File file = null;
-                    for (String base : candidates) {
-                        File f = new File(base + path);
-                        if (f.exists() && f.isFile()) {
-                            file = f;
-                            break;
-                        }
-                    }
+    /**
+     * Routes of the JSON API, matched by Router:
+     *  - GET  /papers                -> list all papers (streamed), or one page with ?after=&limit=
+     *  - POST /papers/add            -> add a paper (JSON body)
+     *  - POST /papers/bulk           -> add many papers (JSON array or NDJSON), batched inserts
+     *  - POST /papers/upload         -> multipart PDF + details, stored in PDF/ and registered in one step
+     *  - POST /papers/blobs/gc       -> reclaim stored PDFs no paper refers to
+     *  - POST /papers/import[?full=true] -> register new PDFs in the PDF folder from their file names
+     *  - GET  /papers/search?...     -> filter by any of subject/year/semester/status, with facet counts
+     *  - GET  /papers/suggest?prefix= -> subject typeahead
+     *  - GET  /papers/fulltext?q=... -> search inside the PDFs (BM25, "quoted phrases")
+     *  - DELETE /papers/{id}         -> delete a paper
+     *  - POST /papers/{id}/email?recipientEmail=... -> queue an email for paper id (202 + job id)
+     *  - POST /papers/{id}/email/bulk -> queue one paper for many recipients (JSON body with "recipients")
+     *  - GET  /email-jobs/{id}       -> status of a queued email
+     *  - GET  /metrics               -> Prometheus text format
+     * Email routes run on the email executor so slow SMTP work cannot starve catalog requests.
+     */
+    private static Router apiRouter(ExecutorService emailExecutor) {
+        return new Router(WebServer::sendError, (route, handler) -> timed(route, asClient(handler)))
+                .add("GET", "/papers", WebServer::listPapers)
+                .add("POST", "/papers/add", WebServer::addPaper)
+                .add("POST", "/papers/bulk", WebServer::bulkAddPapers)
+                .add("POST", "/papers/upload", WebServer::uploadPaper)
+                .add("POST", "/papers/blobs/gc", WebServer::collectBlobs)
+                .add("POST", "/papers/import", WebServer::importPdfFolder)
+                .add("GET", "/papers/search", WebServer::searchPapers)
+                .add("GET", "/papers/suggest", WebServer::suggestSubjects)
+                .add("GET", "/papers/fulltext", WebServer::searchFullText)
+                .add("DELETE", "/papers/{id:int}", WebServer::deletePaper)
+                .add("POST", "/papers/{id:int}/email", emailExecutor, WebServer::emailPaper)
+                .add("POST", "/papers/{id:int}/email/bulk", emailExecutor, WebServer::emailPaperBulk)
+                .add("GET", "/email-jobs/{id}", WebServer::emailJobStatus)
+                .add("GET", "/metrics", WebServer::metrics);
+    }
 
-                    // Final fallback: check absolute path or project-root style
-                    if (file == null) {
-                        File f = new File(System.getProperty("user.dir") + File.separator + "frontend" + path);
-                        if (f.exists() && f.isFile()) file = f;
-                    }
+    // GET /papers                    -> all papers, streamed as a JSON array
+    // GET /papers?after=<id>&limit=<n> -> one page: {"items": [...], "limit": n, "nextAfter": id|null}
+    private static void listPapers(HttpExchange exchange, Router.Params params) throws Exception {
+        Router.Query query = params.query();
+        if (!query.has("after") && !query.has("limit")) {
+            streamAllPapers(exchange);
+            return;
+        }
+        int after = query.getInt("after", 0);
+        int requested = query.getInt("limit", DEFAULT_PAGE_SIZE);
+        if (after < 0 || requested < 1) {
+            sendResponse(exchange, 400, "{\"error\": \"after must be >= 0 and limit >= 1\"}");
+            return;
+        }
+        int limit = Math.min(requested, MAX_PAGE_SIZE);
+        String key = "/papers?after=" + after + "&limit=" + limit;
+        ResponseCache.Entry cached = responses.get(key);
+        if (cached != null) {
+            responses.send(exchange, cached);
+            return;
+        }
+        long version = responses.version();
+        // Kept for every client, so read as the response cache needs it (see DatabaseConnection)
+        List<QuestionPaper> page = DatabaseConnection.runIn(DatabaseConnection.forSharedCache(),
+                () -> service.getPapersPage(after, limit));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", page);
+        body.put("limit", limit);
+        body.put("nextAfter", page.size() == limit ? page.get(page.size() - 1).getId() : null);
+        // An empty page may be a database error the DAO logged and hid, so it is not kept
+        sendCacheable(exchange, page.isEmpty() ? null : key, version, body);
+    }
 
-                    if (file == null) {
-                        String response = "404 Not Found";
-                        System.out.println("[WebServer] Static file not found for path: " + path);
-                        System.out.println("[WebServer] Tried frontend locations: frontend, ../frontend, ./frontend, and user.dir/frontend");
-                        exchange.sendResponseHeaders(404, response.length());
-                        try (OutputStream os = exchange.getResponseBody()) {
-                            os.write(response.getBytes());
-                        }
-                        return;
-                    }
+    private static void addPaper(HttpExchange exchange, Router.Params params) throws Exception {
+        // reuse addPaperHandler logic: read JSON body and add
+        String body = new BufferedReader(new InputStreamReader(exchange.getRequestBody()))
+                .lines().collect(Collectors.joining());
+        Map<String, Object> data = objectMapper.readValue(body, Map.class);
+        QuestionPaper paper = new QuestionPaper(
+            (String) data.get("subject"),
+            ((Number) data.get("year")).intValue(),
+            ((Number) data.get("semester")).intValue(),
+            (String) data.get("filePath"),
+            (String) data.get("status")
+        );
+        service.addPaper(paper);
+        sendResponse(exchange, 200, "{\"message\": \"Paper added successfully\"}");
+    }
 
-                    String contentType = "text/html";
-                    if (path.endsWith(".css")) {
-                        contentType = "text/css";
-                    } else if (path.endsWith(".js")) {
-                        contentType = "text/javascript";
-                    }
+    // POST /papers/bulk -> JSON array or NDJSON of papers, inserted in batches
+    private static void bulkAddPapers(HttpExchange exchange, Router.Params params) throws Exception {
+        BulkPaperImporter importer = new BulkPaperImporter(service, objectMapper,
+                BULK_BATCH_SIZE, AppConfig.getInt("BULK_MAX_ERRORS", 1000));
+        BulkPaperImporter.Report report = importer.importFrom(exchange.getRequestBody());
+        int status = report.isDatabaseUnavailable() ? 503 : report.getAborted() != null ? 400 : 200;
+        sendResponse(exchange, status, objectMapper.writeValueAsString(report));
+    }
 
-                    exchange.getResponseHeaders().set("Content-Type", contentType);
-                    exchange.sendResponseHeaders(200, file.length());
-                    try (FileInputStream fs = new FileInputStream(file);
-                         OutputStream os = exchange.getResponseBody()) {
-                        byte[] buffer = new byte[4096];
-                        int count;
-                        while ((count = fs.read(buffer)) != -1) {
-                            os.write(buffer, 0, count);
-                        }
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    String response = "500 Internal Server Error";
-                    exchange.sendResponseHeaders(500, response.length());
-                    try (OutputStream os = exchange.getResponseBody()) {
-                        os.write(response.getBytes());
-                    }
-                }
+    // POST /papers/upload -> multipart/form-data: file + subject/year/semester (or a parseable file name)
+    private static void uploadPaper(HttpExchange exchange, Router.Params params) throws Exception {
+        PaperUploader uploader = new PaperUploader(service, PdfRepository.getInstance(), MAX_UPLOAD_BYTES,
+                autoImporter()::parse);
+        try {
+            PaperUploader.Result result = uploader.upload(exchange.getRequestHeaders().getFirst("Content-Type"),
+                    PaperUploader.contentLength(exchange.getRequestHeaders().getFirst("Content-Length")),
+                    exchange.getRequestBody());
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("paper", result.getPaper());
+            body.put("size", result.getSize());
+            body.put("sha256", result.getSha256());
+            body.put("duplicate", result.isDuplicate());
+            body.put("elapsedMillis", result.getElapsedMillis());
+            sendResponse(exchange, 201, objectMapper.writeValueAsString(body));
+        } catch (PaperUploader.UploadException rejected) {
+            sendError(exchange, rejected.getStatus(), rejected.getMessage());
+        }
+    }
+
+    // POST /papers/blobs/gc -> run blob GC now instead of waiting for the timer
+    private static void collectBlobs(HttpExchange exchange, Router.Params params) throws Exception {
+        try {
+            sendResponse(exchange, 200, objectMapper.writeValueAsString(service.blobStore().collectGarbage()));
+        } catch (SQLException e) {
+            sendError(exchange, 503, e.getMessage());
+        }
+    }
+
+    // POST /papers/import?full=true|false -> scan the PDF folder and register new files
+    private static void importPdfFolder(HttpExchange exchange, Router.Params params) throws Exception {
+        try {
+            PdfAutoImporter.Report report = autoImporter().run(Boolean.parseBoolean(params.query().get("full", "false")));
+            sendResponse(exchange, report.isDatabaseUnavailable() ? 503 : 200, objectMapper.writeValueAsString(report));
+        } catch (IllegalStateException busy) {
+            sendError(exchange, 409, busy.getMessage());
+        }
+    }
+
+    // GET /papers/search?subject=&year=&semester=&status=&sort=&offset=&limit=
+    // Any subset of filters; values may be comma-separated, numbers may be ranges (2022..2025)
+    private static void searchPapers(HttpExchange exchange, Router.Params params) throws Exception {
+        Router.Query filters = params.query();
+        PaperFacetIndex.Query query = new PaperFacetIndex.Query();
+        try {
+            // Key: only the values that shape the response, so unrelated parameters share an entry
+            StringBuilder key = new StringBuilder("/papers/search?");
+            for (String field : PaperFacetIndex.FIELDS) {
+                String value = filters.get(field, "").trim();
+                if (!value.isEmpty()) query.filter(field, value);
+                key.append(field).append('=').append(value).append('&');
             }
-        };
+            int offset = filters.getInt("offset", 0);
+            int limit = filters.getInt("limit", DEFAULT_PAGE_SIZE);
+            String sort = filters.get("sort", "id");
+            query.page(offset, Math.min(limit, MAX_PAGE_SIZE));
+            query.sort(sort);
+            key.append("offset=").append(offset).append("&limit=").append(Math.min(limit, MAX_PAGE_SIZE))
+                    .append("&sort=").append(sort);
+            ResponseCache.Entry cached = responses.get(key.toString());
+            if (cached != null) {
+                responses.send(exchange, cached);
+                return;
+            }
+            long version = responses.version();
+            PaperFacetIndex.Result result = DatabaseConnection.runIn(DatabaseConnection.forSharedCache(),
+                    () -> service.facetedSearch(query));
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("items", result.getItems());
+            body.put("total", result.getTotal());
+            body.put("offset", offset);
+            body.put("limit", Math.min(limit, MAX_PAGE_SIZE));
+            body.put("facets", result.getFacets());
+            sendCacheable(exchange, result.getTotal() == 0 ? null : key.toString(), version, body);
+        } catch (IllegalArgumentException bad) {
+            sendError(exchange, 400, bad.getMessage());
+        }
+    }
+
+    // GET /papers/suggest?prefix=ma&limit=n -> subjects for typeahead, most papers first
+    private static void suggestSubjects(HttpExchange exchange, Router.Params params) throws Exception {
+        Router.Query query = params.query();
+        String prefix = query.get("prefix", "");
+        int limit = query.getInt("limit", 10);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("prefix", prefix);
+        body.put("suggestions", service.suggestSubjects(prefix, Math.max(1, limit)));
+        sendResponse(exchange, 200, objectMapper.writeValueAsString(body));
+    }
+
+    // GET /papers/fulltext?q=...&limit=n -> files ranked by their PDF text, with snippets
+    private static void searchFullText(HttpExchange exchange, Router.Params params) throws Exception {
+        String q = params.query().get("q", "").trim();
+        if (q.isEmpty()) {
+            sendResponse(exchange, 400, "{\"error\": \"q is required\"}");
+            return;
+        }
+        int limit = Math.max(1, Math.min(params.query().getInt("limit", 10), MAX_FULLTEXT_RESULTS));
+        sendResponse(exchange, 200, objectMapper.writeValueAsString(fullTextSearch(q, limit)));
+    }
+
+    // DELETE /papers/{id} -> delete a paper
+    private static void deletePaper(HttpExchange exchange, Router.Params params) throws Exception {
+        try {
+            service.deletePaperById(params.getInt("id"));
+            sendResponse(exchange, 200, "{\"message\": \"Paper deleted\"}");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            sendResponse(exchange, 500, "{\"error\": \"Failed to delete paper\"}");
+        }
+    }
+
+    // POST /papers/{id}/email?recipientEmail=...
+    private static void emailPaper(HttpExchange exchange, Router.Params params) throws Exception {
+        String recipient = params.query().get("recipientEmail");
+        if (recipient == null || recipient.isEmpty()) {
+            sendResponse(exchange, 400, "{\"error\": \"recipientEmail query parameter is required\"}");
+            return;
+        }
+
+        QuestionPaper paper = service.getPaperById(params.getInt("id"));
+        if (paper == null) {
+            sendResponse(exchange, 404, "{\"error\": \"Paper not found\"}");
+            return;
+        }
+
+        // Queue the send and answer immediately; progress is at GET /email-jobs/{jobId}
+        try {
+            sendJobAccepted(exchange, emailJobs.submit(recipient, paper));
+        } catch (IllegalStateException full) {
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            sendError(exchange, 503, full.getMessage());
+        }
+    }
+
+    // POST /papers/{id}/email/bulk  body: {"recipients": ["a@x.com", "b@y.com", ...]}
+    private static void emailPaperBulk(HttpExchange exchange, Router.Params params) throws Exception {
+        Map<String, Object> data = objectMapper.readValue(exchange.getRequestBody(), new TypeReference<Map<String, Object>>() {});
+        Object list = data.get("recipients");
+        List<String> recipients = new ArrayList<>();
+        if (list instanceof List) {
+            for (Object r : (List<?>) list) {
+                if (r != null && !r.toString().trim().isEmpty()) recipients.add(r.toString().trim());
+            }
+        }
+        if (recipients.isEmpty()) {
+            sendResponse(exchange, 400, "{\"error\": \"recipients must be a non-empty array\"}");
+            return;
+        }
+        if (recipients.size() > MAX_BULK_RECIPIENTS) {
+            sendResponse(exchange, 400, "{\"error\": \"at most " + MAX_BULK_RECIPIENTS + " recipients per request\"}");
+            return;
+        }
+
+        QuestionPaper paper = service.getPaperById(params.getInt("id"));
+        if (paper == null) {
+            sendResponse(exchange, 404, "{\"error\": \"Paper not found\"}");
+            return;
+        }
+
+        try {
+            sendJobAccepted(exchange, emailJobs.submitBulk(recipients, paper));
+        } catch (IllegalStateException full) {
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            sendError(exchange, 503, full.getMessage());
+        }
+    }
+
+    // GET /email-jobs/{id} -> status of a queued email (QUEUED, SENDING, SENT, FAILED) with timings
+    private static void emailJobStatus(HttpExchange exchange, Router.Params params) throws Exception {
+        EmailJobQueue.EmailJob job = emailJobs.get(params.get("id"));
+        if (job == null) {
+            sendResponse(exchange, 404, "{\"error\": \"Email job not found\"}");
+            return;
+        }
+        sendResponse(exchange, 200, objectMapper.writeValueAsString(job));
+    }
+
+    // Full-text hits joined with the catalog rows that point at each file
+    private static Map<String, Object> fullTextSearch(String q, int limit) {
+        FullTextIndex index = FullTextIndex.getInstance();
+        long start = System.nanoTime();
+        FullTextIndex.Result result = index.search(q, limit);
+        long tookMicros = (System.nanoTime() - start) / 1000;
+
+        Map<String, List<QuestionPaper>> papersByFile = new HashMap<>();
+        if (!result.getHits().isEmpty()) {
+            for (QuestionPaper paper : service.getAllPapers()) {
+                if (paper.getFilePath() == null) continue;
+                papersByFile.computeIfAbsent(PdfRepository.storedName(paper.getFilePath()), k -> new ArrayList<>()).add(paper);
+            }
+        }
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (FullTextIndex.Hit hit : result.getHits()) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("fileName", hit.getFileName());
+            r.put("score", hit.getScore());
+            r.put("snippets", hit.getSnippets());
+            r.put("papers", papersByFile.getOrDefault(hit.getFileName(), Collections.emptyList()));
+            results.add(r);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("query", q);
+        body.put("total", result.getTotal());
+        body.put("indexedFiles", index.size());
+        body.put("indexing", index.isIndexing());
+        body.put("tookMicros", tookMicros);
+        body.put("results", results);
+        return body;
+    }
+
+    // 202 Accepted pointing at the job's status URL
+    private static void sendJobAccepted(HttpExchange exchange, EmailJobQueue.EmailJob job) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", "Email queued");
+        body.put("jobId", job.getId());
+        body.put("status", job.getStatus());
+        body.put("recipientCount", job.getRecipientCount());
+        body.put("statusUrl", "/email-jobs/" + job.getId());
+        exchange.getResponseHeaders().set("Location", "/email-jobs/" + job.getId());
+        sendResponse(exchange, 202, objectMapper.writeValueAsString(body));
     }
 
     /**
-     * Route handler for /papers and subpaths like:
-     *  - GET  /papers                -> list all papers
-     *  - POST /papers/add            -> add a paper (JSON body)
-     *  - POST /papers/{id}/email?recipientEmail=... -> send email for paper id
+     * Streams the catalog as a JSON array with chunked transfer encoding.
+     * Papers are written as they are read, so nothing proportional to the catalog is buffered.
      */
-    private static HttpHandler routePapersHandler() {
-        return exchange -> {
-            String method = exchange.getRequestMethod();
-            String path = exchange.getRequestURI().getPath();
-            // path begins with /papers
-            try {
-                if ("GET".equalsIgnoreCase(method) && (path.equals("/papers") || path.equals("/papers/"))) {
-                    String response = objectMapper.writeValueAsString(service.getAllPapers());
-                    sendResponse(exchange, 200, response);
-                    return;
-                }
+    private static void streamAllPapers(HttpExchange exchange) throws IOException, SQLException {
+        ResponseCache.Entry cached = responses.get(ALL_PAPERS_KEY);
+        if (cached != null) {
+            responses.send(exchange, cached);
+            return;
+        }
+        long version = responses.version();
+        // Streamed as before; a copy is kept for the next request if the catalog is small enough
+        JsonArrayStream stream = new JsonArrayStream(exchange, responses);
+        // Not runIn: that would widen the two checked exceptions to Exception
+        DatabaseConnection.ReadScope scope = DatabaseConnection.forSharedCache();
+        try {
+            service.streamAllPapers(stream);
+        } catch (SQLException | IOException e) {
+            // Nothing sent yet: let the caller answer with a normal 500
+            if (!stream.isStarted()) throw e;
+            e.printStackTrace();
+            exchange.close();
+            return;
+        } finally {
+            scope.close();
+        }
+        stream.finish();
+        byte[] body = stream.captured();
+        // An empty catalog may be a database error the DAO logged and hid, so it is not kept
+        if (body != null && stream.count() > 0) responses.put(ALL_PAPERS_KEY, version, body);
+    }
 
-                if ("POST".equalsIgnoreCase(method) && path.equals("/papers/add")) {
-                    // reuse addPaperHandler logic: read JSON body and add
-                    String body = new BufferedReader(new InputStreamReader(exchange.getRequestBody()))
-                            .lines().collect(Collectors.joining());
-                    Map<String, Object> data = objectMapper.readValue(body, Map.class);
-                    QuestionPaper paper = new QuestionPaper(
-                        (String) data.get("subject"),
-                        ((Number) data.get("year")).intValue(),
-                        ((Number) data.get("semester")).intValue(),
-                        (String) data.get("filePath"),
-                        (String) data.get("status")
-                    );
-                    service.addPaper(paper);
-                    sendResponse(exchange, 200, "{\"message\": \"Paper added successfully\"}");
-                    return;
-                }
+    /**
+     * Serialises body straight to UTF-8 bytes and sends it through the response cache
+     * @param key cache key, or null to send without keeping it
+     * @param version catalog version read before the data was
+     */
+    private static void sendCacheable(HttpExchange exchange, String key, long version, Object body) throws IOException {
+        responses.send(exchange, responses.put(key, version, objectMapper.writeValueAsBytes(body)));
+    }
 
-                // GET /papers/search?subject=...&year=...&semester=...
-                if ("GET".equalsIgnoreCase(method) && path.equals("/papers/search")) {
-                    String query = exchange.getRequestURI().getQuery();
-                    Map<String, String> params = new HashMap<>();
-                    if (query != null && !query.isEmpty()) {
-                        for (String kv : query.split("&")) {
-                            String[] parts = kv.split("=", 2);
-                            String key = java.net.URLDecoder.decode(parts[0], StandardCharsets.UTF_8.name());
-                            String val = parts.length == 2 ? java.net.URLDecoder.decode(parts[1], StandardCharsets.UTF_8.name()) : "";
-                            params.put(key, val);
-                        }
-                    }
+    /** Writes papers into a JSON array; headers are sent on the first paper so early errors can still become a 500. */
+    static final class JsonArrayStream implements QuestionPaperRepository.PaperConsumer {
+        private final HttpExchange exchange;
+        private final ResponseCache cache;
+        private ResponseCache.Capture capture;
+        private JsonGenerator generator;
+        private int count;
 
-                    String subject = params.getOrDefault("subject", "").trim();
-                    String yearStr = params.getOrDefault("year", "").trim();
-                    String semStr = params.getOrDefault("semester", "").trim();
+        JsonArrayStream(HttpExchange exchange) {
+            this(exchange, null);
+        }
 
-                    if (subject.isEmpty() || yearStr.isEmpty() || semStr.isEmpty()) {
-                        sendResponse(exchange, 400, "{\"error\": \"subject, year, and semester are required\"}");
-                        return;
-                    }
+        /** @param cache also collect the bytes for this cache (see {@link #captured()}); null = don't */
+        JsonArrayStream(HttpExchange exchange, ResponseCache cache) {
+            this.exchange = exchange;
+            this.cache = cache;
+        }
 
-                    int year = Integer.parseInt(yearStr);
-                    int semester = Integer.parseInt(semStr);
-                    String response = objectMapper.writeValueAsString(service.search(subject, year, semester));
-                    sendResponse(exchange, 200, response);
-                    return;
-                }
+        /** The whole array as sent, or null if not collected (no cache, or too large). */
+        byte[] captured() {
+            return capture == null ? null : capture.bytes();
+        }
 
-                // POST /papers/{id}/email
-                Pattern p = Pattern.compile("^/papers/(\\d+)/email/?$");
-                java.util.regex.Matcher m = p.matcher(path);
-                if ("POST".equalsIgnoreCase(method) && m.find()) {
-                    int id = Integer.parseInt(m.group(1));
-                    // read recipient from query param
-                    String query = exchange.getRequestURI().getQuery();
-                    String recipient = null;
-                    if (query != null) {
-                        for (String kv : query.split("&")) {
-                            String[] parts = kv.split("=", 2);
-                            if (parts.length == 2 && parts[0].equals("recipientEmail")) {
-                                recipient = java.net.URLDecoder.decode(parts[1], StandardCharsets.UTF_8.name());
-                            }
-                        }
-                    }
-                    if (recipient == null || recipient.isEmpty()) {
-                        sendResponse(exchange, 400, "{\"error\": \"recipientEmail query parameter is required\"}");
-                        return;
-                    }
+        boolean isStarted() {
+            return generator != null;
+        }
 
-                    QuestionPaper paper = service.getPaperById(id);
-                    if (paper == null) {
-                        sendResponse(exchange, 404, "{\"error\": \"Paper not found\"}");
-                        return;
-                    }
+        /** Papers written so far. */
+        int count() {
+            return count;
+        }
 
-                    boolean ok = EmailService.sendQuestionPaper(recipient, paper);
-                    if (ok) sendResponse(exchange, 200, "{\"message\": \"Email sent\"}");
-                    else sendResponse(exchange, 500, "{\"error\": \"Failed to send email\"}");
-                    return;
-                }
+        @Override
+        public void accept(QuestionPaper paper) throws IOException {
+            if (generator == null) start();
+            paperWriter.writeValue(generator, paper);
+            count++;
+        }
 
-                // DELETE /papers/{id} -> delete a paper
-                Pattern pDel = Pattern.compile("^/papers/(\\d+)/?$");
-                java.util.regex.Matcher mDel = pDel.matcher(path);
-                if ("DELETE".equalsIgnoreCase(method) && mDel.find()) {
-                    int id = Integer.parseInt(mDel.group(1));
-                    try {
-                        service.deletePaperById(id);
-                        sendResponse(exchange, 200, "{\"message\": \"Paper deleted\"}");
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                        sendResponse(exchange, 500, "{\"error\": \"Failed to delete paper\"}");
-                    }
-                    return;
-                }
+        void finish() throws IOException {
+            if (generator == null) start();
+            generator.writeEndArray();
+            generator.close(); // also closes the response body, ending the chunked stream
+        }
 
-                sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                sendResponse(exchange, 500, "{\"error\": \"" + ex.getMessage() + "\"}");
-            }
-        };
+        private void start() throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, 0); // 0 = chunked
+            OutputStream out = exchange.getResponseBody();
+            if (cache != null) out = capture = cache.capture(out);
+            generator = objectMapper.getFactory().createGenerator(out);
+            generator.writeStartArray();
+        }
     }
 
     private static void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", "application/json");
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.sendResponseHeaders(statusCode, response.length());
+        // Content-Length counts bytes, not chars (PDF text and subjects can be non-ASCII)
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, body.length);
         try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes(StandardCharsets.UTF_8));
+            os.write(body);
         }
     }
-}
\ No newline at end of file
+
+    // {"error": message}, for failures raised by the router and by handlers
+    private static void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+        sendResponse(exchange, statusCode, objectMapper.writeValueAsString(Collections.singletonMap("error", message)));
+    }
+}